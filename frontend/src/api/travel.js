@@ -4,7 +4,7 @@ import request from '@/utils/request'
 import { fetchEventSource } from '@microsoft/fetch-event-source'
 
 // SSE 旅行规划，返回 AbortController 便于调用方结束
-export function runTravelPlanStream(roleId, payload, { onProgress, onDone, onMessage, onError } = {}) {
+export function runTravelPlanStream(roleId, payload, { onProgress, onQueue, onMarkdown, onDone, onMessage, onError } = {}) {
   const controller = new AbortController()
   const token = localStorage.getItem('token')
   fetchEventSource(`/api/travel/plan?roleId=${roleId ?? ''}`, {
@@ -28,6 +28,8 @@ export function runTravelPlanStream(roleId, payload, { onProgress, onDone, onMes
       try { data = JSON.parse(ev.data) } catch (_) {}
       if (name === 'progress') onProgress && onProgress(data)
       else if (name === 'workflow_update') onProgress && onProgress(data)
+      else if (name === 'queue') onQueue && onQueue(data?.position)
+      else if (name === 'markdown') onMarkdown && onMarkdown(data?.delta ?? '')
       else if (name === 'done') {
         onDone && onDone(data)
         controller.abort()
@@ -1,5 +1,6 @@
 package com.tripdog.ai;
 
+import com.tripdog.ai.assistant.TravelMarkdownAssistant;
 import com.tripdog.ai.assistant.TravelPlaningAssistant;
 import com.tripdog.config.ai.AiModelHolder;
 import dev.langchain4j.model.chat.ChatModel;
@@ -9,8 +10,6 @@ import com.tripdog.ai.assistant.ChatAssistant;
 import com.tripdog.ai.embedding.RetrieverFactory;
 import com.tripdog.ai.mcp.McpClientFactory;
 import com.tripdog.ai.tool.MyTools;
-import dev.langchain4j.mcp.McpToolProvider;
-import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.input.PromptTemplate;
 import dev.langchain4j.rag.DefaultRetrievalAugmentor;
@@ -19,9 +18,12 @@ import dev.langchain4j.rag.content.aggregator.DefaultContentAggregator;
 import dev.langchain4j.rag.content.injector.DefaultContentInjector;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.tool.ToolProvider;
 import lombok.RequiredArgsConstructor;
 import org.springframework.util.StringUtils;
 
+import java.util.concurrent.ExecutorService;
+
 import static com.tripdog.ai.mcp.McpConstants.MAP_MCP;
 import static com.tripdog.ai.mcp.McpConstants.WEB_SEARCH;
 import static com.tripdog.common.Constants.INJECT_TEMPLATE;
@@ -39,6 +41,10 @@ public class AssistantService {
     final RetrieverFactory retrieverFactory;
     final CustomerChatMemoryProvider chatMemoryProvider;
     final McpClientFactory mcpClientFactory;
+    /**
+     * 同一轮的多个工具调用并发执行，结果仍按调用顺序写回上下文
+     */
+    final ExecutorService aiToolExecutor;
 
     public ChatAssistant getAssistant() {
         StreamingChatModel chatLanguageModel = aiModelHolder.getStreamingChatModel(AiModelHolder.QwenStreamingChat);
@@ -58,10 +64,7 @@ public class AssistantService {
                 .build())
             .build();
 
-        McpClient mcpClient = mcpClientFactory.getMcpClient(WEB_SEARCH);
-        McpToolProvider toolProvider = McpToolProvider.builder()
-            .mcpClients(mcpClient)
-            .build();
+        ToolProvider toolProvider = mcpClientFactory.getToolProvider(WEB_SEARCH);
 
         return AiServices.builder(ChatAssistant.class)
             .streamingChatModel(chatLanguageModel)
@@ -69,12 +72,17 @@ public class AssistantService {
             .chatMemoryProvider(chatMemoryProvider)
             .tools(new MyTools())
             .toolProvider(toolProvider)
+            .executeToolsConcurrently(aiToolExecutor)
             .build();
     }
 
-    public TravelPlaningAssistant getTravelPlaningAssistant() {
+    /**
+     * 旅行规划助手，知识库检索条件由参数显式指定；工作流节点运行在共享线程上，不能依赖线程上下文
+     */
+    public TravelPlaningAssistant getTravelPlaningAssistant(Long userId, Long roleId, String conversationId) {
         ChatModel chatModel = aiModelHolder.getDefaultChat();
-        EmbeddingStoreContentRetriever embeddingStoreContentRetriever = retrieverFactory.getRetriever();
+        EmbeddingStoreContentRetriever embeddingStoreContentRetriever =
+                retrieverFactory.getRetriever(userId, roleId, conversationId);
 
         RetrievalAugmentor retrievalAugmentor = DefaultRetrievalAugmentor.builder()
                 .contentRetriever(embeddingStoreContentRetriever)
@@ -84,16 +92,37 @@ public class AssistantService {
                         .build())
                 .build();
 
-        McpClient mcpClient = mcpClientFactory.getMcpClient(MAP_MCP);
-        McpToolProvider toolProvider = McpToolProvider.builder()
-                .mcpClients(mcpClient)
-                .build();
+        ToolProvider toolProvider = mcpClientFactory.getToolProvider(MAP_MCP);
 
         return AiServices.builder(TravelPlaningAssistant.class)
                 .chatModel(chatModel)
+                .streamingChatModel(aiModelHolder.getDefaultStreaming())
                 .retrievalAugmentor(retrievalAugmentor)
                 .tools(new MyTools())
                 .toolProvider(toolProvider)
+                .executeToolsConcurrently(aiToolExecutor)
+                .build();
+    }
+
+    /**
+     * POI 检索助手，只挂载地图工具，不挂载用户知识库；检索结果按目的地与偏好跨用户缓存，不能混入个人资料
+     */
+    public TravelPlaningAssistant getTravelSearchAssistant() {
+        return AiServices.builder(TravelPlaningAssistant.class)
+                .chatModel(aiModelHolder.getDefaultChat())
+                .streamingChatModel(aiModelHolder.getDefaultStreaming())
+                .tools(new MyTools())
+                .toolProvider(mcpClientFactory.getToolProvider(MAP_MCP))
+                .executeToolsConcurrently(aiToolExecutor)
+                .build();
+    }
+
+    /**
+     * 路书流式生成助手，仅做文本整理，不挂载工具与知识库
+     */
+    public TravelMarkdownAssistant getTravelMarkdownAssistant() {
+        return AiServices.builder(TravelMarkdownAssistant.class)
+                .streamingChatModel(aiModelHolder.getDefaultStreaming())
                 .build();
     }
 }
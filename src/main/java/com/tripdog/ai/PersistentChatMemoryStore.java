@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.tripdog.ai.assistant.CompressAssistant;
 import com.tripdog.common.middleware.RedisClient;
@@ -21,6 +22,7 @@ import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import jakarta.annotation.PostConstruct;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -66,6 +68,14 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
     private final EmbeddingStoreIngestor ingestor;
     private final int windowMaxSize = 20;
     private final int summaryThreshold = 5;
+    /**
+     * 未完成的工具调用轮次超过该时间仍未落库时由定时任务补写
+     */
+    private final long pendingToolFlushMillis = 60_000;
+    /**
+     * 工具调用轮次中暂存的消息（工具调用请求与执行结果），下一条非工具消息到来时一次性批量落库
+     */
+    private final Map<String, PendingToolMessages> pendingToolMessages = new ConcurrentHashMap<>();
 
 
     @Override
@@ -78,44 +88,16 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
 
 
         for (ChatHistoryDO d : chatHistoryDOS) {
-            // 上下文使用检索增强后的内容
-            String content = StringUtils.hasText(d.getEnhancedContent()) ? d.getEnhancedContent() : d.getContent();
-
-            switch (d.getRole()) {
-                case USER:
-                    // 重建用户消息，需要判断是否有附件
-                    if (StringUtils.hasText(d.getAttachmentPath())) {
-                        // 构建包含文本和附件的多部分消息（参照图片附件持久化方式）
-                        List<Content> contents = new ArrayList<>();
-                        if (StringUtils.hasText(content)) {
-                            contents.add(TextContent.from(content));
-                        }
-                        // 统一使用 ImageContent 包装附件（文件、图片等都用这个）
-                        contents.add(ImageContent.from(d.getAttachmentPath()));
-                        chatMessages.add(UserMessage.from(contents));
-                    } else {
-                        chatMessages.add(UserMessage.from(content));
-                    }
-                    break;
-                case ASSISTANT:
-                    if(StringUtils.hasText(d.getToolExecResult())) {
-                        chatMessages.add(ToolExecutionResultMessage.from("id","toolName",d.getToolExecResult()));
-                    } else {
-                        if(StringUtils.hasText(d.getToolCall())) {
-                            TypeToken<List<ToolExecutionRequest>> toolCalls = new TypeToken<>() {};
-                            String toolCallJson = d.getToolCall();
-                            chatMessages.add(AiMessage.from(JsonUtil.fromJsonList(toolCallJson, toolCalls)));
-                        }else {
-                            chatMessages.add(AiMessage.from(content));
-                        }
-                    }
-
-                    break;
-                case SYSTEM:
-                    chatMessages.add(SystemMessage.from(content));
-                    break;
+            ChatMessage message = toChatMessage(d);
+            if (message != null) {
+                chatMessages.add(message);
             }
         }
+        // 进行中的工具调用轮次尚未落库，直接使用原始消息（保留真实的工具调用 id）
+        PendingToolMessages pending = pendingToolMessages.get(conversationId);
+        if (pending != null) {
+            chatMessages.addAll(pending.messages());
+        }
         return chatMessages;
     }
 
@@ -154,7 +136,14 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
                 chatHistoryDO.setContent(extractOrigin(content));
             }
         }
-        chatHistoryMapper.insert(chatHistoryDO);
+        if (isToolCall) {
+            // 同一轮的多个工具调用结果攒批落库，避免每条结果都同步写一次
+            pendingToolMessages.computeIfAbsent(conversationId, k -> new PendingToolMessages())
+                .add(chatHistoryDO, latestMessage);
+        } else {
+            flushToolMessages(conversationId);
+            chatHistoryMapper.insert(chatHistoryDO);
+        }
 
         // 滚动摘要触发计数器
         if(ChatMessageType.AI.equals(latestMessage.type()) && list.size() >= windowMaxSize) {
@@ -162,6 +151,30 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
         }
     }
 
+    /**
+     * 异常中断的工具调用轮次不会再有后续消息触发落库，定时补写
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void flushStaleToolMessages() {
+        long now = System.currentTimeMillis();
+        pendingToolMessages.forEach((conversationId, pending) -> {
+            if (now - pending.createdAt() > pendingToolFlushMillis) {
+                flushToolMessages(conversationId);
+            }
+        });
+    }
+
+    private void flushToolMessages(String conversationId) {
+        PendingToolMessages pending = pendingToolMessages.remove(conversationId);
+        if (pending == null) {
+            return;
+        }
+        List<ChatHistoryDO> rows = pending.rows();
+        if (!rows.isEmpty()) {
+            chatHistoryMapper.batchInsert(rows);
+        }
+    }
+
     @Override
     public void deleteMessages(Object o) {
         // 模型记忆删除不清表库数据
@@ -205,6 +218,43 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
         }
     }
 
+    private ChatMessage toChatMessage(ChatHistoryDO d) {
+        // 上下文使用检索增强后的内容
+        String content = StringUtils.hasText(d.getEnhancedContent()) ? d.getEnhancedContent() : d.getContent();
+
+        switch (d.getRole()) {
+            case USER:
+                // 重建用户消息，需要判断是否有附件
+                if (StringUtils.hasText(d.getAttachmentPath())) {
+                    // 构建包含文本和附件的多部分消息（参照图片附件持久化方式）
+                    List<Content> contents = new ArrayList<>();
+                    if (StringUtils.hasText(content)) {
+                        contents.add(TextContent.from(content));
+                    }
+                    // 统一使用 ImageContent 包装附件（文件、图片等都用这个）
+                    contents.add(ImageContent.from(d.getAttachmentPath()));
+                    return UserMessage.from(contents);
+                } else {
+                    return UserMessage.from(content);
+                }
+            case ASSISTANT:
+                if(StringUtils.hasText(d.getToolExecResult())) {
+                    return ToolExecutionResultMessage.from("id","toolName",d.getToolExecResult());
+                } else {
+                    if(StringUtils.hasText(d.getToolCall())) {
+                        TypeToken<List<ToolExecutionRequest>> toolCalls = new TypeToken<>() {};
+                        String toolCallJson = d.getToolCall();
+                        return AiMessage.from(JsonUtil.fromJsonList(toolCallJson, toolCalls));
+                    }else {
+                        return AiMessage.from(content);
+                    }
+                }
+            case SYSTEM:
+                return SystemMessage.from(content);
+        }
+        return null;
+    }
+
     private String getRoleSystemMessage(String conversationId) {
         if (systemMessageCache.containsKey(conversationId)) {
             return systemMessageCache.get(conversationId);
@@ -305,4 +355,29 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 一个工具调用轮次内待落库的记录及对应的原始消息
+     */
+    private static class PendingToolMessages {
+        private final long createdAt = System.currentTimeMillis();
+        private final List<ChatHistoryDO> rows = new ArrayList<>();
+        private final List<ChatMessage> messages = new ArrayList<>();
+
+        synchronized void add(ChatHistoryDO row, ChatMessage message) {
+            rows.add(row);
+            messages.add(message);
+        }
+
+        synchronized List<ChatHistoryDO> rows() {
+            return new ArrayList<>(rows);
+        }
+
+        synchronized List<ChatMessage> messages() {
+            return new ArrayList<>(messages);
+        }
+
+        long createdAt() {
+            return createdAt;
+        }
+    }
+}
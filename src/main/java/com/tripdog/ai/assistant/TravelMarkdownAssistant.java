@@ -0,0 +1,16 @@
+package com.tripdog.ai.assistant;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * 旅行路书生成助手（流式），输入数据已在提示词中给出，不挂载工具与知识库
+ */
+public interface TravelMarkdownAssistant {
+    @SystemMessage("""
+            你是一名专业的旅行定制师，负责把结构化的行程数据整理成可直接阅读的 Markdown 路书。
+            只使用用户提供的数据，不要编造未提供的地点，输出仅包含 Markdown 正文。
+            """)
+    TokenStream generate(@UserMessage String prompt);
+}
@@ -1,10 +1,11 @@
 package com.tripdog.ai.assistant;
 
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 
 public interface TravelPlaningAssistant {
-    @SystemMessage("""
+    String SYSTEM_PROMPT = """
             你是一个专业的 旅游规划 AI（Travel Planner Agent）。
                              你的任务是：根据用户填写的出行偏好与表单信息，自动生成最适合的旅游计划。
             
@@ -144,6 +145,14 @@ public interface TravelPlaningAssistant {
                              不得重复询问用户已经填写的内容（如目的地和天数）。
             
                              必须根据“情侣 + 休闲度假 + 适中预算”自动应用合适的风格权重。
-        """)
+        """;
+
+    @SystemMessage(SYSTEM_PROMPT)
     String chat(@UserMessage String message);
+
+    /**
+     * 流式版本，供检索节点边接收边解析 POI
+     */
+    @SystemMessage(SYSTEM_PROMPT)
+    TokenStream chatStream(@UserMessage String message);
 }
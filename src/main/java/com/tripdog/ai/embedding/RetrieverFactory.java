@@ -1,7 +1,7 @@
 package com.tripdog.ai.embedding;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.context.annotation.Configuration;
 
@@ -25,7 +25,7 @@ import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metad
 public class RetrieverFactory {
     final EmbeddingStore<TextSegment> embeddingStore;
     final EmbeddingModel embeddingModel;
-    final Map<String, EmbeddingStoreContentRetriever> cache = new HashMap<>();
+    final Map<String, EmbeddingStoreContentRetriever> cache = new ConcurrentHashMap<>();
 
     public EmbeddingStoreContentRetriever getRetriever() {
         Long userId = (Long) ThreadLocalUtils.get(USER_ID);
@@ -35,13 +35,18 @@ public class RetrieverFactory {
         if (userId == null || roleId == null) {
             throw new IllegalStateException("ThreadLocal USER_ID/ROLE_ID not set before building retriever");
         }
+        return getRetriever(userId, roleId, conversationId);
+    }
 
-        String k = roleId + ":" + userId;
-        if(cache.containsKey(k)) {
-            return cache.get(k);
+    /**
+     * 按显式传入的用户/角色/会话构建检索器，供不在请求线程上执行的调用方使用（不读写线程上下文）
+     */
+    public EmbeddingStoreContentRetriever getRetriever(Long userId, Long roleId, String conversationId) {
+        if (userId == null || roleId == null) {
+            throw new IllegalArgumentException("userId/roleId is required to build retriever");
         }
-
-        EmbeddingStoreContentRetriever retriever = EmbeddingStoreContentRetriever.builder()
+        String k = roleId + ":" + userId;
+        return cache.computeIfAbsent(k, key -> EmbeddingStoreContentRetriever.builder()
             .embeddingStore(embeddingStore)
             .embeddingModel(embeddingModel)
             .maxResults(10) //todo 配置抽离
@@ -52,8 +57,6 @@ public class RetrieverFactory {
                             .and(metadataKey(SUMMARY_TAG).isEqualTo("true"))
                     )
             )
-            .build();
-        cache.put(k, retriever);
-        return retriever;
+            .build());
     }
 }
@@ -0,0 +1,217 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 增量、容错的 POI JSON 解析器
+ * 模型输出按片段喂入，扫描器在字符流中切出数组内的每个对象元素，元素闭合后立即用 Jackson 解析并回调，
+ * 不等待整段响应结束。兼容代码块标记、前后说明文字、{"results":[...]}、{"data":{"results":[...]}}、
+ * 裸数组与单个对象；只有最外层数组的直接元素才是候选 POI，元素内部嵌套的对象（如菜品、坐标）不单独解析。
+ * 单个元素解析失败只跳过该元素，括号失配时丢弃当前结构重新同步。
+ * 非线程安全，一个实例对应一次模型响应。
+ */
+@Slf4j
+public final class StreamingPoiParser {
+    /**
+     * 单个顶层结构的最大长度，超出视为异常输出并丢弃，防止无界缓冲
+     */
+    private static final int MAX_BUFFER_CHARS = 1024 * 1024;
+    /**
+     * 模型常见的非标准 JSON：单引号、未加引号的字段名、尾逗号、注释
+     */
+    private static final ObjectMapper LENIENT_MAPPER = JsonMapper.builder()
+        .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+        .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES)
+        .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+        .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+        .enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS)
+        .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .build();
+
+    private final Consumer<TravelStateModels.Poi> onPoi;
+
+    /**
+     * 当前最外层容器开始以来的文本
+     */
+    private final StringBuilder buffer = new StringBuilder();
+    /**
+     * 容器栈：类型（'[' 或 '{'）、在 buffer 中的起始位置、是否已有子元素解析成功
+     */
+    private final List<Frame> frames = new ArrayList<>();
+    /**
+     * 容器栈中未闭合的数组个数
+     */
+    private int arrayDepth;
+    private boolean inString;
+    private char quote;
+    private boolean escaped;
+    private int emitted;
+    private int skipped;
+    private boolean finished;
+
+    private record Frame(char type, int start, boolean[] childEmitted) {
+    }
+
+    public StreamingPoiParser(Consumer<TravelStateModels.Poi> onPoi) {
+        this.onPoi = onPoi;
+    }
+
+    /**
+     * 整段文本解析，返回全部可用元素
+     */
+    public static List<TravelStateModels.Poi> parse(String text) {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        parser.feed(text);
+        parser.finish();
+        return pois;
+    }
+
+    public void feed(CharSequence chunk) {
+        if (chunk == null || finished) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 响应结束，未闭合的元素计为跳过
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (frames.stream().anyMatch(f -> f.type() == '{')) {
+            skipped++;
+        }
+        reset();
+        if (skipped > 0) {
+            log.debug("POI 流式解析完成，成功 {} 条，跳过 {} 条", emitted, skipped);
+        }
+    }
+
+    public int emitted() {
+        return emitted;
+    }
+
+    public int skipped() {
+        return skipped;
+    }
+
+    private void accept(char c) {
+        if (frames.isEmpty()) {
+            // 容器外的说明文字、代码块标记中的引号与括号都不参与结构解析
+            if (c == '{' || c == '[') {
+                buffer.append(c);
+                frames.add(new Frame(c, 0, new boolean[1]));
+                arrayDepth = c == '[' ? 1 : 0;
+            }
+            return;
+        }
+        if (buffer.length() >= MAX_BUFFER_CHARS) {
+            skipped++;
+            reset();
+            return;
+        }
+        buffer.append(c);
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == quote) {
+                inString = false;
+            }
+            return;
+        }
+        switch (c) {
+            case '"', '\'' -> {
+                inString = true;
+                quote = c;
+            }
+            case '{', '[' -> {
+                frames.add(new Frame(c, buffer.length() - 1, new boolean[1]));
+                if (c == '[') {
+                    arrayDepth++;
+                }
+            }
+            case '}' -> close('{');
+            case ']' -> close('[');
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 对象闭合时，若它是最外层数组的直接元素，或是内部没有解析出元素的顶层对象，则作为候选 POI 解析；
+     * 这样 {"results":[...]} 之类的包装对象只解析其中的元素，裸对象也能被识别，
+     * 而 POI 内部数组中的对象（如 {"name":..,"dishes":[{"name":..}]}）不会顶替 POI 本身
+     */
+    private void close(char open) {
+        Frame frame = frames.remove(frames.size() - 1);
+        if (frame.type() != open) {
+            // 括号失配：当前结构已损坏，丢弃后从下一个容器重新同步
+            skipped++;
+            reset();
+            return;
+        }
+        if (open == '[') {
+            arrayDepth--;
+        }
+        Frame parent = frames.isEmpty() ? null : frames.get(frames.size() - 1);
+        boolean childEmitted = frame.childEmitted()[0];
+        boolean outermostElement = parent != null && parent.type() == '[' && arrayDepth == 1;
+        if (open == '{' && !childEmitted && (parent == null || outermostElement)) {
+            childEmitted = emit(buffer.substring(frame.start()));
+        }
+        if (parent == null) {
+            buffer.setLength(0);
+        } else if (childEmitted) {
+            parent.childEmitted()[0] = true;
+        }
+    }
+
+    private void reset() {
+        frames.clear();
+        arrayDepth = 0;
+        buffer.setLength(0);
+        inString = false;
+        escaped = false;
+    }
+
+    private boolean emit(String json) {
+        TravelStateModels.Poi poi;
+        try (JsonParser parser = LENIENT_MAPPER.createParser(json)) {
+            JsonNode node = LENIENT_MAPPER.readTree(parser);
+            if (node == null || !node.isObject() || !node.hasNonNull("name")) {
+                // 非 POI 对象（如包装对象、工具调用日志）不计为失败
+                return false;
+            }
+            poi = LENIENT_MAPPER.treeToValue(node, TravelStateModels.Poi.class);
+        } catch (Exception e) {
+            skipped++;
+            log.debug("跳过无法解析的 POI 元素: {}", e.getMessage());
+            return false;
+        }
+        if (poi.getName() == null || poi.getName().isBlank()) {
+            return false;
+        }
+        emitted++;
+        onPoi.accept(poi);
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.tripdog.common.middleware.RedisClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import static com.tripdog.common.Constants.REDIS_TRAVEL_RUN;
+
+/**
+ * 旅行规划运行检查点存储（Redis）
+ * 每个节点完成后覆盖保存一次状态快照，失败或实例重启后可按 runId 从快照恢复，已完成的节点不会重复执行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TravelCheckpointStore {
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    private static final long TTL_HOURS = 24;
+
+    private final RedisClient redisClient;
+
+    public TravelStateModels.TravelCheckpoint get(String runId) {
+        return redisClient.get(REDIS_TRAVEL_RUN + runId, TravelStateModels.TravelCheckpoint.class);
+    }
+
+    /**
+     * 节点完成后保存状态快照；保存失败只影响续跑，不中断本次规划
+     */
+    public void save(TravelStateModels.TravelCheckpoint checkpoint, String node, TravelState state) {
+        checkpoint.setLastNode(node);
+        checkpoint.setSearchResults(new ArrayList<>(state.searchResults()));
+        checkpoint.setSelectedPois(new ArrayList<>(state.selectedPois()));
+        checkpoint.setRoutes(new ArrayList<>(state.routes()));
+        checkpoint.setMarkdown(state.markdown());
+        write(checkpoint, RUNNING);
+    }
+
+    public void markSucceeded(TravelStateModels.TravelCheckpoint checkpoint, Long historyId, String mdPath, String mdUrl) {
+        checkpoint.setHistoryId(historyId);
+        checkpoint.setMdPath(mdPath);
+        checkpoint.setMdUrl(mdUrl);
+        write(checkpoint, SUCCEEDED);
+    }
+
+    public void markFailed(TravelStateModels.TravelCheckpoint checkpoint) {
+        write(checkpoint, FAILED);
+    }
+
+    /**
+     * 由检查点构造图输入，已完成节点的产出随状态带入
+     */
+    public Map<String, Object> toInput(TravelStateModels.TravelCheckpoint checkpoint) {
+        Map<String, Object> input = new HashMap<>();
+        input.put(TravelState.RUN_ID, checkpoint.getRunId());
+        input.put(TravelState.USER_ID, checkpoint.getUserId() == null ? 0L : checkpoint.getUserId());
+        input.put(TravelState.ROLE_ID, checkpoint.getRoleId() == null ? 0L : checkpoint.getRoleId());
+        input.put(TravelState.CONVERSATION_ID, nvl(checkpoint.getConversationId()));
+        input.put(TravelState.DESTINATION, nvl(checkpoint.getDestination()));
+        input.put(TravelState.DAYS, checkpoint.getDays() == null ? 3 : checkpoint.getDays());
+        input.put(TravelState.PEOPLE, nvl(checkpoint.getPeople()));
+        input.put(TravelState.TAGS, checkpoint.getTags() == null ? new ArrayList<>() : checkpoint.getTags());
+        input.put(TravelState.RAW_REQUIREMENT, nvl(checkpoint.getRawRequirement()));
+        if (checkpoint.getSearchResults() != null && !checkpoint.getSearchResults().isEmpty()) {
+            input.put(TravelState.SEARCH_RESULTS, checkpoint.getSearchResults());
+        }
+        if (checkpoint.getMarkdown() != null && !checkpoint.getMarkdown().isBlank()) {
+            input.put(TravelState.MARKDOWN, checkpoint.getMarkdown());
+        }
+        return input;
+    }
+
+    private void write(TravelStateModels.TravelCheckpoint checkpoint, String status) {
+        checkpoint.setStatus(status);
+        checkpoint.setUpdatedAt(System.currentTimeMillis());
+        try {
+            redisClient.set(REDIS_TRAVEL_RUN + checkpoint.getRunId(), checkpoint, TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("旅行规划检查点保存失败，runId: {}", checkpoint.getRunId(), e);
+        }
+    }
+
+    private String nvl(String s) {
+        return s == null ? "" : s;
+    }
+}
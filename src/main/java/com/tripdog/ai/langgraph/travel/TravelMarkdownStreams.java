@@ -0,0 +1,30 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * 路书流式输出的订阅表：调用方按 runId 注册增量回调，生成节点据此决定是否流式生成。
+ * 回调不进入图状态，避免共享的已编译图持有请求级对象。
+ */
+@Component
+public class TravelMarkdownStreams {
+
+    private final Map<String, Consumer<String>> listeners = new ConcurrentHashMap<>();
+
+    public void register(String runId, Consumer<String> listener) {
+        listeners.put(runId, listener);
+    }
+
+    public Consumer<String> get(String runId) {
+        return StringUtils.hasText(runId) ? listeners.get(runId) : null;
+    }
+
+    public void remove(String runId) {
+        listeners.remove(runId);
+    }
+}
@@ -0,0 +1,246 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 旅行规划排队执行器
+ * 同时执行的规划数受 max-concurrency 限制，其余请求排队；队列按 优先级 → 用户轮次 → 提交顺序 出队，
+ * 同一用户连续提交的任务依次落入后续轮次，不会挤占其他用户。排队位置变化时回调通知调用方
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TravelPlanQueue {
+
+    /**
+     * 规划优先级：续跑的任务已完成部分节点，优先执行
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL
+    }
+
+    private static final Comparator<Ticket<?>> ORDER = Comparator
+        .comparing((Ticket<?> t) -> t.priority)
+        .thenComparingLong(t -> t.round)
+        .thenComparingLong(t -> t.seq);
+
+    private final ExecutorService travelPlanExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${travel.plan.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${travel.plan.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${travel.plan.max-queued-per-user:2}")
+    private int maxQueuedPerUser;
+
+    private final Object lock = new Object();
+    private final TreeSet<Ticket<?>> queue = new TreeSet<>(ORDER);
+    /**
+     * 用户最近一个排队任务所在轮次，任务出队或取消后清理
+     */
+    private final Map<Long, Long> userRounds = new HashMap<>();
+    private long currentRound;
+    private long seq;
+    private int running;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("travel.plan.queue.size", this, q -> q.queued())
+            .description("排队中的旅行规划数")
+            .register(meterRegistry);
+        Gauge.builder("travel.plan.running", this, q -> q.running())
+            .description("执行中的旅行规划数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 提交规划任务，队列已满或该用户排队任务过多时返回 null
+     *
+     * @param onQueuePosition 排队位置（从 1 开始）变化时回调，可为 null
+     */
+    public <T> Ticket<T> submit(Long userId, Priority priority, Callable<T> task, IntConsumer onQueuePosition) {
+        Ticket<T> ticket;
+        synchronized (lock) {
+            long queuedOfUser = queue.stream().filter(t -> Objects.equals(t.userId, userId)).count();
+            if (queue.size() >= queueCapacity || queuedOfUser >= maxQueuedPerUser) {
+                return null;
+            }
+            Long lastRound = userRounds.get(userId);
+            long round = lastRound == null ? currentRound : Math.max(currentRound, lastRound + 1);
+            userRounds.put(userId, round);
+            ticket = new Ticket<>(userId, priority, round, seq++, task, onQueuePosition);
+            queue.add(ticket);
+        }
+        dispatch();
+        notifyPositions();
+        return ticket;
+    }
+
+    private void dispatch() {
+        List<Ticket<?>> toStart = new ArrayList<>();
+        synchronized (lock) {
+            while (running < maxConcurrency && !queue.isEmpty()) {
+                Ticket<?> ticket = queue.pollFirst();
+                running++;
+                currentRound = Math.max(currentRound, ticket.round);
+                if (Objects.equals(userRounds.get(ticket.userId), ticket.round)) {
+                    userRounds.remove(ticket.userId);
+                }
+                toStart.add(ticket);
+            }
+        }
+        for (Ticket<?> ticket : toStart) {
+            try {
+                travelPlanExecutor.execute(() -> run(ticket));
+            } catch (Exception e) {
+                ticket.future.completeExceptionally(e);
+                finished();
+            }
+        }
+        if (!toStart.isEmpty()) {
+            notifyPositions();
+        }
+    }
+
+    private <T> void run(Ticket<T> ticket) {
+        ticket.worker = Thread.currentThread();
+        try {
+            if (!ticket.future.isDone()) {
+                ticket.future.complete(ticket.task.call());
+            }
+        } catch (Throwable e) {
+            ticket.future.completeExceptionally(e);
+        } finally {
+            ticket.worker = null;
+            Thread.interrupted();
+            finished();
+        }
+    }
+
+    private void finished() {
+        synchronized (lock) {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * 取消任务：排队中的任务直接移出队列并返回 true；已开始执行的任务中断其执行线程，返回 false
+     */
+    private boolean cancel(Ticket<?> ticket) {
+        boolean removed;
+        synchronized (lock) {
+            removed = queue.remove(ticket);
+            if (removed && Objects.equals(userRounds.get(ticket.userId), ticket.round)) {
+                queue.stream()
+                    .filter(t -> Objects.equals(t.userId, ticket.userId))
+                    .mapToLong(t -> t.round)
+                    .max()
+                    .ifPresentOrElse(r -> userRounds.put(ticket.userId, r), () -> userRounds.remove(ticket.userId));
+            }
+        }
+        if (removed) {
+            ticket.future.cancel(false);
+            notifyPositions();
+            return true;
+        }
+        Thread worker = ticket.worker;
+        if (worker != null && !ticket.future.isDone()) {
+            log.info("中断执行中的旅行规划，userId: {}", ticket.userId);
+            worker.interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 只通知位置发生变化的任务，回调在锁外执行
+     */
+    private void notifyPositions() {
+        List<Ticket<?>> snapshot;
+        synchronized (lock) {
+            snapshot = new ArrayList<>(queue);
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            Ticket<?> ticket = snapshot.get(i);
+            int position = i + 1;
+            if (ticket.onQueuePosition == null || ticket.lastPosition == position) {
+                continue;
+            }
+            ticket.lastPosition = position;
+            try {
+                ticket.onQueuePosition.accept(position);
+            } catch (Exception e) {
+                log.debug("排队位置通知失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private int queued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    private int running() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * 排队凭证，通过 future 获取执行结果；排队中被取消时 future 以 CancellationException 结束
+     */
+    public final class Ticket<T> {
+        private final Long userId;
+        private final Priority priority;
+        private final long round;
+        private final long seq;
+        private final Callable<T> task;
+        private final IntConsumer onQueuePosition;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile Thread worker;
+        private volatile int lastPosition;
+
+        private Ticket(Long userId, Priority priority, long round, long seq, Callable<T> task, IntConsumer onQueuePosition) {
+            this.userId = userId;
+            this.priority = priority;
+            this.round = round;
+            this.seq = seq;
+            this.task = task;
+            this.onQueuePosition = onQueuePosition;
+        }
+
+        public CompletableFuture<T> future() {
+            return future;
+        }
+
+        /**
+         * @return 任务是否在开始执行前被取消
+         */
+        public boolean cancel() {
+            return TravelPlanQueue.this.cancel(this);
+        }
+    }
+}
@@ -1,21 +1,40 @@
 package com.tripdog.ai.langgraph.travel;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.tripdog.ai.assistant.TravelPlaningAssistant;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import jakarta.annotation.PostConstruct;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.StateGraph;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.action.NodeAction;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tripdog.ai.AssistantService;
-import com.fasterxml.jackson.databind.JsonNode;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,7 +46,8 @@ import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
 
 /**
  * 旅行规划工作流（LangGraph4j）。
- * 将用户需求 -> POI 检索 -> 筛选 -> 路线 -> Markdown 路书。
+ * 将用户需求 -> POI 缓存 / 检索（景点/餐饮并行分支）-> 汇总去重 -> 筛选 -> 路线 -> Markdown 路书。
+ * 图在启动时编译一次并在所有请求间共享，节点只依赖入参状态，不持有请求级数据。
  */
 @Component
 @RequiredArgsConstructor
@@ -35,19 +55,73 @@ import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
 public class TravelPlannerGraph {
 
     private final AssistantService assistantService;
+    private final ExecutorService travelSearchExecutor;
+    private final TravelPoiCache travelPoiCache;
+    private final TravelMarkdownStreams travelMarkdownStreams;
+    public static final String SEARCH_DISPATCH = "search_dispatch";
+    public static final String SEARCH_SIGHT = "search_sight";
+    public static final String SEARCH_FOOD = "search_food";
     public static final String SEARCH = "search";
     public static final String FILTER = "filter";
     public static final String ROUTE = "route";
     public static final String GENERATE = "generate";
+    /**
+     * 景点检索按片区拆分的最大子查询数
+     */
+    private static final int MAX_SIGHT_PARTITIONS = 4;
+    /**
+     * 同名 POI 坐标距离小于该值时视为同一地点（公里）
+     */
+    private static final double DUPLICATE_DISTANCE_KM = 0.5;
+    private static final double MIN_RATING = 3.8;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public CompiledGraph<TravelState> compile() throws GraphStateException {
+    /**
+     * 单个检索分支的超时时间，超时的子查询被取消并按空结果处理，不影响整体规划
+     */
+    @Value("${travel.search.branch-timeout:PT90S}")
+    private Duration branchTimeout;
+
+    /**
+     * 检索子查询是否以流式方式调用模型并增量解析
+     */
+    @Value("${travel.search.streaming:true}")
+    private boolean streamingSearch;
+
+    @Value("${travel.generate.timeout:PT3M}")
+    private Duration generateTimeout;
+
+    private CompiledGraph<TravelState> compiledGraph;
+
+    @PostConstruct
+    public void init() throws GraphStateException {
+        long start = System.nanoTime();
+        this.compiledGraph = compile();
+        log.info("旅行规划工作流编译完成，耗时 {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 共享的已编译工作流，CompiledGraph 每次 invoke/stream 都会创建独立的执行上下文，可并发使用
+     */
+    public CompiledGraph<TravelState> graph() {
+        return compiledGraph;
+    }
+
+    private CompiledGraph<TravelState> compile() throws GraphStateException {
         return new StateGraph<>(TravelState.SCHEMA, TravelState::new)
+            .addNode(SEARCH_DISPATCH, node_async(searchDispatchNode()))
+            .addNode(SEARCH_SIGHT, searchSightNode())
+            .addNode(SEARCH_FOOD, searchFoodNode())
             .addNode("search", node_async(searchNode()))
             .addNode("filter", node_async(filterNode()))
             .addNode("route", node_async(routeNode()))
-            .addNode("generate", node_async(generateNode()))
-            .addEdge(START, "search")
+            .addNode("generate", generateNode())
+            .addEdge(START, SEARCH_DISPATCH)
+            // 并行边：景点与餐饮分支同时执行，完成后在 search 节点汇合
+            .addEdge(SEARCH_DISPATCH, SEARCH_SIGHT)
+            .addEdge(SEARCH_DISPATCH, SEARCH_FOOD)
+            .addEdge(SEARCH_SIGHT, "search")
+            .addEdge(SEARCH_FOOD, "search")
             .addEdge("search", "filter")
             .addEdge("filter", "route")
             .addEdge("route", "generate")
@@ -56,16 +130,80 @@ public class TravelPlannerGraph {
     }
 
     /**
-     * Node A: 调用百度地图 MCP，产出候选 POI（景点 + 餐饮）。
+     * Node A0: 已有检索结果（检查点恢复）或命中 POI 缓存时直接作为候选（过期缓存同时触发后台刷新）；
+     * 未命中时确定检索拆分方式，行程越长景点按片区拆分的子查询越多。
      */
-    private NodeAction<TravelState> searchNode() {
+    private NodeAction<TravelState> searchDispatchNode() {
+        return state -> {
+            // 从检查点恢复：已有检索结果，直接复用
+            if (!state.searchResults().isEmpty()) {
+                Map<String, Object> update = new HashMap<>(TravelState.withSearchCandidates(state.searchResults()));
+                update.put(TravelState.SEARCH_SKIPPED, true);
+                return update;
+            }
+            int partitions = Math.min(MAX_SIGHT_PARTITIONS, Math.max(1, (days(state) + 1) / 2));
+            String cacheKey = travelPoiCache.keyOf(state);
+            TravelPoiCache.Lookup lookup = travelPoiCache.get(cacheKey, state.destination());
+            if (lookup.stale()) {
+                TravelPlaningAssistant searchAssistant = assistantService.getTravelSearchAssistant();
+                List<SearchQuery> queries = new ArrayList<>(sightQueries(state, partitions));
+                queries.addAll(foodQueries(state));
+                List<String> prefs = state.tags();
+                travelPoiCache.refreshAsync(cacheKey, () -> mergePois(runBranch("refresh", searchAssistant, queries, prefs)));
+            }
+            Map<String, Object> update = new HashMap<>();
+            update.put(TravelState.SEARCH_PARTITIONS, partitions);
+            update.put(TravelState.POI_CACHE_KEY, cacheKey);
+            update.put(TravelState.SEARCH_SKIPPED, lookup.hit());
+            if (lookup.hit()) {
+                update.putAll(TravelState.withSearchCandidates(lookup.pois()));
+            }
+            return update;
+        };
+    }
+
+    /**
+     * Node A1: 景点检索分支，按片区拆分为多个子查询并发执行。
+     */
+    private AsyncNodeAction<TravelState> searchSightNode() {
+        return state -> {
+            if (state.searchSkipped()) {
+                return CompletableFuture.completedFuture(Map.of());
+            }
+            TravelPlaningAssistant searchAssistant = assistantService.getTravelSearchAssistant();
+            List<SearchQuery> queries = sightQueries(state, state.searchPartitions());
+            return CompletableFuture.supplyAsync(
+                () -> TravelState.withSearchCandidates(runBranch(SEARCH_SIGHT, searchAssistant, queries, state.tags())),
+                travelSearchExecutor);
+        };
+    }
+
+    /**
+     * Node A2: 餐饮检索分支。
+     */
+    private AsyncNodeAction<TravelState> searchFoodNode() {
         return state -> {
-            TravelPlaningAssistant travelAssistant = assistantService.getTravelPlaningAssistant();
-            String userQuery = buildSearchPrompt(state);
+            if (state.searchSkipped()) {
+                return CompletableFuture.completedFuture(Map.of());
+            }
+            TravelPlaningAssistant searchAssistant = assistantService.getTravelSearchAssistant();
+            List<SearchQuery> queries = foodQueries(state);
+            return CompletableFuture.supplyAsync(
+                () -> TravelState.withSearchCandidates(runBranch(SEARCH_FOOD, searchAssistant, queries, state.tags())),
+                travelSearchExecutor);
+        };
+    }
 
-            String result = travelAssistant.chat(userQuery);
-            List<TravelStateModels.Poi> pois = parsePoisFromJson(result);
-            return TravelState.withSearchResults(pois);
+    /**
+     * Node A: 汇总各检索分支的候选 POI，按名称 + 坐标去重；实时检索的结果写入缓存。
+     */
+    private NodeAction<TravelState> searchNode() {
+        return state -> {
+            List<TravelStateModels.Poi> merged = mergePois(state.searchCandidates());
+            if (!state.searchSkipped()) {
+                travelPoiCache.put(state.poiCacheKey(), merged);
+            }
+            return TravelState.withSearchResults(merged);
         };
     }
 
@@ -77,11 +215,8 @@ public class TravelPlannerGraph {
             List<TravelStateModels.Poi> results = state.searchResults();
             // 基于标签/评分的简单过滤示例；缺省直接透传。
             List<String> prefs = state.tags();
-            double minRating = 3.8;
             List<TravelStateModels.Poi> filtered = results.stream()
-                .filter(p -> p.getRating() == null || p.getRating() >= minRating)
-                .filter(p -> prefs.isEmpty() || p.getTags() == null || p.getTags().isEmpty()
-                        || p.getTags().stream().anyMatch(t -> prefs.contains(t)))
+                .filter(p -> matchesFilter(p, prefs))
                 .limit(20)
                 .collect(Collectors.toList());
             return TravelState.withSelectedPois(filtered.isEmpty() ? results : filtered);
@@ -89,7 +224,7 @@ public class TravelPlannerGraph {
     }
 
     /**
-     * Node C: 按天分配路线（示例：每 3 个 POI 一天，可按经纬度改进聚类）。
+     * Node C: 按地理位置将 POI 聚类到各天并排定游览顺序。
      */
     private NodeAction<TravelState> routeNode() {
         return state -> {
@@ -123,54 +258,218 @@ public class TravelPlannerGraph {
                 return TravelState.withRoutes(routes);
             }
 
-            int perDay = Math.max(1, (int) Math.ceil((double) pois.size() / days));
-            for (int day = 0; day < days; day++) {
-                int start = day * perDay;
-                int end = Math.min(start + perDay, pois.size());
-                if (start >= end) {
-                    break;
-                }
-                List<TravelStateModels.RouteItem> items = new ArrayList<>();
-                for (int idx = start; idx < end; idx++) {
-                    TravelStateModels.Poi poi = pois.get(idx);
-                    items.add(TravelStateModels.RouteItem.builder()
-                        .poiName(poi.getName())
-                        .type(poi.getType())
-                        .timeSlot(timeSlot(idx - start))
-                        .transport("打车/步行视距离")
-                        .tips("预留休息时间，避免过度紧凑")
-                        .build());
-                }
-                routes.add(TravelStateModels.RouteDay.builder()
-                    .dayIndex(day + 1)
-                    .theme("Day " + (day + 1) + " · " + nvl(state.destination()))
-                    .items(items)
-                    .build());
-            }
+            routes = TravelRoutePlanner.plan(pois, days, nvl(state.destination()));
             return TravelState.withRoutes(routes);
         };
     }
 
     /**
-     * Node D: 生成 Markdown 路书，调用 LLM 润色。
+     * Node D: 生成 Markdown 路书。调用方注册了流式回调时使用流式模型逐段推送，否则阻塞调用 LLM 润色。
      */
-    private NodeAction<TravelState> generateNode() {
+    private AsyncNodeAction<TravelState> generateNode() {
         return state -> {
             // 幂等保护：如果已有 markdown，直接返回，避免重复生成导致潜在循环
             if (StringUtils.hasText(state.markdown())) {
-                return TravelState.withMarkdown(state.markdown());
+                return CompletableFuture.completedFuture(TravelState.withMarkdown(state.markdown()));
             }
-            TravelPlaningAssistant travelAssistant = assistantService.getTravelPlaningAssistant();
             String prompt = buildMarkdownPrompt(state);
+            Consumer<String> listener = travelMarkdownStreams.get(state.runId());
+            if (listener == null) {
+                TravelPlaningAssistant travelAssistant = travelAssistant(state);
+                return CompletableFuture.completedFuture(TravelState.withMarkdown(travelAssistant.chat(prompt)));
+            }
 
-            String result = travelAssistant.chat(prompt);
-            return TravelState.withMarkdown(result);
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            assistantService.getTravelMarkdownAssistant().generate(prompt)
+                .onPartialResponse(token -> {
+                    try {
+                        listener.accept(token);
+                    } catch (Exception e) {
+                        // 推送失败（如客户端断开）不影响生成与上传
+                        log.debug("路书增量推送失败: {}", e.getMessage());
+                    }
+                })
+                .onCompleteResponse(response -> future.complete(TravelState.withMarkdown(response.aiMessage().text())))
+                .onError(future::completeExceptionally)
+                .start();
+            return future.orTimeout(generateTimeout.toMillis(), TimeUnit.MILLISECONDS);
         };
     }
 
     // ===== helpers =====
 
-    private String buildSearchPrompt(TravelState state) {
+    /**
+     * 知识库检索条件取自状态中的请求上下文并显式传入，节点所在的共享线程上不留下任何用户信息
+     */
+    private TravelPlaningAssistant travelAssistant(TravelState state) {
+        return assistantService.getTravelPlaningAssistant(state.userId(), state.roleId(), state.conversationId());
+    }
+
+    /**
+     * 在虚拟线程上并发执行同一分支的子查询，整体受分支超时约束；
+     * 子查询边接收边解析，已解析出的 POI 即使子查询随后超时或失败也会保留。
+     */
+    private List<TravelStateModels.Poi> runBranch(String branch, TravelPlaningAssistant travelAssistant,
+                                                  List<SearchQuery> queries, List<String> prefs) {
+        Queue<TravelStateModels.Poi> sink = new ConcurrentLinkedQueue<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Callable<Integer>> tasks = queries.stream()
+            .<Callable<Integer>>map(query -> () -> searchOnce(travelAssistant, query, prefs, sink, closed))
+            .toList();
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<Integer>> futures =
+                travelSearchExecutor.invokeAll(tasks, branchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            for (Future<Integer> future : futures) {
+                try {
+                    future.get();
+                } catch (CancellationException e) {
+                    log.warn("检索分支 {} 子查询超时，保留已解析的候选", branch);
+                } catch (Exception e) {
+                    log.warn("检索分支 {} 子查询失败，保留已解析的候选: {}", branch, e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed.set(true);
+        }
+        List<TravelStateModels.Poi> pois = new ArrayList<>(sink);
+        log.info("检索分支 {} 完成，子查询 {} 个，候选 {} 条，耗时 {} ms",
+            branch, tasks.size(), pois.size(), System.currentTimeMillis() - start);
+        return pois;
+    }
+
+    /**
+     * 执行单个子查询。流式模式下模型输出逐段送入解析器，每个 POI 元素闭合即进入候选，
+     * 通过筛选条件的候选达到本次上限或分支超时后取消模型流，不再接收剩余输出。
+     *
+     * @return 通过筛选条件的候选数
+     */
+    private int searchOnce(TravelPlaningAssistant travelAssistant, SearchQuery query, List<String> prefs,
+                           Queue<TravelStateModels.Poi> sink, AtomicBoolean closed) throws Exception {
+        if (!streamingSearch) {
+            List<TravelStateModels.Poi> pois = StreamingPoiParser.parse(travelAssistant.chat(query.prompt()));
+            sink.addAll(pois);
+            return (int) pois.stream().filter(p -> matchesFilter(p, prefs)).count();
+        }
+        AtomicInteger accepted = new AtomicInteger();
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        StreamingPoiParser parser = new StreamingPoiParser(poi -> {
+            if (closed.get() || done.isDone()) {
+                return;
+            }
+            sink.add(poi);
+            if (matchesFilter(poi, prefs) && accepted.incrementAndGet() >= query.limit()) {
+                done.complete(accepted.get());
+            }
+        });
+        AtomicReference<StreamingHandle> handle = new AtomicReference<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        travelAssistant.chatStream(query.prompt())
+            .onPartialResponseWithContext((partial, context) -> {
+                handle.set(context.streamingHandle());
+                if (closed.get() || done.isDone()) {
+                    // 已达上限或分支已超时，停止接收剩余输出
+                    context.streamingHandle().cancel();
+                    return;
+                }
+                parser.feed(partial.text());
+            })
+            .onCompleteResponse(response -> {
+                completed.set(true);
+                parser.finish();
+                done.complete(accepted.get());
+            })
+            .onError(done::completeExceptionally)
+            .start();
+        try {
+            return done.get();
+        } finally {
+            // 提前结束（达到上限）或被分支超时中断时取消模型流，释放连接与 token 消耗
+            StreamingHandle h = handle.get();
+            if (h != null && !completed.get() && !h.isCancelled()) {
+                h.cancel();
+            }
+        }
+    }
+
+    /**
+     * 候选筛选条件：评分不低于阈值（缺省放行），且与偏好标签有交集（无偏好或无标签时放行）
+     */
+    private boolean matchesFilter(TravelStateModels.Poi poi, List<String> prefs) {
+        if (poi.getRating() != null && poi.getRating() < MIN_RATING) {
+            return false;
+        }
+        return prefs.isEmpty() || poi.getTags() == null || poi.getTags().isEmpty()
+            || poi.getTags().stream().anyMatch(prefs::contains);
+    }
+
+    /**
+     * 同名且坐标相近（或任一方缺少坐标）的 POI 视为重复，保留先出现的一条并补齐缺失的评分/坐标。
+     */
+    private List<TravelStateModels.Poi> mergePois(List<TravelStateModels.Poi> candidates) {
+        Map<String, List<TravelStateModels.Poi>> byName = new LinkedHashMap<>();
+        List<TravelStateModels.Poi> merged = new ArrayList<>();
+        for (TravelStateModels.Poi poi : candidates) {
+            if (poi == null || !StringUtils.hasText(poi.getName())) {
+                continue;
+            }
+            String nameKey = poi.getName().replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+            List<TravelStateModels.Poi> sameName = byName.computeIfAbsent(nameKey, k -> new ArrayList<>());
+            TravelStateModels.Poi existing = sameName.stream()
+                .filter(p -> !TravelRoutePlanner.hasCoordinate(p) || !TravelRoutePlanner.hasCoordinate(poi)
+                    || TravelRoutePlanner.distanceKm(p, poi) < DUPLICATE_DISTANCE_KM)
+                .findFirst()
+                .orElse(null);
+            if (existing == null) {
+                sameName.add(poi);
+                merged.add(poi);
+                continue;
+            }
+            if (existing.getRating() == null) {
+                existing.setRating(poi.getRating());
+            }
+            if (!TravelRoutePlanner.hasCoordinate(existing) && TravelRoutePlanner.hasCoordinate(poi)) {
+                existing.setLatitude(poi.getLatitude());
+                existing.setLongitude(poi.getLongitude());
+            }
+        }
+        return merged;
+    }
+
+    private List<SearchQuery> sightQueries(TravelState state, int partitions) {
+        int perPartition = Math.max(3, Math.min(15, days(state) * 3) / partitions);
+        List<SearchQuery> queries = new ArrayList<>();
+        for (int i = 1; i <= partitions; i++) {
+            queries.add(new SearchQuery(buildSearchPrompt(state, "sight", perPartition, i, partitions), perPartition));
+        }
+        return queries;
+    }
+
+    private List<SearchQuery> foodQueries(TravelState state) {
+        int limit = Math.max(4, Math.min(10, days(state) * 2));
+        return List.of(new SearchQuery(buildSearchPrompt(state, "food", limit, 1, 1), limit));
+    }
+
+    /**
+     * 检索子查询：提示词与要求返回的条数上限
+     */
+    private record SearchQuery(String prompt, int limit) {
+    }
+
+    private int days(TravelState state) {
+        return (state.days() == null || state.days() <= 0) ? 3 : state.days();
+    }
+
+    /**
+     * 检索提示词只使用 POI 缓存 key 覆盖的字段，检索结果才能跨用户共享；用户的需求原文只在生成路书时使用
+     */
+    private String buildSearchPrompt(TravelState state, String type, int limit, int partition, int partitions) {
+        String scope = "sight".equals(type) ? "景点" : "餐饮";
+        String partitionHint = partitions <= 1 ? "" : """
+            请将目的地主要游览区域按由北向南的方位大致划分为 %d 个片区，本次只返回第 %d 个片区内的景点。
+            """.formatted(partitions, partition);
         return """
             你是一名旅行数据规划员，使用内置高德/地图工具检索。
             请严格返回 JSON 数组，不要输出 Markdown，不要额外解释。
@@ -179,37 +478,57 @@ public class TravelPlannerGraph {
             天数: %s
             人群: %s
             偏好: %s
-            其他需求原文: %s
-            需要含景点与餐饮候选，总计不超过 25 条。
-            示例:
+            本次只检索%s候选（type 固定为 %s），不超过 %d 条。
+            %s示例:
             [
-              {"name":"XX景点","type":"sight","district":"XX区","lat":0,"lng":0,"rating":4.5,"tags":["亲子"],"raw":"原始描述"},
-              {"name":"XX餐厅","type":"food","district":"XX区","lat":0,"lng":0,"rating":4.2,"tags":["海鲜"],"raw":"原始描述"}
+              {"name":"XX%s","type":"%s","district":"XX区","lat":0,"lng":0,"rating":4.5,"tags":["亲子"],"raw":"原始描述"}
             ]
             """.formatted(
             nvl(state.destination()),
-            (state.days() == null || state.days() <= 0) ? "3" : state.days(),
+            days(state),
             nvl(state.people()),
             state.tags().isEmpty() ? "无" : String.join(",", state.tags()),
-            nvl(state.rawRequirement())
+            scope, type, limit,
+            partitionHint,
+            "sight".equals(type) ? "景点" : "餐厅", type
         );
     }
 
     private String buildMarkdownPrompt(TravelState state) {
-        // 将路线与原始 POI 候选一并提供，避免空路线时丢失检索结果
+        // 将路线与 POI 候选一并提供，避免空路线时丢失检索结果；已排入路线时只保留路线中用到的 POI
+        List<TravelStateModels.RouteDay> routes = state.routes() == null ? List.of() : state.routes();
+        List<TravelStateModels.Poi> candidates = state.searchResults() == null ? List.of() : state.searchResults();
+        if (!routes.isEmpty()) {
+            Set<String> routed = routes.stream()
+                .flatMap(day -> day.getItems().stream())
+                .map(TravelStateModels.RouteItem::getPoiName)
+                .collect(Collectors.toSet());
+            candidates = candidates.stream()
+                .filter(p -> routed.contains(p.getName()))
+                .map(p -> TravelStateModels.Poi.builder()
+                    .name(p.getName())
+                    .district(p.getDistrict())
+                    .rating(p.getRating())
+                    .tags(p.getTags())
+                    .raw(p.getRaw())
+                    .build())
+                .toList();
+        }
         Map<String, Object> payload = Map.of(
             "destination", nvl(state.destination()),
             "days", state.days(),
             "people", nvl(state.people()),
             "tags", state.tags(),
-            "routes", state.routes() == null ? List.of() : state.routes(),
-            "poiCandidates", state.searchResults() == null ? List.of() : state.searchResults()
+            "requirement", nvl(state.rawRequirement()),
+            "routes", routes,
+            "poiCandidates", candidates
         );
 
         return """
             你是一名旅行定制师，请基于下列数据生成 Markdown 路书：
             - 禁止再调用任何外部工具/MCP/搜索，仅使用下方提供的数据
             - 如果 routes 为空，可用 poiCandidates 自行编排行程
+            - requirement 为用户的需求原文，安排行程与取舍 POI 时优先满足其中的要求
             - 需要按天列出早/午/晚安排
             - 为每个 POI 提供一句玩法/理由
             - 提供交通建议和注意事项
@@ -221,60 +540,6 @@ public class TravelPlannerGraph {
             """.formatted(safeJson(payload));
     }
 
-    private List<TravelStateModels.Poi> parsePoisFromJson(String json) {
-        if (json == null || json.isBlank()) {
-            return List.of();
-        }
-        // 1) 清理代码块标记
-        String cleaned = json
-            .replace("```json", "")
-            .replace("```", "")
-            .trim();
-
-        // 2) 尝试在返回体中定位 "results":[ ... ]，避免工具调用日志干扰
-        int resultsIdx = cleaned.indexOf("\"results\"");
-        if (resultsIdx >= 0) {
-            int firstBracket = cleaned.indexOf('[', resultsIdx);
-            int lastBracket = cleaned.indexOf(']', firstBracket);
-            if (firstBracket > 0 && lastBracket > firstBracket) {
-                cleaned = cleaned.substring(firstBracket, lastBracket + 1);
-            }
-        } else {
-            // 3) 回退：提取首个 [ ... ] 段落
-            int l = cleaned.indexOf('[');
-            int r = cleaned.lastIndexOf(']');
-            if (l >= 0 && r > l) {
-                cleaned = cleaned.substring(l, r + 1);
-            } else if (cleaned.startsWith("{") && cleaned.endsWith("}")) {
-                cleaned = "[" + cleaned + "]";
-            }
-        }
-
-        try {
-            // 优先按 JSON AST 方式提取，兼容 {"results":[...]} 或 {"data":{"results":[...]}} 等返回
-            JsonNode root = objectMapper.readTree(cleaned);
-            if (root.isObject()) {
-                if (root.has("results")) {
-                    root = root.get("results");
-                } else if (root.has("data")) {
-                    root = root.get("data");
-                    if (root.has("results")) {
-                        root = root.get("results");
-                    }
-                }
-            }
-            if (root.isArray()) {
-                return objectMapper.convertValue(root, new TypeReference<List<TravelStateModels.Poi>>() {});
-            }
-
-            // 回退：直接按列表反序列化
-            return objectMapper.readValue(cleaned, new TypeReference<List<TravelStateModels.Poi>>() {});
-        } catch (Exception e) {
-            log.warn("解析 POI JSON 失败，返回空列表。cleaned={} | err={}", cleaned, e.getMessage());
-            return List.of();
-        }
-    }
-
     private String safeJson(Object obj) {
         try {
             return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
@@ -287,21 +552,12 @@ public class TravelPlannerGraph {
         return s == null ? "" : s;
     }
 
-    private String timeSlot(int idx) {
-        return switch (idx) {
-            case 0 -> "morning";
-            case 1 -> "afternoon";
-            default -> "evening";
-        };
-    }
-
     /**
      * 演示如何在外部运行图并获得最终 state。
      */
     public TravelState runOnce(Map<String, Object> input) throws GraphStateException {
-        var graph = compile();
         TravelState finalState = null;
-        for (var s : graph.stream(input)) {
+        for (var s : compiledGraph.stream(input)) {
             finalState = s.state();
         }
         return finalState;
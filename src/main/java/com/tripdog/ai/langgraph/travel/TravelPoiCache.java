@@ -0,0 +1,186 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.tripdog.common.middleware.RedisClient;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import static com.tripdog.common.Constants.REDIS_TRAVEL_POI_CACHE;
+import static com.tripdog.common.Constants.REDIS_TRAVEL_POI_REFRESH_LOCK;
+
+/**
+ * 旅行规划 POI 检索结果缓存
+ * 以（目的地, 归一化偏好, 人群, 天数区间）为 key，超过新鲜期的结果仍直接返回，同时后台刷新（stale-while-revalidate），
+ * 超过最大过期时间由 Redis TTL 淘汰；
+ * 检索使用不挂载用户知识库的助手（AssistantService#getTravelSearchAssistant），检索提示词也只包含 key 中的字段，
+ * 用户的需求原文只用于生成路书，结果与用户无关，可跨用户共享
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TravelPoiCache {
+    /**
+     * 按目的地打标签的上限，超出后归入 other，避免用户输入导致指标基数膨胀
+     */
+    private static final int MAX_DESTINATION_TAGS = 200;
+    private static final String OTHER_DESTINATION = "other";
+    private static final long REFRESH_LOCK_MINUTES = 5;
+
+    private final RedisClient redisClient;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService travelSearchExecutor;
+
+    @Value("${travel.poi-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${travel.poi-cache.fresh-ttl:PT6H}")
+    private Duration freshTtl;
+
+    @Value("${travel.poi-cache.max-stale:PT24H}")
+    private Duration maxStale;
+
+    private final Map<String, String> destinationTags = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存查询结果
+     *
+     * @param pois  命中的 POI，未命中为 null
+     * @param stale 是否已超过新鲜期
+     */
+    public record Lookup(List<TravelStateModels.Poi> pois, boolean stale) {
+        public boolean hit() {
+            return pois != null;
+        }
+    }
+
+    /**
+     * 根据规划请求生成缓存 key，缓存关闭或缺少目的地时返回空串
+     */
+    public String keyOf(TravelState state) {
+        if (!enabled || !StringUtils.hasText(state.destination())) {
+            return "";
+        }
+        String tags = state.tags().stream()
+            .filter(StringUtils::hasText)
+            .map(this::normalize)
+            .distinct()
+            .sorted()
+            .reduce((a, b) -> a + "," + b)
+            .orElse("");
+        String raw = normalize(state.destination()) + "|" + tags + "|" + normalize(state.people()) + "|" + daysBucket(state.days());
+        return REDIS_TRAVEL_POI_CACHE + DigestUtils.md5DigestAsHex(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Lookup get(String key, String destination) {
+        if (!StringUtils.hasText(key)) {
+            return new Lookup(null, false);
+        }
+        TravelStateModels.PoiCacheEntry entry;
+        try {
+            entry = redisClient.get(key, TravelStateModels.PoiCacheEntry.class);
+        } catch (Exception e) {
+            log.warn("读取 POI 缓存失败，key: {}", key, e);
+            entry = null;
+        }
+        if (entry == null || entry.getPois() == null || entry.getPois().isEmpty()) {
+            record(destination, "miss");
+            return new Lookup(null, false);
+        }
+        long ageMillis = Math.max(0, System.currentTimeMillis() - entry.getCachedAt());
+        boolean stale = ageMillis > freshTtl.toMillis();
+        record(destination, stale ? "stale" : "hit");
+        DistributionSummary.builder("travel.poi.cache.age")
+            .description("命中的 POI 缓存条目年龄")
+            .baseUnit("seconds")
+            .tag("destination", destinationTag(destination))
+            .register(meterRegistry)
+            .record(TimeUnit.MILLISECONDS.toSeconds(ageMillis));
+        return new Lookup(entry.getPois(), stale);
+    }
+
+    public void put(String key, List<TravelStateModels.Poi> pois) {
+        if (!StringUtils.hasText(key) || pois == null || pois.isEmpty()) {
+            return;
+        }
+        try {
+            TravelStateModels.PoiCacheEntry entry = new TravelStateModels.PoiCacheEntry(pois, System.currentTimeMillis());
+            redisClient.set(key, entry, freshTtl.plus(maxStale).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入 POI 缓存失败，key: {}", key, e);
+        }
+    }
+
+    /**
+     * 后台刷新过期条目，多节点/多请求同时命中过期数据时只有一个刷新任务执行
+     */
+    public void refreshAsync(String key, Supplier<List<TravelStateModels.Poi>> loader) {
+        String lockKey = REDIS_TRAVEL_POI_REFRESH_LOCK + key.substring(REDIS_TRAVEL_POI_CACHE.length());
+        String owner = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisClient.setIfAbsent(lockKey, owner, REFRESH_LOCK_MINUTES, TimeUnit.MINUTES))) {
+            return;
+        }
+        travelSearchExecutor.execute(() -> {
+            try {
+                put(key, loader.get());
+            } catch (Exception e) {
+                log.warn("刷新 POI 缓存失败，key: {}", key, e);
+            } finally {
+                redisClient.deleteIfEquals(lockKey, owner);
+            }
+        });
+    }
+
+    private void record(String destination, String result) {
+        meterRegistry.counter("travel.poi.cache", "destination", destinationTag(destination), "result", result).increment();
+    }
+
+    private String destinationTag(String destination) {
+        String normalized = normalize(destination);
+        if (destinationTags.containsKey(normalized)) {
+            return normalized;
+        }
+        if (destinationTags.size() >= MAX_DESTINATION_TAGS) {
+            return OTHER_DESTINATION;
+        }
+        destinationTags.putIfAbsent(normalized, normalized);
+        return normalized;
+    }
+
+    private String normalize(String s) {
+        return Objects.toString(s, "").replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 天数按区间归并，相近天数的行程共享候选池
+     */
+    private String daysBucket(Integer days) {
+        int d = (days == null || days <= 0) ? 3 : days;
+        if (d <= 2) {
+            return "1-2";
+        }
+        if (d <= 4) {
+            return "3-4";
+        }
+        if (d <= 7) {
+            return "5-7";
+        }
+        return "8+";
+    }
+}
@@ -0,0 +1,413 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 行程路线规划
+ * 景点按地理位置做 k-medoids 聚类（haversine 距离，容量约束保证每天数量均衡）分配到各天，
+ * 每天内用最近邻 + 2-opt 排定游览顺序，餐饮按就近原则插入午餐/晚餐时段。
+ * 纯内存计算，50 个 POI 以内为毫秒级。
+ */
+public final class TravelRoutePlanner {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final int MAX_ITERATIONS = 20;
+    private static final double WALK_KM = 1.2;
+    private static final double SHORT_RIDE_KM = 5.0;
+
+    private TravelRoutePlanner() {
+    }
+
+    /**
+     * 生成按天的路线
+     *
+     * @param pois        候选 POI（景点 + 餐饮）
+     * @param days        行程天数
+     * @param destination 目的地，用于每日主题
+     */
+    public static List<TravelStateModels.RouteDay> plan(List<TravelStateModels.Poi> pois, int days, String destination) {
+        List<TravelStateModels.Poi> sights = new ArrayList<>();
+        List<TravelStateModels.Poi> foods = new ArrayList<>();
+        for (TravelStateModels.Poi poi : pois) {
+            if ("food".equalsIgnoreCase(poi.getType())) {
+                foods.add(poi);
+            } else {
+                sights.add(poi);
+            }
+        }
+
+        List<List<TravelStateModels.Poi>> sightDays = cluster(sights, days);
+        List<List<TravelStateModels.Poi>> foodDays = assignFoods(foods, sightDays);
+
+        List<TravelStateModels.RouteDay> routes = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            List<TravelStateModels.Poi> ordered = orderRoute(sightDays.get(day));
+            List<TravelStateModels.RouteItem> items = buildItems(ordered, new ArrayList<>(foodDays.get(day)));
+            if (items.isEmpty()) {
+                continue;
+            }
+            routes.add(TravelStateModels.RouteDay.builder()
+                .dayIndex(routes.size() + 1)
+                .theme("Day " + (routes.size() + 1) + " · " + (destination == null ? "" : destination))
+                .items(items)
+                .build());
+        }
+        return routes;
+    }
+
+    /**
+     * 两点间球面距离（公里）
+     */
+    public static double distanceKm(TravelStateModels.Poi a, TravelStateModels.Poi b) {
+        double dLat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        double dLng = Math.toRadians(b.getLongitude() - a.getLongitude());
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(a.getLatitude())) * Math.cos(Math.toRadians(b.getLatitude()))
+            * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(h));
+    }
+
+    /**
+     * 是否带有效坐标（模型常以 0,0 占位）
+     */
+    public static boolean hasCoordinate(TravelStateModels.Poi poi) {
+        return poi.getLatitude() != null && poi.getLongitude() != null
+            && !(poi.getLatitude() == 0 && poi.getLongitude() == 0);
+    }
+
+    // ===== 聚类 =====
+
+    /**
+     * 容量约束的 k-medoids：每天最多 ceil(n/k) 个景点；无坐标的景点补到数量最少的天
+     */
+    private static List<List<TravelStateModels.Poi>> cluster(List<TravelStateModels.Poi> sights, int days) {
+        List<List<TravelStateModels.Poi>> result = emptyDays(days);
+        List<TravelStateModels.Poi> located = sights.stream().filter(TravelRoutePlanner::hasCoordinate).toList();
+        List<TravelStateModels.Poi> unlocated = sights.stream().filter(p -> !hasCoordinate(p)).toList();
+
+        int n = located.size();
+        int k = Math.min(days, n);
+        if (k > 0) {
+            double[][] dist = distanceMatrix(located);
+            int capacity = (int) Math.ceil((double) n / k);
+            int[] medoids = initMedoids(dist, k);
+            int[] assignment = assign(dist, medoids, capacity);
+            for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+                int[] updated = updateMedoids(dist, assignment, k, medoids);
+                if (Arrays.equals(updated, medoids)) {
+                    break;
+                }
+                medoids = updated;
+                assignment = assign(dist, medoids, capacity);
+            }
+            for (int i = 0; i < n; i++) {
+                result.get(assignment[i]).add(located.get(i));
+            }
+        }
+        for (TravelStateModels.Poi poi : unlocated) {
+            result.stream().min(Comparator.comparingInt(List::size)).ifPresent(d -> d.add(poi));
+        }
+        return result;
+    }
+
+    /**
+     * 最远点初始化：首个中心取到其余点距离和最小的点，之后每次取距已选中心最远的点
+     */
+    private static int[] initMedoids(double[][] dist, int k) {
+        int n = dist.length;
+        int[] medoids = new int[k];
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += dist[i][j];
+            }
+            if (sum < best) {
+                best = sum;
+                medoids[0] = i;
+            }
+        }
+        double[] nearest = new double[n];
+        for (int i = 0; i < n; i++) {
+            nearest[i] = dist[i][medoids[0]];
+        }
+        for (int c = 1; c < k; c++) {
+            int far = 0;
+            for (int i = 1; i < n; i++) {
+                if (nearest[i] > nearest[far]) {
+                    far = i;
+                }
+            }
+            medoids[c] = far;
+            for (int i = 0; i < n; i++) {
+                nearest[i] = Math.min(nearest[i], dist[i][far]);
+            }
+        }
+        return medoids;
+    }
+
+    /**
+     * 按距离从近到远贪心分配，簇满后分配给次近的中心
+     */
+    private static int[] assign(double[][] dist, int[] medoids, int capacity) {
+        int n = dist.length;
+        int k = medoids.length;
+        List<int[]> pairs = new ArrayList<>(n * k);
+        for (int i = 0; i < n; i++) {
+            for (int c = 0; c < k; c++) {
+                pairs.add(new int[]{i, c});
+            }
+        }
+        pairs.sort(Comparator.comparingDouble(p -> dist[p[0]][medoids[p[1]]]));
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        int[] sizes = new int[k];
+        for (int[] p : pairs) {
+            if (assignment[p[0]] < 0 && sizes[p[1]] < capacity) {
+                assignment[p[0]] = p[1];
+                sizes[p[1]]++;
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * 每个簇内取到簇内其他点距离和最小的点作为新中心
+     */
+    private static int[] updateMedoids(double[][] dist, int[] assignment, int k, int[] current) {
+        int[] medoids = current.clone();
+        double[] best = new double[k];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int i = 0; i < assignment.length; i++) {
+            double sum = 0;
+            for (int j = 0; j < assignment.length; j++) {
+                if (assignment[j] == assignment[i]) {
+                    sum += dist[i][j];
+                }
+            }
+            if (sum < best[assignment[i]]) {
+                best[assignment[i]] = sum;
+                medoids[assignment[i]] = i;
+            }
+        }
+        return medoids;
+    }
+
+    /**
+     * 餐饮就近分配给景点中心最近的一天，每天最多 ceil(m/days) 家，无坐标的补到数量最少的天
+     */
+    private static List<List<TravelStateModels.Poi>> assignFoods(List<TravelStateModels.Poi> foods,
+                                                                 List<List<TravelStateModels.Poi>> sightDays) {
+        int days = sightDays.size();
+        List<List<TravelStateModels.Poi>> result = emptyDays(days);
+        if (foods.isEmpty()) {
+            return result;
+        }
+        int capacity = (int) Math.ceil((double) foods.size() / days);
+        List<TravelStateModels.Poi> centers = new ArrayList<>();
+        for (List<TravelStateModels.Poi> day : sightDays) {
+            centers.add(centroid(day));
+        }
+        List<TravelStateModels.Poi> pending = new ArrayList<>();
+        for (TravelStateModels.Poi food : foods) {
+            if (!hasCoordinate(food)) {
+                pending.add(food);
+                continue;
+            }
+            int target = -1;
+            double best = Double.MAX_VALUE;
+            for (int d = 0; d < days; d++) {
+                if (result.get(d).size() >= capacity || centers.get(d) == null) {
+                    continue;
+                }
+                double dist = distanceKm(centers.get(d), food);
+                if (dist < best) {
+                    best = dist;
+                    target = d;
+                }
+            }
+            if (target >= 0) {
+                result.get(target).add(food);
+            } else {
+                pending.add(food);
+            }
+        }
+        for (TravelStateModels.Poi food : pending) {
+            result.stream().min(Comparator.comparingInt(List::size)).ifPresent(d -> d.add(food));
+        }
+        return result;
+    }
+
+    // ===== 路线排序 =====
+
+    /**
+     * 最近邻构造初始路径，再用 2-opt 消除交叉；无坐标的 POI 排在末尾
+     */
+    private static List<TravelStateModels.Poi> orderRoute(List<TravelStateModels.Poi> pois) {
+        List<TravelStateModels.Poi> located = new ArrayList<>(pois.stream().filter(TravelRoutePlanner::hasCoordinate).toList());
+        List<TravelStateModels.Poi> ordered = new ArrayList<>();
+        if (!located.isEmpty()) {
+            double[][] dist = distanceMatrix(located);
+            int n = located.size();
+            boolean[] visited = new boolean[n];
+            int[] path = new int[n];
+            // 从离其他点最远的端点出发，开放路径不必回到起点
+            int current = 0;
+            double farthest = -1;
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += dist[i][j];
+                }
+                if (sum > farthest) {
+                    farthest = sum;
+                    current = i;
+                }
+            }
+            for (int step = 0; step < n; step++) {
+                path[step] = current;
+                visited[current] = true;
+                int next = -1;
+                for (int j = 0; j < n; j++) {
+                    if (!visited[j] && (next < 0 || dist[current][j] < dist[current][next])) {
+                        next = j;
+                    }
+                }
+                current = next;
+            }
+            twoOpt(path, dist);
+            for (int idx : path) {
+                ordered.add(located.get(idx));
+            }
+        }
+        pois.stream().filter(p -> !hasCoordinate(p)).forEach(ordered::add);
+        return ordered;
+    }
+
+    /**
+     * 开放路径的 2-opt：反转 [i, j] 区间若能缩短总距离则接受，直到没有改进
+     */
+    private static void twoOpt(int[] path, double[][] dist) {
+        int n = path.length;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 1; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double before = dist[path[i - 1]][path[i]] + (j + 1 < n ? dist[path[j]][path[j + 1]] : 0);
+                    double after = dist[path[i - 1]][path[j]] + (j + 1 < n ? dist[path[i]][path[j + 1]] : 0);
+                    if (after + 1e-9 < before) {
+                        reverse(path, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 上午游览前半程景点，午餐选离上午最后一站最近的餐厅，下午游览后半程，晚餐选离最后一站最近的餐厅
+     */
+    private static List<TravelStateModels.RouteItem> buildItems(List<TravelStateModels.Poi> sights,
+                                                                List<TravelStateModels.Poi> foods) {
+        List<TravelStateModels.RouteItem> items = new ArrayList<>();
+        int half = (sights.size() + 1) / 2;
+        TravelStateModels.Poi previous = null;
+        for (int i = 0; i < sights.size(); i++) {
+            if (i == half) {
+                previous = addFood(items, foods, previous, "noon");
+            }
+            TravelStateModels.Poi sight = sights.get(i);
+            items.add(toItem(sight, i < half ? "morning" : "afternoon", previous));
+            previous = sight;
+        }
+        if (sights.size() <= 1) {
+            previous = addFood(items, foods, previous, "noon");
+        }
+        addFood(items, foods, previous, "evening");
+        // 多出的餐饮作为备选
+        for (TravelStateModels.Poi food : foods) {
+            items.add(toItem(food, "evening", null));
+        }
+        return items;
+    }
+
+    private static TravelStateModels.Poi addFood(List<TravelStateModels.RouteItem> items, List<TravelStateModels.Poi> foods,
+                                                 TravelStateModels.Poi previous, String timeSlot) {
+        if (foods.isEmpty()) {
+            return previous;
+        }
+        TravelStateModels.Poi chosen = foods.get(0);
+        if (previous != null && hasCoordinate(previous)) {
+            chosen = foods.stream()
+                .min(Comparator.comparingDouble(f -> hasCoordinate(f) ? distanceKm(previous, f) : Double.MAX_VALUE))
+                .orElse(chosen);
+        }
+        foods.remove(chosen);
+        items.add(toItem(chosen, timeSlot, previous));
+        return chosen;
+    }
+
+    private static TravelStateModels.RouteItem toItem(TravelStateModels.Poi poi, String timeSlot, TravelStateModels.Poi previous) {
+        return TravelStateModels.RouteItem.builder()
+            .poiName(poi.getName())
+            .type(poi.getType())
+            .timeSlot(timeSlot)
+            .transport(transport(previous, poi))
+            .tips("预留休息时间，避免过度紧凑")
+            .build();
+    }
+
+    private static String transport(TravelStateModels.Poi from, TravelStateModels.Poi to) {
+        if (from == null || !hasCoordinate(from) || !hasCoordinate(to)) {
+            return "打车/步行视距离";
+        }
+        double km = distanceKm(from, to);
+        if (km < WALK_KM) {
+            return "步行";
+        }
+        return km < SHORT_RIDE_KM ? "骑行/地铁" : "打车/地铁";
+    }
+
+    // ===== helpers =====
+
+    private static double[][] distanceMatrix(List<TravelStateModels.Poi> pois) {
+        int n = pois.size();
+        double[][] dist = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                dist[i][j] = dist[j][i] = distanceKm(pois.get(i), pois.get(j));
+            }
+        }
+        return dist;
+    }
+
+    private static TravelStateModels.Poi centroid(List<TravelStateModels.Poi> pois) {
+        List<TravelStateModels.Poi> located = pois.stream().filter(TravelRoutePlanner::hasCoordinate).toList();
+        if (located.isEmpty()) {
+            return null;
+        }
+        double lat = located.stream().mapToDouble(TravelStateModels.Poi::getLatitude).average().orElse(0);
+        double lng = located.stream().mapToDouble(TravelStateModels.Poi::getLongitude).average().orElse(0);
+        return TravelStateModels.Poi.builder().latitude(lat).longitude(lng).build();
+    }
+
+    private static List<List<TravelStateModels.Poi>> emptyDays(int days) {
+        List<List<TravelStateModels.Poi>> result = new ArrayList<>(days);
+        for (int d = 0; d < days; d++) {
+            result.add(new ArrayList<>());
+        }
+        return result;
+    }
+
+    private static void reverse(int[] path, int i, int j) {
+        while (i < j) {
+            int tmp = path[i];
+            path[i++] = path[j];
+            path[j--] = tmp;
+        }
+    }
+}
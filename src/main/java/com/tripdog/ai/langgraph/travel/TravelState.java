@@ -17,23 +17,41 @@ public class TravelState extends AgentState {
     public static final String DAYS = "days";
     public static final String PEOPLE = "people";
     public static final String TAGS = "tags";
+    public static final String SEARCH_PARTITIONS = "searchPartitions";
+    public static final String SEARCH_CANDIDATES = "searchCandidates";
+    public static final String POI_CACHE_KEY = "poiCacheKey";
+    public static final String SEARCH_SKIPPED = "searchSkipped";
     public static final String SEARCH_RESULTS = "searchResults";
     public static final String SELECTED_POIS = "selectedPois";
     public static final String ROUTES = "routes";
     public static final String MARKDOWN = "markdownReport";
     public static final String RAW_REQUIREMENT = "rawRequirement";
+    public static final String USER_ID = "userId";
+    public static final String ROLE_ID = "roleId";
+    public static final String CONVERSATION_ID = "conversationId";
+    public static final String RUN_ID = "runId";
 
     @SuppressWarnings("rawtypes")
-    public static final Map<String, Channel<?>> SCHEMA = Map.of(
-        DESTINATION, Channels.base(() -> ""),
-        DAYS, Channels.base(() -> 0),
-        PEOPLE, Channels.base(() -> ""),
-        TAGS, Channels.base(ArrayList::new),
-        SEARCH_RESULTS, Channels.base(ArrayList::new),
-        SELECTED_POIS, Channels.base(ArrayList::new),
-        ROUTES, Channels.base(ArrayList::new),
-        MARKDOWN, Channels.base(() -> ""),
-        RAW_REQUIREMENT, Channels.base(() -> "")
+    public static final Map<String, Channel<?>> SCHEMA = Map.ofEntries(
+        Map.entry(DESTINATION, Channels.base(() -> "")),
+        Map.entry(DAYS, Channels.base(() -> 0)),
+        Map.entry(PEOPLE, Channels.base(() -> "")),
+        Map.entry(TAGS, Channels.base(ArrayList::new)),
+        Map.entry(SEARCH_PARTITIONS, Channels.base(() -> 1)),
+        // 并行检索分支各自追加候选，由汇总节点去重后写入 SEARCH_RESULTS
+        Map.entry(SEARCH_CANDIDATES, Channels.appender(ArrayList::new)),
+        Map.entry(POI_CACHE_KEY, Channels.base(() -> "")),
+        Map.entry(SEARCH_SKIPPED, Channels.base(() -> false)),
+        Map.entry(SEARCH_RESULTS, Channels.base(ArrayList::new)),
+        Map.entry(SELECTED_POIS, Channels.base(ArrayList::new)),
+        Map.entry(ROUTES, Channels.base(ArrayList::new)),
+        Map.entry(MARKDOWN, Channels.base(() -> "")),
+        Map.entry(RAW_REQUIREMENT, Channels.base(() -> "")),
+        // 请求上下文随状态传递，编译后的图不捕获任何请求级数据
+        Map.entry(USER_ID, Channels.base(() -> 0L)),
+        Map.entry(ROLE_ID, Channels.base(() -> 0L)),
+        Map.entry(CONVERSATION_ID, Channels.base(() -> "")),
+        Map.entry(RUN_ID, Channels.base(() -> ""))
     );
 
     public TravelState(Map<String, Object> initData) {
@@ -57,6 +75,26 @@ public class TravelState extends AgentState {
         return (List<String>) value(TAGS).orElse(List.of());
     }
 
+    public int searchPartitions() {
+        return (Integer) value(SEARCH_PARTITIONS).orElse(1);
+    }
+
+    public String poiCacheKey() {
+        return (String) value(POI_CACHE_KEY).orElse("");
+    }
+
+    /**
+     * 是否跳过实时检索（命中缓存或从检查点恢复）
+     */
+    public boolean searchSkipped() {
+        return (Boolean) value(SEARCH_SKIPPED).orElse(false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<TravelStateModels.Poi> searchCandidates() {
+        return (List<TravelStateModels.Poi>) value(SEARCH_CANDIDATES).orElse(List.of());
+    }
+
     @SuppressWarnings("unchecked")
     public List<TravelStateModels.Poi> searchResults() {
         return (List<TravelStateModels.Poi>) value(SEARCH_RESULTS).orElse(List.of());
@@ -80,6 +118,30 @@ public class TravelState extends AgentState {
         return (String) value(RAW_REQUIREMENT).orElse(null);
     }
 
+    public Long userId() {
+        return (Long) value(USER_ID).orElse(null);
+    }
+
+    public Long roleId() {
+        return (Long) value(ROLE_ID).orElse(null);
+    }
+
+    public String conversationId() {
+        return (String) value(CONVERSATION_ID).orElse(null);
+    }
+
+    public String runId() {
+        return (String) value(RUN_ID).orElse(null);
+    }
+
+    public static Map<String, Object> withSearchPartitions(int partitions) {
+        return Map.of(SEARCH_PARTITIONS, partitions);
+    }
+
+    public static Map<String, Object> withSearchCandidates(List<TravelStateModels.Poi> pois) {
+        return Map.of(SEARCH_CANDIDATES, new ArrayList<>(pois));
+    }
+
     public static Map<String, Object> withSearchResults(List<TravelStateModels.Poi> pois) {
         return Map.of(SEARCH_RESULTS, new ArrayList<>(pois));
     }
@@ -43,7 +43,7 @@ public class TravelStateModels {
         private static final long serialVersionUID = 1L;
         private String poiName;
         private String type;      // sight / food
-        private String timeSlot;  // morning/afternoon/evening
+        private String timeSlot;  // morning/noon/afternoon/evening
         private String transport; // 打车/地铁/步行
         private String tips;
     }
@@ -59,5 +59,45 @@ public class TravelStateModels {
         @Builder.Default
         private List<RouteItem> items = new ArrayList<>();
     }
-}
 
+    /**
+     * POI 检索结果缓存条目，cachedAt 用于判断是否过期需要后台刷新
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PoiCacheEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private List<Poi> pois;
+        private long cachedAt;
+    }
+
+    /**
+     * 旅行规划运行检查点：每个节点完成后保存的状态快照及运行结果，用于断点续跑与状态查询
+     */
+    @Data
+    @NoArgsConstructor
+    public static class TravelCheckpoint implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String runId;
+        private Long userId;
+        private Long roleId;
+        private String conversationId;
+        private String status;        // RUNNING / SUCCEEDED / FAILED
+        private String lastNode;
+        private long updatedAt;
+        private String destination;
+        private Integer days;
+        private String people;
+        private String budget;
+        private List<String> tags;
+        private String rawRequirement;
+        private List<Poi> searchResults;
+        private List<Poi> selectedPois;
+        private List<RouteDay> routes;
+        private String markdown;
+        private Long historyId;
+        private String mdPath;
+        private String mdUrl;
+    }
+}
@@ -0,0 +1,149 @@
+package com.tripdog.ai.mcp;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import dev.langchain4j.mcp.client.McpClient;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单个 MCP 服务的客户端生命周期与熔断状态
+ * 客户端按需创建，创建失败按指数退避延后重试；连续失败达到阈值后熔断，
+ * 熔断期内直接拒绝调用，到期后放行一次探测（半开），探测成功恢复，失败则继续熔断并重建客户端
+ */
+@Slf4j
+class ManagedMcpClient {
+
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final String name;
+    private final Supplier<McpClient> factory;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private McpClient client;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private int reconnectAttempts;
+    private long nextReconnectAt;
+    private boolean probing;
+
+    ManagedMcpClient(String name, Supplier<McpClient> factory, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.factory = factory;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * 获取可用客户端；熔断中、处于重连退避期或创建失败时返回 null，调用方应直接降级
+     */
+    synchronized McpClient acquire() {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN) {
+            if (now < openUntil) {
+                return null;
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            // 半开状态只放行一个探测调用
+            if (probing) {
+                return null;
+            }
+            probing = true;
+        }
+        if (client == null) {
+            if (now < nextReconnectAt) {
+                probing = false;
+                return null;
+            }
+            try {
+                client = factory.get();
+                reconnectAttempts = 0;
+                log.info("MCP 客户端已连接: {}", name);
+            } catch (Exception e) {
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(reconnectAttempts, 16));
+                reconnectAttempts++;
+                nextReconnectAt = now + backoff;
+                log.warn("MCP 客户端创建失败: {}，{} ms 后重试: {}", name, backoff, e.getMessage());
+                onFailure();
+                return null;
+            }
+        }
+        return client;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probing = false;
+        if (state != State.CLOSED) {
+            log.info("MCP 服务恢复: {}", name);
+            state = State.CLOSED;
+        }
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        probing = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("MCP 服务熔断: {}，连续失败 {} 次", name, consecutiveFailures);
+            }
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMillis;
+            // 连接可能已失效，恢复时重建
+            closeClient();
+        }
+    }
+
+    /**
+     * 健康检查：熔断期内不检查，其余状态 ping 一次并据此更新熔断状态
+     */
+    void checkHealth() {
+        McpClient current = acquire();
+        if (current == null) {
+            return;
+        }
+        try {
+            current.checkHealth();
+            onSuccess();
+        } catch (Exception e) {
+            log.warn("MCP 健康检查失败: {}: {}", name, e.getMessage());
+            onFailure();
+        }
+    }
+
+    synchronized void close() {
+        closeClient();
+    }
+
+    private void closeClient() {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (Exception e) {
+            log.debug("关闭 MCP 客户端失败: {}: {}", name, e.getMessage());
+        }
+        client = null;
+    }
+}
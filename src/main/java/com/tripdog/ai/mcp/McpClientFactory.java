@@ -1,73 +1,134 @@
 package com.tripdog.ai.mcp;
 
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import dev.langchain4j.mcp.client.DefaultMcpClient;
 import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.mcp.client.transport.http.StreamableHttpMcpTransport;
+import dev.langchain4j.service.tool.ToolProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import static com.tripdog.ai.mcp.McpConstants.MAP_MCP;
 import static com.tripdog.ai.mcp.McpConstants.WEB_SEARCH;
 
 /**
+ * MCP 客户端池
+ * 每个 MCP 服务一个受管客户端：线程安全的按需创建、定时健康检查、指数退避重连与熔断，
+ * 对外提供带降级能力的 ToolProvider，服务不可用时对话不再等待超时
+ *
  * @author: iohw
  * @date: 2025/9/27 12:09
- * @description:
  */
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class McpClientFactory {
+    private final MeterRegistry meterRegistry;
+    private final McpToolCache mcpToolCache;
+
     @Value("${mcp.search-link}")
     private String searchMcpLink;
     @Value("${mcp.map-link}")
     private String mapMcpLink;
 
-    private static final Map<String, McpClient> map = new HashMap<>();
+    /**
+     * 建连与健康检查的超时
+     */
+    @Value("${mcp.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    /**
+     * 单次工具调用的超时，检索类工具本身耗时较长，与建连超时分开配置
+     */
+    @Value("${mcp.tool-timeout:PT20S}")
+    private Duration toolTimeout;
+
+    @Value("${mcp.circuit.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${mcp.circuit.open-duration:PT30S}")
+    private Duration openDuration;
 
+    /**
+     * 工具列表缓存时间，避免每次对话都拉取一次 tools/list
+     */
+    @Value("${mcp.tools-cache-ttl:PT5M}")
+    private Duration toolsCacheTtl;
+
+    private final Map<String, ManagedMcpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ToolProvider> toolProviders = new ConcurrentHashMap<>();
+
+    /**
+     * 获取当前可用的客户端，服务不可用时返回 null
+     */
     public McpClient getMcpClient(String k) {
-        if(map.containsKey(k)) {
-            return map.get(k);
-        }
-        McpClient client;
-        switch (k) {
-            case WEB_SEARCH:
-                client = getClientMcp(searchMcpLink);
-                if (client != null) {
-                    map.put(k, client);
-                }
-                return client;
-            case MAP_MCP:
-                client = getClientMcp(mapMcpLink);
-                if (client != null) {
-                    map.put(k, client);
-                }
-                return client;
+        ManagedMcpClient managed = managed(k);
+        return managed == null ? null : managed.acquire();
+    }
+
+    /**
+     * 获取带熔断降级与结果缓存的工具提供者，未知服务返回 null
+     */
+    public ToolProvider getToolProvider(String k) {
+        ManagedMcpClient managed = managed(k);
+        if (managed == null) {
+            return null;
         }
-        return null;
+        return toolProviders.computeIfAbsent(k,
+            key -> mcpToolCache.decorate(new ResilientMcpToolProvider(managed, meterRegistry, toolsCacheTtl.toMillis())));
+    }
+
+    @Scheduled(fixedDelayString = "${mcp.health-check-interval:PT30S}", initialDelayString = "${mcp.health-check-interval:PT30S}")
+    public void healthCheck() {
+        clients.values().forEach(ManagedMcpClient::checkHealth);
     }
 
-    private McpClient getClientMcp(String mcpUrl) {
-        try {
-            StreamableHttpMcpTransport transport = new StreamableHttpMcpTransport.Builder()
-                .url(mcpUrl)
-                .timeout(Duration.ofSeconds(5)) // 更短的超时时间
-                .logRequests(true)
-                .logResponses(true)
-                .build();
-            return new DefaultMcpClient.Builder()
-                .transport(transport)
-                .build();
-
-        } catch (Exception e) {
-            System.err.println("Failed to create WebSearch MCP client: " + e.getMessage());
-            // 不抛异常，返回null让应用继续运行
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(ManagedMcpClient::close);
+    }
+
+    private ManagedMcpClient managed(String k) {
+        String url = switch (k) {
+            case WEB_SEARCH -> searchMcpLink;
+            case MAP_MCP -> mapMcpLink;
+            default -> null;
+        };
+        if (url == null) {
             return null;
         }
+        return clients.computeIfAbsent(k, key -> {
+            ManagedMcpClient managed = new ManagedMcpClient(key, () -> createClient(url), failureThreshold, openDuration);
+            Gauge.builder("mcp.circuit.state", managed, m -> m.state().ordinal())
+                .description("MCP 熔断状态：0 关闭，1 半开，2 打开")
+                .tag("server", key)
+                .register(meterRegistry);
+            return managed;
+        });
+    }
+
+    private McpClient createClient(String mcpUrl) {
+        StreamableHttpMcpTransport transport = new StreamableHttpMcpTransport.Builder()
+            .url(mcpUrl)
+            .timeout(toolTimeout)
+            .logRequests(true)
+            .logResponses(true)
+            .build();
+        return new DefaultMcpClient.Builder()
+            .transport(transport)
+            .initializationTimeout(connectTimeout)
+            .pingTimeout(connectTimeout)
+            .toolExecutionTimeout(toolTimeout)
+            .build();
     }
 }
@@ -0,0 +1,147 @@
+package com.tripdog.ai.mcp;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tripdog.common.middleware.RedisClient;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import static com.tripdog.common.Constants.REDIS_MCP_TOOL_CACHE;
+
+/**
+ * MCP 工具结果缓存（Redis）
+ * 以 (工具名, 规范化后的参数 JSON) 为 key，按工具单独配置 TTL，未配置的工具不缓存；
+ * 缓存命中时不访问 MCP 服务；熔断或重连期间提供者不返回任何工具，此时缓存同样用不到。
+ * 工具报错（调用超时、isError 结果、上游服务返回的错误 JSON）以文本形式返回给模型，但不写入缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpToolCache {
+    /**
+     * 参数规范化：对象字段按名称排序，去掉空白，字段顺序不同的相同参数命中同一条缓存
+     */
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final RedisClient redisClient;
+    private final MeterRegistry meterRegistry;
+    private final McpToolCacheProperties properties;
+
+    /**
+     * 为工具提供者加上结果缓存，未启用时原样返回
+     */
+    public ToolProvider decorate(ToolProvider delegate) {
+        if (!properties.isEnabled() || properties.getTtl().isEmpty()) {
+            return delegate;
+        }
+        return request -> {
+            ToolProviderResult tools = delegate.provideTools(request);
+            ToolProviderResult.Builder builder = ToolProviderResult.builder();
+            tools.tools().forEach((spec, executor) -> builder.add(spec, wrap(spec, executor)));
+            return builder.build();
+        };
+    }
+
+    private ToolExecutor wrap(ToolSpecification spec, ToolExecutor delegate) {
+        Duration ttl = properties.getTtl().get(spec.name());
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return delegate;
+        }
+        return (ToolExecutionRequest request, Object memoryId) -> {
+            String key = keyOf(spec.name(), request.arguments());
+            String cached = read(key);
+            if (cached != null) {
+                record(spec.name(), "hit");
+                return cached;
+            }
+            record(spec.name(), "miss");
+            String result = delegate.execute(request, memoryId);
+            if (cacheable(result)) {
+                write(key, result, ttl);
+            }
+            return result;
+        };
+    }
+
+    private String keyOf(String tool, String arguments) {
+        String canonical;
+        try {
+            canonical = CANONICAL_MAPPER.writeValueAsString(CANONICAL_MAPPER.readValue(
+                StringUtils.hasText(arguments) ? arguments : "{}", Object.class));
+        } catch (Exception e) {
+            canonical = arguments == null ? "" : arguments.trim();
+        }
+        return REDIS_MCP_TOOL_CACHE + tool + ":" + DigestUtils.md5DigestAsHex(canonical.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 空结果、降级提示、工具报错与超长结果不缓存
+     */
+    private boolean cacheable(String result) {
+        return StringUtils.hasText(result)
+            && !ResilientMcpToolProvider.UNAVAILABLE_MESSAGE.equals(result)
+            && result.length() <= properties.getMaxResultChars()
+            && !isToolError(result);
+    }
+
+    /**
+     * 结果是否为报错：MCP 客户端的超时/错误提示、带 isError / error 字段或 status 为 0（高德等）的 JSON、配置的错误标记
+     */
+    private boolean isToolError(String result) {
+        if (ResilientMcpToolProvider.isCallFailure(result)) {
+            return true;
+        }
+        String text = result.trim();
+        if (properties.getErrorMarkers().stream().anyMatch(text::contains)) {
+            return true;
+        }
+        if (!text.startsWith("{")) {
+            return false;
+        }
+        try {
+            JsonNode node = CANONICAL_MAPPER.readTree(text);
+            JsonNode status = node.get("status");
+            return node.path("isError").asBoolean(false)
+                || node.hasNonNull("error")
+                || (status != null && status.isValueNode() && "0".equals(status.asText()));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private String read(String key) {
+        try {
+            return redisClient.get(key, String.class);
+        } catch (Exception e) {
+            log.warn("读取工具结果缓存失败，key: {}", key, e);
+            return null;
+        }
+    }
+
+    private void write(String key, String result, Duration ttl) {
+        try {
+            redisClient.set(key, result, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入工具结果缓存失败，key: {}", key, e);
+        }
+    }
+
+    private void record(String tool, String result) {
+        meterRegistry.counter("mcp.tool.cache", "tool", tool, "result", result).increment();
+    }
+}
@@ -0,0 +1,30 @@
+package com.tripdog.ai.mcp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * MCP 工具结果缓存配置，只有在 ttl 中配置了的工具才会缓存。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "mcp.tool-cache")
+public class McpToolCacheProperties {
+    /** 是否启用工具结果缓存 */
+    private boolean enabled = true;
+    /** 工具名 -> 缓存时间 */
+    private Map<String, Duration> ttl = new HashMap<>();
+    /** 超过该长度的结果不缓存 */
+    private int maxResultChars = 64 * 1024;
+    /** 结果中出现这些标记时视为工具报错，不缓存（默认为高德 Web 服务常见的错误码） */
+    private List<String> errorMarkers = new ArrayList<>(List.of(
+        "INVALID_USER_KEY", "INVALID_USER_SCODE", "USERKEY_PLAT_NOMATCH", "INSUFFICIENT_PRIVILEGES",
+        "DAILY_QUERY_OVER_LIMIT", "ACCESS_TOO_FREQUENT", "CUQPS_HAS_EXCEEDED_THE_LIMIT", "SERVICE_NOT_AVAILABLE"));
+}
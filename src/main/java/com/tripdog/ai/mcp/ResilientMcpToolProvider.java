@@ -0,0 +1,126 @@
+package com.tripdog.ai.mcp;
+
+import java.util.concurrent.TimeUnit;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.McpToolProvider;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 带熔断与指标的 MCP 工具提供者
+ * 服务不可用（熔断、重连退避中）时不提供任何工具，对话直接在无工具的情况下继续，不再等待超时；
+ * 调用抛出异常，以及 MCP 客户端以文本返回的调用超时、isError 结果都计为失败，连续失败达到阈值后熔断；
+ * 工具列表按客户端实例缓存，客户端重建后重新拉取。每次工具调用按 服务/工具/结果 记录耗时
+ */
+@Slf4j
+public class ResilientMcpToolProvider implements ToolProvider {
+    static final String UNAVAILABLE_MESSAGE = "工具服务暂不可用，请直接基于已有信息回答。";
+    /**
+     * MCP 客户端把调用超时与 isError 结果转成的提示文本前缀
+     */
+    static final String TIMEOUT_PREFIX = "There was a timeout executing the tool";
+    static final String ERROR_PREFIX = "There was an error executing the tool";
+
+    private final ManagedMcpClient managed;
+    private final MeterRegistry meterRegistry;
+    private final long toolsTtlMillis;
+
+    private McpClient cachedFor;
+    private ToolProviderResult cachedTools;
+    private long cachedAt;
+
+    ResilientMcpToolProvider(ManagedMcpClient managed, MeterRegistry meterRegistry, long toolsTtlMillis) {
+        this.managed = managed;
+        this.meterRegistry = meterRegistry;
+        this.toolsTtlMillis = toolsTtlMillis;
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        McpClient client = managed.acquire();
+        if (client == null) {
+            log.debug("MCP 服务不可用，跳过工具: {}", managed.name());
+            return ToolProviderResult.builder().build();
+        }
+        synchronized (this) {
+            if (cachedFor == client && System.currentTimeMillis() - cachedAt < toolsTtlMillis) {
+                return cachedTools;
+            }
+        }
+        ToolProviderResult tools;
+        try {
+            tools = McpToolProvider.builder().mcpClients(client).build().provideTools(request);
+            managed.onSuccess();
+        } catch (Exception e) {
+            log.warn("获取 MCP 工具列表失败: {}: {}", managed.name(), e.getMessage());
+            managed.onFailure();
+            return ToolProviderResult.builder().build();
+        }
+        ToolProviderResult.Builder builder = ToolProviderResult.builder();
+        tools.tools().forEach((spec, executor) -> builder.add(spec, wrap(spec, executor)));
+        ToolProviderResult wrapped = builder.build();
+        synchronized (this) {
+            cachedFor = client;
+            cachedTools = wrapped;
+            cachedAt = System.currentTimeMillis();
+        }
+        return wrapped;
+    }
+
+    private ToolExecutor wrap(ToolSpecification spec, ToolExecutor delegate) {
+        return (ToolExecutionRequest request, Object memoryId) -> {
+            if (managed.state() == ManagedMcpClient.State.OPEN) {
+                record(spec.name(), "rejected", 0);
+                return UNAVAILABLE_MESSAGE;
+            }
+            long start = System.nanoTime();
+            try {
+                String result = delegate.execute(request, memoryId);
+                if (isCallFailure(result)) {
+                    // 超时与 isError 以文本返回给模型，但同样计入熔断
+                    managed.onFailure();
+                    record(spec.name(), "error", System.nanoTime() - start);
+                    log.warn("MCP 工具调用失败: {}.{}: {}", managed.name(), spec.name(), result);
+                    return result;
+                }
+                managed.onSuccess();
+                record(spec.name(), "success", System.nanoTime() - start);
+                return result;
+            } catch (Exception e) {
+                managed.onFailure();
+                record(spec.name(), "error", System.nanoTime() - start);
+                log.warn("MCP 工具调用失败: {}.{}: {}", managed.name(), spec.name(), e.getMessage());
+                return UNAVAILABLE_MESSAGE;
+            }
+        };
+    }
+
+    /**
+     * 是否为 MCP 客户端返回的调用超时或 isError 提示文本
+     */
+    static boolean isCallFailure(String result) {
+        if (result == null) {
+            return false;
+        }
+        String text = result.trim();
+        return text.startsWith(TIMEOUT_PREFIX) || text.startsWith(ERROR_PREFIX);
+    }
+
+    private void record(String tool, String outcome, long nanos) {
+        Timer.builder("mcp.tool.calls")
+            .description("MCP 工具调用耗时")
+            .tag("server", managed.name())
+            .tag("tool", tool)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
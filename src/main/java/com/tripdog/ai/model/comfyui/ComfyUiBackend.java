@@ -0,0 +1,66 @@
+package com.tripdog.ai.model.comfyui;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个 ComfyUI 后端的负载状态
+ * 负载取后端上报的队列剩余数与本节点已派发未完成数中的较大者：上报值包含其他节点提交的任务，
+ * 本地计数弥补刚提交、上报尚未刷新的窗口
+ */
+class ComfyUiBackend {
+    private final String baseUrl;
+    private final ComfyUiEventStream eventStream;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile int reportedQueue;
+    private volatile boolean healthy = true;
+
+    ComfyUiBackend(String baseUrl, ComfyUiEventStream eventStream) {
+        this.baseUrl = baseUrl;
+        this.eventStream = eventStream;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * 事件流，未启用时为 null
+     */
+    ComfyUiEventStream eventStream() {
+        return eventStream;
+    }
+
+    int load() {
+        int reported = reportedQueue;
+        if (eventStream != null && eventStream.isConnected() && eventStream.queueRemaining() >= 0) {
+            reported = eventStream.queueRemaining();
+        }
+        return Math.max(reported, inflight.get());
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    void acquire() {
+        inflight.incrementAndGet();
+    }
+
+    void release() {
+        inflight.updateAndGet(n -> Math.max(0, n - 1));
+    }
+
+    boolean healthy() {
+        return healthy;
+    }
+
+    void reported(int queueRemaining) {
+        this.reportedQueue = queueRemaining;
+        this.healthy = true;
+    }
+
+    void unhealthy() {
+        this.healthy = false;
+    }
+}
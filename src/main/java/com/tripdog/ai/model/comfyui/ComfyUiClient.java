@@ -1,54 +1,277 @@
 package com.tripdog.ai.model.comfyui;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
+/**
+ * ComfyUI 客户端
+ * 管理一个或多个 ComfyUI 后端：派发时选择负载最低且未满的后端，定时刷新各后端的队列深度与健康状态。
+ * 提交 prompt 后优先通过 /ws 事件流感知进度与完成，事件流不可用或调用方指定了自己的 clientId 时退回 /history 轮询；
+ * 事件流正常时仍以较长间隔查询一次 /history，兜底丢失的事件
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class ComfyUiClient {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final ObjectMapper objectMapper;
 
-    @Value("${comfyui.base-url:http://127.0.0.1:8188}")
-    private String baseUrl;
+    /**
+     * 后端地址，多个用逗号分隔；未配置时使用 comfyui.base-url
+     */
+    @Value("${comfyui.base-urls:${comfyui.base-url:http://127.0.0.1:8188}}")
+    private String[] baseUrls;
 
     @Value("${comfyui.poll-interval-ms:1000}")
     private long pollIntervalMs;
 
-        @Value("${comfyui.poll-max-wait-ms:180000}")
+    @Value("${comfyui.poll-max-wait-ms:180000}")
     private long pollMaxWaitMs;
 
+    @Value("${comfyui.websocket.enabled:true}")
+    private boolean websocketEnabled;
+
+    /**
+     * 事件流连接正常时的兜底轮询间隔
+     */
+    @Value("${comfyui.websocket.fallback-poll-interval-ms:5000}")
+    private long fallbackPollIntervalMs;
+
+    @Value("${comfyui.websocket.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    /**
+     * 单次 HTTP 请求的读超时（不含 /view 响应体的传输时间）
+     */
+    @Value("${comfyui.read-timeout:PT30S}")
+    private Duration readTimeout;
+
+    private final Map<String, ComfyUiBackend> backends = new LinkedHashMap<>();
+
+    /**
+     * 所有后端共用一个 JDK HttpClient：连接复用（keep-alive 连接池），同时承载 REST 调用、/view 流式下载与 /ws 事件流
+     */
+    private HttpClient httpClient;
+    private RestTemplate restTemplate;
+
     public record ComfyUiImageRef(String filename, String subfolder, String type) {}
 
-    public record ComfyUiResult(String promptId, List<ComfyUiImageRef> images) {}
+    public record ComfyUiResult(String backend, String promptId, List<ComfyUiImageRef> images) {}
+
+    /**
+     * /view 响应：body 为未读取的响应流，contentLength 未知时为 -1，使用后需关闭
+     */
+    public record ComfyUiImageStream(InputStream body, long contentLength, String contentType) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * 执行进度：node 为当前执行的节点，value/max 为采样步数，非采样节点时均为 0
+     */
+    public record ComfyUiProgress(String promptId, String node, int value, int max) {}
+
+    @PostConstruct
+    public void init() {
+        // ComfyUI 基于 aiohttp，不走 h2c 升级
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        restTemplate = new RestTemplate(requestFactory);
+        String clientId = "tripdog-" + UUID.randomUUID();
+        for (String url : baseUrls) {
+            String baseUrl = url.trim();
+            if (baseUrl.endsWith("/")) {
+                baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+            }
+            if (baseUrl.isEmpty() || backends.containsKey(baseUrl)) {
+                continue;
+            }
+            ComfyUiEventStream eventStream = !websocketEnabled ? null
+                : new ComfyUiEventStream(baseUrl, clientId, httpClient, objectMapper, connectTimeout);
+            backends.put(baseUrl, new ComfyUiBackend(baseUrl, eventStream));
+        }
+        log.info("ComfyUI 后端: {}", backends.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backends.values().stream()
+            .map(ComfyUiBackend::eventStream)
+            .filter(Objects::nonNull)
+            .forEach(ComfyUiEventStream::close);
+    }
+
+    /**
+     * 刷新各后端的队列深度（GET /prompt）与健康状态，并提前重连断开的事件流
+     */
+    @Scheduled(fixedDelayString = "${comfyui.queue-refresh-interval:PT5S}")
+    public void refreshBackends() {
+        for (ComfyUiBackend backend : backends.values()) {
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> resp = restTemplate.getForObject(backend.baseUrl() + "/prompt", Map.class);
+                Object execInfo = resp == null ? null : resp.get("exec_info");
+                Object remaining = execInfo instanceof Map<?, ?> info ? info.get("queue_remaining") : null;
+                backend.reported(remaining instanceof Number n ? n.intValue() : 0);
+                if (backend.eventStream() != null) {
+                    backend.eventStream().ensureConnected();
+                }
+            } catch (Exception e) {
+                if (backend.healthy()) {
+                    log.warn("ComfyUI 后端不可用: {}: {}", backend.baseUrl(), e.getMessage());
+                }
+                backend.unhealthy();
+            }
+        }
+    }
+
+    /**
+     * 选择负载最低且负载小于 maxLoad 的健康后端并占用一个名额，没有可用后端时返回 null；
+     * 占用的名额在生成结束后通过 {@link #releaseBackend} 归还
+     */
+    public synchronized String acquireBackend(int maxLoad) {
+        ComfyUiBackend best = null;
+        for (ComfyUiBackend backend : backends.values()) {
+            if (!backend.healthy() || backend.load() >= maxLoad) {
+                continue;
+            }
+            if (best == null || backend.load() < best.load()
+                || (backend.load() == best.load() && backend.inflight() < best.inflight())) {
+                best = backend;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        best.acquire();
+        return best.baseUrl();
+    }
+
+    public synchronized void releaseBackend(String baseUrl) {
+        ComfyUiBackend backend = backends.get(baseUrl);
+        if (backend != null) {
+            backend.release();
+        }
+    }
 
-    public ComfyUiResult generate(Map<String, Object> workflow, String clientId, Long maxWaitMs) {
+    /**
+     * 在指定后端提交 workflow 并等待输出图片
+     *
+     * @param onSubmitted 提交成功、拿到 prompt_id 后回调，可为 null
+     * @param onProgress  进度回调，仅事件流可用时触发，可为 null
+     */
+    public ComfyUiResult generate(String baseUrl, Map<String, Object> workflow, String clientId, Long maxWaitMs,
+                                  Consumer<String> onSubmitted, Consumer<ComfyUiProgress> onProgress) {
         if (workflow == null || workflow.isEmpty()) {
             throw new IllegalArgumentException("workflow is required");
         }
-        String realClientId = (clientId == null || clientId.isBlank()) ? UUID.randomUUID().toString() : clientId;
-        String promptId = submitPrompt(workflow, realClientId);
-        long timeoutMs = maxWaitMs != null && maxWaitMs > 0 ? maxWaitMs : pollMaxWaitMs;
-        waitForQueue(promptId, timeoutMs);
-        List<ComfyUiImageRef> images = pollForImages(promptId, timeoutMs);
-        return new ComfyUiResult(promptId, images);
+        ComfyUiBackend backend = backends.get(baseUrl);
+        if (backend == null) {
+            throw new IllegalArgumentException("ComfyUI backend not configured: " + baseUrl);
+        }
+        ComfyUiEventStream eventStream = backend.eventStream();
+        // 事件只推送给提交时的 clientId，调用方指定了自己的 clientId 时只能轮询
+        boolean useEvents = eventStream != null
+            && (clientId == null || clientId.isBlank())
+            && eventStream.ensureConnected();
+        String realClientId = useEvents ? eventStream.clientId()
+            : (clientId == null || clientId.isBlank()) ? UUID.randomUUID().toString() : clientId;
+        String promptId;
+        try {
+            promptId = submitPrompt(baseUrl, workflow, realClientId);
+        } catch (ResourceAccessException e) {
+            // 连接失败，等下次刷新确认恢复前不再派发到该后端
+            backend.unhealthy();
+            throw e;
+        }
+        ComfyUiEventStream.Watch watch = useEvents ? eventStream.watch(promptId, onProgress) : null;
+        try {
+            if (onSubmitted != null) {
+                onSubmitted.accept(promptId);
+            }
+            long timeoutMs = maxWaitMs != null && maxWaitMs > 0 ? maxWaitMs : pollMaxWaitMs;
+            return new ComfyUiResult(baseUrl, promptId, awaitImages(backend, promptId, timeoutMs, watch));
+        } finally {
+            if (watch != null) {
+                eventStream.unwatch(promptId);
+            }
+        }
+    }
+
+    /**
+     * 取消 prompt：排队中的从队列删除；正在执行的调用 /interrupt，只在确认是该 prompt 在执行时中断，避免误伤其他任务
+     */
+    public void cancel(String baseUrl, String promptId) {
+        try {
+            restTemplate.postForObject(baseUrl + "/queue", Map.of("delete", List.of(promptId)), String.class);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> queue = restTemplate.getForObject(baseUrl + "/queue", Map.class);
+            if (queue != null && containsPrompt(queue.get("queue_running"), promptId)) {
+                restTemplate.postForObject(baseUrl + "/interrupt", Map.of("prompt_id", promptId), String.class);
+            }
+        } catch (Exception e) {
+            log.warn("ComfyUI 取消失败: {} {}: {}", baseUrl, promptId, e.getMessage());
+        }
     }
 
-    public ResponseEntity<byte[]> fetchImage(ComfyUiImageRef ref) {
-        String url = buildViewUrl(ref);
-        return restTemplate.getForEntity(url, byte[].class);
+    /**
+     * 以流的方式打开输出图片，响应体不在内存中整体缓冲，由调用方边读边转存
+     */
+    public ComfyUiImageStream openImage(String baseUrl, ComfyUiImageRef ref) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(buildViewUrl(baseUrl, ref)))
+            .timeout(readTimeout)
+            .GET()
+            .build();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ComfyUI /view interrupted", e);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("ComfyUI /view failed: " + response.statusCode() + " " + ref.filename());
+        }
+        long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        String contentType = response.headers().firstValue("Content-Type").orElse(MediaType.IMAGE_PNG_VALUE);
+        return new ComfyUiImageStream(response.body(), contentLength, contentType);
     }
 
-    private String submitPrompt(Map<String, Object> workflow, String clientId) {
+    private String submitPrompt(String baseUrl, Map<String, Object> workflow, String clientId) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("prompt", workflow);
         payload.put("client_id", clientId);
@@ -60,72 +283,54 @@ public class ComfyUiClient {
         return String.valueOf(resp.get("prompt_id"));
     }
 
-    private List<ComfyUiImageRef> pollForImages(String promptId, long timeoutMs) {
-        long start = System.currentTimeMillis();
-        while (System.currentTimeMillis() - start < timeoutMs) {
-            try {
-                List<ComfyUiImageRef> images = fetchImagesFromHistory(promptId);
-                if (!CollectionUtils.isEmpty(images)) {
-                    return images;
-                }
-            } catch (Exception e) {
-                log.warn("ComfyUI history poll failed: {}", e.getMessage());
+    /**
+     * 等待完成事件或轮询间隔到期后查询 /history；完成事件到达后立即查询，执行失败事件直接抛出
+     */
+    private List<ComfyUiImageRef> awaitImages(ComfyUiBackend backend, String promptId, long timeoutMs,
+                                              ComfyUiEventStream.Watch watch) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        CompletableFuture<Void> done = watch == null ? null : watch.done();
+        boolean signalled = false;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IllegalStateException("ComfyUI generation timeout");
             }
             try {
-                Thread.sleep(pollIntervalMs);
+                if (done != null && !signalled && (done.isDone() || backend.eventStream().isConnected())) {
+                    done.get(Math.min(remaining, fallbackPollIntervalMs), TimeUnit.MILLISECONDS);
+                    signalled = true;
+                } else {
+                    // 事件流断开或完成后 /history 仍未出图，按常规间隔轮询
+                    Thread.sleep(Math.min(remaining, pollIntervalMs));
+                }
+            } catch (TimeoutException ignored) {
+                // 到达兜底轮询时间
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                break;
+                throw new IllegalStateException("ComfyUI generation interrupted");
             }
-        }
-        throw new IllegalStateException("ComfyUI generation timeout");
-    }
-
-    private void waitForQueue(String promptId, long timeoutMs) {
-        long start = System.currentTimeMillis();
-        while (System.currentTimeMillis() - start < timeoutMs) {
             try {
-                if (!isInQueue(promptId)) {
-                    return;
+                List<ComfyUiImageRef> images = fetchImagesFromHistory(backend.baseUrl(), promptId);
+                if (!CollectionUtils.isEmpty(images)) {
+                    return images;
                 }
             } catch (Exception e) {
-                log.warn("ComfyUI queue poll failed: {}", e.getMessage());
-            }
-            try {
-                Thread.sleep(pollIntervalMs);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+                log.warn("ComfyUI history poll failed: {}", e.getMessage());
             }
         }
     }
 
-    private boolean isInQueue(String promptId) {
-        @SuppressWarnings("unchecked")
-        Map<String, Object> queue = restTemplate.getForObject(baseUrl + "/queue", Map.class);
-        if (queue == null || queue.isEmpty()) {
-            return false;
-        }
-        if (containsPrompt(queue.get("queue_running"), promptId)) {
-            return true;
-        }
-        if (containsPrompt(queue.get("queue_pending"), promptId)) {
-            return true;
-        }
-        if (containsPrompt(queue.get("running"), promptId)) {
-            return true;
-        }
-        return containsPrompt(queue.get("pending"), promptId);
-    }
-
     private boolean containsPrompt(Object listObj, String promptId) {
         if (!(listObj instanceof List<?> list)) {
             return false;
         }
         for (Object item : list) {
-            if (item instanceof List<?> tuple && !tuple.isEmpty()) {
-                Object first = tuple.get(0);
-                if (promptId.equals(String.valueOf(first))) {
+            if (item instanceof List<?> tuple && tuple.size() > 1) {
+                // 队列项为 [number, prompt_id, prompt, extra_data, outputs]
+                if (promptId.equals(String.valueOf(tuple.get(1)))) {
                     return true;
                 }
             } else if (item instanceof Map<?, ?> map) {
@@ -138,7 +343,7 @@ public class ComfyUiClient {
         return false;
     }
 
-    private List<ComfyUiImageRef> fetchImagesFromHistory(String promptId) {
+    private List<ComfyUiImageRef> fetchImagesFromHistory(String baseUrl, String promptId) {
         @SuppressWarnings("unchecked")
         Map<String, Object> history = restTemplate.getForObject(baseUrl + "/history/" + promptId, Map.class);
         if (history == null || history.isEmpty()) {
@@ -208,7 +413,7 @@ public class ComfyUiClient {
         return value == null ? null : String.valueOf(value);
     }
 
-    private String buildViewUrl(ComfyUiImageRef ref) {
+    private String buildViewUrl(String baseUrl, ComfyUiImageRef ref) {
         StringBuilder sb = new StringBuilder(baseUrl).append("/view?filename=")
             .append(urlEncode(ref.filename()));
         if (ref.subfolder() != null && !ref.subfolder().isBlank()) {
@@ -0,0 +1,253 @@
+package com.tripdog.ai.model.comfyui;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ComfyUI /ws 事件流
+ * 每个后端维持一条以固定 clientId 建立的 WebSocket 连接，按 prompt_id 把进度与完成事件分发给等待方；
+ * 连接断开后按指数退避在下次使用时重连，期间等待方退回 /history 轮询
+ */
+@Slf4j
+class ComfyUiEventStream {
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final String wsUrl;
+    private final String clientId;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration connectTimeout;
+
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    /**
+     * 注册等待前就已结束的任务（提交与注册之间的窗口），短暂保留其结果
+     */
+    private final Cache<String, Optional<String>> finishedEarly = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .build();
+
+    private volatile WebSocket webSocket;
+    private volatile int queueRemaining = -1;
+    private int reconnectAttempts;
+    private long nextConnectAt;
+
+    /**
+     * 单个任务的等待句柄：done 在执行完成时正常结束，执行失败或被中断时异常结束
+     */
+    record Watch(CompletableFuture<Void> done, Consumer<ComfyUiClient.ComfyUiProgress> onProgress) {
+    }
+
+    ComfyUiEventStream(String baseUrl, String clientId, HttpClient httpClient, ObjectMapper objectMapper, Duration connectTimeout) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.wsUrl = base.replaceFirst("^http", "ws") + "/ws?clientId=" + URLEncoder.encode(clientId, StandardCharsets.UTF_8);
+        this.clientId = clientId;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.connectTimeout = connectTimeout;
+    }
+
+    String clientId() {
+        return clientId;
+    }
+
+    boolean isConnected() {
+        WebSocket ws = webSocket;
+        return ws != null && !ws.isInputClosed();
+    }
+
+    /**
+     * 最近一次 status 事件上报的队列剩余数，未收到时为 -1
+     */
+    int queueRemaining() {
+        return queueRemaining;
+    }
+
+    /**
+     * 确保连接可用；处于重连退避期或连接失败时返回 false，调用方改用轮询
+     */
+    synchronized boolean ensureConnected() {
+        if (isConnected()) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextConnectAt) {
+            return false;
+        }
+        try {
+            webSocket = httpClient.newWebSocketBuilder()
+                .connectTimeout(connectTimeout)
+                .buildAsync(URI.create(wsUrl), new Listener())
+                .get(connectTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            reconnectAttempts = 0;
+            log.info("ComfyUI 事件流已连接: {}", wsUrl);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(reconnectAttempts, 16));
+            reconnectAttempts++;
+            nextConnectAt = now + backoff;
+            log.warn("ComfyUI 事件流连接失败: {}，{} ms 后重试: {}", wsUrl, backoff, e.getMessage());
+            return false;
+        }
+    }
+
+    Watch watch(String promptId, Consumer<ComfyUiClient.ComfyUiProgress> onProgress) {
+        Watch watch = new Watch(new CompletableFuture<>(), onProgress);
+        watches.put(promptId, watch);
+        Optional<String> early = finishedEarly.getIfPresent(promptId);
+        if (early != null) {
+            complete(watch, early.orElse(null));
+        }
+        return watch;
+    }
+
+    void unwatch(String promptId) {
+        watches.remove(promptId);
+    }
+
+    synchronized void close() {
+        WebSocket ws = webSocket;
+        webSocket = null;
+        if (ws != null) {
+            ws.abort();
+        }
+    }
+
+    private void onMessage(String text) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(text);
+        } catch (Exception e) {
+            log.debug("忽略无法解析的 ComfyUI 事件: {}", e.getMessage());
+            return;
+        }
+        String type = root.path("type").asText();
+        JsonNode data = root.path("data");
+        if ("status".equals(type)) {
+            JsonNode remaining = data.path("status").path("exec_info").path("queue_remaining");
+            if (remaining.isNumber()) {
+                queueRemaining = remaining.asInt();
+            }
+            return;
+        }
+        String promptId = data.path("prompt_id").asText(null);
+        if (promptId == null) {
+            return;
+        }
+        switch (type) {
+            case "progress" -> progress(promptId, data.path("node").asText(null), data.path("value").asInt(), data.path("max").asInt());
+            case "executing" -> {
+                // node 为 null 表示整个 prompt 执行结束
+                if (data.path("node").isNull()) {
+                    finish(promptId, null);
+                } else {
+                    progress(promptId, data.path("node").asText(), 0, 0);
+                }
+            }
+            case "execution_success" -> finish(promptId, null);
+            case "execution_error" -> finish(promptId,
+                "ComfyUI execution error: " + data.path("exception_message").asText("unknown"));
+            case "execution_interrupted" -> finish(promptId, "ComfyUI execution interrupted");
+            default -> {
+            }
+        }
+    }
+
+    private void progress(String promptId, String node, int value, int max) {
+        Watch watch = watches.get(promptId);
+        if (watch == null || watch.onProgress() == null) {
+            return;
+        }
+        try {
+            watch.onProgress().accept(new ComfyUiClient.ComfyUiProgress(promptId, node, value, max));
+        } catch (Exception e) {
+            log.debug("ComfyUI 进度回调失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param error 失败原因，null 表示执行成功
+     */
+    private void finish(String promptId, String error) {
+        Watch watch = watches.get(promptId);
+        if (watch == null) {
+            finishedEarly.put(promptId, Optional.ofNullable(error));
+            return;
+        }
+        complete(watch, error);
+    }
+
+    private static void complete(Watch watch, String error) {
+        if (error == null) {
+            watch.done().complete(null);
+        } else {
+            watch.done().completeExceptionally(new IllegalStateException(error));
+        }
+    }
+
+    private final class Listener implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                onMessage(text);
+            }
+            ws.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket ws, ByteBuffer data, boolean last) {
+            // 二进制帧为预览图，不需要
+            ws.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+            log.info("ComfyUI 事件流关闭: {} {}", statusCode, reason);
+            disconnected(ws);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket ws, Throwable error) {
+            log.warn("ComfyUI 事件流异常: {}", error.getMessage());
+            disconnected(ws);
+        }
+
+        private void disconnected(WebSocket ws) {
+            synchronized (ComfyUiEventStream.this) {
+                if (webSocket == ws) {
+                    webSocket = null;
+                }
+            }
+        }
+    }
+}
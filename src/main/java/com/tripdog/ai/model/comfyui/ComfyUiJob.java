@@ -0,0 +1,39 @@
+package com.tripdog.ai.model.comfyui;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 生图任务：提交参数、派发到的后端与执行状态，持久化在 Redis，任意节点可查询、取消与续派
+ */
+@Data
+@NoArgsConstructor
+public class ComfyUiJob implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String jobId;
+    private Long userId;
+    private String status;        // QUEUED / RUNNING / SUCCEEDED / FAILED / CANCELLED
+    private String workflowId;
+    private String prompt;
+    private String negativePrompt;
+    private Integer width;
+    private Integer height;
+    private Integer steps;
+    private Long seed;
+    private String cacheKey;      // 结果缓存摘要，开启缓存且固定种子时才有值
+    private boolean cached;       // 是否直接由结果缓存返回
+    private String clientId;
+    private Long maxWaitMs;
+    private String backend;       // 派发到的 ComfyUI 地址
+    private String promptId;
+    private String node;
+    private Integer step;
+    private Integer totalSteps;
+    private List<String> objectKeys;
+    private String error;
+    private long createdAt;
+    private long updatedAt;
+}
@@ -0,0 +1,244 @@
+package com.tripdog.ai.model.comfyui;
+
+import com.tripdog.common.middleware.RedisClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_ACTIVE;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_CANCEL;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_EVENTS;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_NODE;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_NODES;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_PROCESSING;
+import static com.tripdog.common.Constants.REDIS_IMAGE_JOB_QUEUE;
+
+/**
+ * 生图任务存储（Redis）
+ * 任务本身按 jobId 保存；待派发的任务 ID 进入全局队列，各节点按后端空闲情况出队；
+ * 出队用 LMOVE 原子地转入本节点的处理列表，任务结束后才移除，节点宕机时任务 ID 仍留在其处理列表中，
+ * 由其他节点在该节点心跳过期后放回队列。
+ * 每个用户未结束的任务 ID 记在 active 集合中用于并发限制。任务每次保存都广播到事件频道，订阅方所在节点据此推送进度
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ComfyUiJobStore {
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private static final Duration JOB_TTL = Duration.ofHours(24);
+    /**
+     * active 集合的兜底过期时间：执行节点宕机时任务不会结束，到期后释放该用户的并发名额
+     */
+    private static final Duration ACTIVE_TTL = Duration.ofHours(1);
+
+    /**
+     * KEYS[1]=用户 active 集合 KEYS[2]=待派发队列 KEYS[3]=任务 key
+     * ARGV[1]=jobId ARGV[2]=任务 ARGV[3]=并发上限 ARGV[4]=任务有效期毫秒 ARGV[5]=active 有效期毫秒 ARGV[6]=任务 key 前缀
+     * 先清理已过期任务的残留 ID，未超过上限时写入任务并入队，返回 1；超过上限返回 0
+     */
+    private static final DefaultRedisScript<Long> ENQUEUE_SCRIPT = new DefaultRedisScript<>(
+        "for _, id in ipairs(redis.call('smembers', KEYS[1])) do " +
+            "if redis.call('exists', ARGV[6] .. id) == 0 then redis.call('srem', KEYS[1], id) end " +
+        "end " +
+        "if redis.call('scard', KEYS[1]) >= tonumber(ARGV[3]) then return 0 end " +
+        "redis.call('set', KEYS[3], ARGV[2], 'PX', ARGV[4]) " +
+        "redis.call('sadd', KEYS[1], ARGV[1]) " +
+        "redis.call('pexpire', KEYS[1], ARGV[5]) " +
+        "redis.call('rpush', KEYS[2], ARGV[1]) " +
+        "return 1",
+        Long.class);
+
+    /**
+     * KEYS[1]=处理列表 KEYS[2]=待派发队列 ARGV[1]=jobId：从处理列表移回队首
+     */
+    private static final DefaultRedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('lrem', KEYS[1], 1, ARGV[1]) " +
+        "return redis.call('lpush', KEYS[2], ARGV[1])",
+        Long.class);
+
+    private final RedisClient redisClient;
+
+    /**
+     * 本节点标识，每次启动重新生成；处理列表与心跳 key 以此区分
+     */
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    /**
+     * 超过该时间未心跳的节点视为下线
+     */
+    @Value("${comfyui.jobs.node-timeout:PT90S}")
+    private Duration nodeTimeout;
+
+    /**
+     * 写入任务并加入待派发队列，该用户未结束的任务达到上限时返回 false
+     */
+    public boolean enqueue(ComfyUiJob job, int maxActivePerUser) {
+        job.setStatus(QUEUED);
+        job.setUpdatedAt(System.currentTimeMillis());
+        Long ok = redisClient.execute(ENQUEUE_SCRIPT,
+            List.of(REDIS_IMAGE_JOB_ACTIVE + job.getUserId(), REDIS_IMAGE_JOB_QUEUE, REDIS_IMAGE_JOB + job.getJobId()),
+            job.getJobId(), job, maxActivePerUser, JOB_TTL.toMillis(), ACTIVE_TTL.toMillis(), REDIS_IMAGE_JOB);
+        return ok != null && ok == 1L;
+    }
+
+    /**
+     * 取出队首任务 ID 并转入本节点的处理列表，队列为空时返回 null；任务结束后需调用 ack
+     */
+    public String poll() {
+        Object jobId = redisClient.lmove(REDIS_IMAGE_JOB_QUEUE, processingKey(nodeId));
+        return jobId == null ? null : jobId.toString();
+    }
+
+    /**
+     * 任务已结束或无需执行，从本节点的处理列表移除
+     */
+    public void ack(String jobId) {
+        try {
+            redisClient.lrem(processingKey(nodeId), 1, jobId);
+        } catch (Exception e) {
+            // 残留的 ID 在本节点下线后由回收流程按终态丢弃
+            log.warn("生图任务处理记录移除失败，jobId: {}", jobId, e);
+        }
+    }
+
+    /**
+     * 从本节点的处理列表放回队首，派发失败时使用
+     */
+    public void requeue(String jobId) {
+        redisClient.execute(REQUEUE_SCRIPT, List.of(processingKey(nodeId), REDIS_IMAGE_JOB_QUEUE), jobId);
+    }
+
+    /**
+     * 刷新本节点的存活标记，并登记到节点集合中，使其处理列表可被其他节点发现
+     */
+    public void heartbeat() {
+        redisClient.sadd(REDIS_IMAGE_JOB_NODES, nodeId);
+        redisClient.set(REDIS_IMAGE_JOB_NODE + nodeId, System.currentTimeMillis(), nodeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 回收已下线节点处理中的任务：逐个用 LMOVE 转入本节点的处理列表（多个节点同时回收时每个任务只会被一个节点取走），
+     * 未结束的任务重置为排队状态后放回队首，已结束或已过期的任务直接丢弃
+     *
+     * @return 重新入队的任务数
+     */
+    public int reclaimOrphans() {
+        Set<Object> nodes = redisClient.smembers(REDIS_IMAGE_JOB_NODES);
+        if (nodes == null) {
+            return 0;
+        }
+        int requeued = 0;
+        for (Object node : nodes) {
+            String deadNode = node.toString();
+            if (nodeId.equals(deadNode) || Boolean.TRUE.equals(redisClient.hasKey(REDIS_IMAGE_JOB_NODE + deadNode))) {
+                continue;
+            }
+            Object moved;
+            while ((moved = redisClient.lmove(processingKey(deadNode), processingKey(nodeId))) != null) {
+                String jobId = moved.toString();
+                ComfyUiJob job = get(jobId);
+                if (job == null || !(QUEUED.equals(job.getStatus()) || RUNNING.equals(job.getStatus()))) {
+                    ack(jobId);
+                    continue;
+                }
+                log.warn("回收下线节点的生图任务，jobId: {}, node: {}, backend: {}", jobId, deadNode, job.getBackend());
+                job.setStatus(QUEUED);
+                job.setBackend(null);
+                job.setPromptId(null);
+                job.setNode(null);
+                job.setStep(null);
+                job.setTotalSteps(null);
+                save(job);
+                requeue(jobId);
+                requeued++;
+            }
+            redisClient.srem(REDIS_IMAGE_JOB_NODES, deadNode);
+        }
+        return requeued;
+    }
+
+    /**
+     * 从待派发队列移除，返回是否移除成功（false 表示已被某个节点取走）
+     */
+    public boolean removeQueued(String jobId) {
+        Long removed = redisClient.lrem(REDIS_IMAGE_JOB_QUEUE, 1, jobId);
+        return removed != null && removed > 0;
+    }
+
+    public ComfyUiJob get(String jobId) {
+        return redisClient.get(REDIS_IMAGE_JOB + jobId, ComfyUiJob.class);
+    }
+
+    /**
+     * 保存并广播任务状态；保存失败只影响查询与推送，不中断执行
+     */
+    public void save(ComfyUiJob job) {
+        job.setUpdatedAt(System.currentTimeMillis());
+        try {
+            redisClient.set(REDIS_IMAGE_JOB + job.getJobId(), job, JOB_TTL.toMillis(), TimeUnit.MILLISECONDS);
+            redisClient.publish(REDIS_IMAGE_JOB_EVENTS, job);
+        } catch (Exception e) {
+            log.warn("生图任务保存失败，jobId: {}", job.getJobId(), e);
+        }
+    }
+
+    /**
+     * 以终态保存任务并释放用户的并发名额
+     */
+    public void finish(ComfyUiJob job, String status) {
+        job.setStatus(status);
+        save(job);
+        try {
+            redisClient.srem(REDIS_IMAGE_JOB_ACTIVE + job.getUserId(), job.getJobId());
+        } catch (Exception e) {
+            log.warn("生图任务并发名额释放失败，jobId: {}", job.getJobId(), e);
+        }
+    }
+
+    /**
+     * 订阅任务状态变化
+     *
+     * @return 取消订阅的句柄
+     */
+    public Runnable subscribe(Consumer<ComfyUiJob> handler) {
+        return redisClient.subscribe(REDIS_IMAGE_JOB_EVENTS, message -> {
+            if (message instanceof ComfyUiJob job) {
+                handler.accept(job);
+            }
+        });
+    }
+
+    /**
+     * 广播取消请求，由执行该任务的节点中断并写入终态
+     */
+    public void requestCancel(String jobId) {
+        redisClient.publish(REDIS_IMAGE_JOB_CANCEL, jobId);
+    }
+
+    public Runnable subscribeCancel(Consumer<String> handler) {
+        return redisClient.subscribe(REDIS_IMAGE_JOB_CANCEL, message -> {
+            if (message != null) {
+                handler.accept(message.toString());
+            }
+        });
+    }
+
+    private String processingKey(String node) {
+        return REDIS_IMAGE_JOB_PROCESSING + node;
+    }
+}
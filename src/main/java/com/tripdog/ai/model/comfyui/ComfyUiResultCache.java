@@ -0,0 +1,115 @@
+package com.tripdog.ai.model.comfyui;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tripdog.common.middleware.RedisClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.tripdog.common.Constants.REDIS_IMAGE_RESULT_CACHE;
+
+/**
+ * 生图结果缓存（Redis 索引 + MinIO 存储）
+ * 只对开启缓存的 workflow 且请求固定了种子时生效：以最终提交给 ComfyUI 的 workflow（规范化 JSON）的摘要为 key，
+ * 图片按摘要存放在固定路径下，Redis 中记录对象路径；相同 workflow、提示词与种子的请求直接返回已生成的图片
+ */
+@Slf4j
+@Component
+public class ComfyUiResultCache {
+    /**
+     * workflow 规范化：节点与输入按名称排序，节点顺序不同的相同 workflow 得到同一个摘要
+     */
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final RedisClient redisClient;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> workflows;
+    private final Duration ttl;
+
+    public ComfyUiResultCache(RedisClient redisClient,
+                              MeterRegistry meterRegistry,
+                              @Value("${comfyui.result-cache.workflows:}") String[] workflows,
+                              @Value("${comfyui.result-cache.ttl:P30D}") Duration ttl) {
+        this.redisClient = redisClient;
+        this.meterRegistry = meterRegistry;
+        this.workflows = Arrays.stream(workflows)
+            .map(String::trim)
+            .filter(StringUtils::hasText)
+            .collect(Collectors.toUnmodifiableSet());
+        this.ttl = ttl;
+    }
+
+    /**
+     * 该 workflow 是否开启了结果缓存
+     */
+    public boolean enabled(String workflowId) {
+        return workflows.contains(workflowId);
+    }
+
+    /**
+     * 计算 workflow 的内容摘要，作为缓存 key 与对象存储目录
+     */
+    public String hash(Map<String, Object> workflow) {
+        try {
+            return DigestUtils.md5DigestAsHex(CANONICAL_MAPPER.writeValueAsBytes(workflow));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("workflow is not serializable", e);
+        }
+    }
+
+    /**
+     * 缓存中的对象路径，未命中或读取失败时返回 null
+     */
+    public List<String> get(String workflowId, String hash) {
+        String value;
+        try {
+            value = redisClient.get(keyOf(workflowId, hash), String.class);
+        } catch (Exception e) {
+            log.warn("读取生图结果缓存失败，workflow: {}，hash: {}", workflowId, hash, e);
+            value = null;
+        }
+        record(workflowId, value == null ? "miss" : "hit");
+        return value == null ? null : List.of(value.split("\n"));
+    }
+
+    public void put(String workflowId, String hash, List<String> objectKeys) {
+        if (objectKeys == null || objectKeys.isEmpty()) {
+            return;
+        }
+        try {
+            redisClient.set(keyOf(workflowId, hash), String.join("\n", objectKeys), ttl.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入生图结果缓存失败，workflow: {}，hash: {}", workflowId, hash, e);
+        }
+    }
+
+    /**
+     * 缓存图片的对象路径：同一摘要的图片路径固定，并发生成相同内容时互相覆盖而不产生多份
+     */
+    public static String objectKey(String workflowId, String hash, int index, String ext) {
+        return "comfyui/cache/" + workflowId + "/" + hash + "/" + index + ext;
+    }
+
+    private String keyOf(String workflowId, String hash) {
+        return REDIS_IMAGE_RESULT_CACHE + workflowId + ":" + hash;
+    }
+
+    private void record(String workflowId, String result) {
+        meterRegistry.counter("comfyui.result.cache", "workflow", workflowId, "result", result).increment();
+    }
+}
@@ -12,10 +12,24 @@ import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
+/**
+ * ComfyUI workflow 模板
+ * 模板（API 格式：节点 ID -> {class_type, inputs}）在加载时解析一次并编译：记录提示词、负面提示词、种子、步数、尺寸
+ * 各参数槽位所在的 节点/输入 位置，解析结果冻结为只读树。每次请求只复制被修改的节点，其余节点与模板共享
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -25,9 +39,50 @@ public class ComfyUiWorkflowTemplate {
 
     private static final String DEFAULT_WORKFLOW_ID = "sdxl";
 
+    private static final Set<String> SEED_KEYS = Set.of("seed", "noise_seed");
+    private static final Set<String> SIZE_KEYS = Set.of("width", "height", "target_width", "target_height");
+    private static final Set<String> TEXT_KEYS = Set.of("text", "text_g", "text_l");
+    /**
+     * KSamplerAdvanced 的 end_at_step 常用 10000 表示“到最后一步”，不参与步数缩放
+     */
+    private static final int STEP_SENTINEL = 10000;
+
+    private static final int MIN_SIZE = 64;
+    private static final int MAX_SIZE = 2048;
+    private static final int MAX_STEPS = 150;
+
     private final ObjectMapper objectMapper;
 
-    private final Map<String, byte[]> templateStore = new ConcurrentHashMap<>();
+    private final Map<String, CompiledTemplate> templateStore = new ConcurrentHashMap<>();
+
+    /**
+     * 生图参数，除 prompt 外均可为空，为空时沿用模板中的值；seed 为空时每次随机，固定后相同参数生成相同图片
+     */
+    public record WorkflowParams(String prompt, String negativePrompt, Integer width, Integer height, Integer steps,
+                                 Long seed) {
+    }
+
+    enum SlotType {
+        PROMPT,
+        NEGATIVE_PROMPT,
+        SEED,
+        WIDTH,
+        HEIGHT,
+        STEPS,
+        STEP_RANGE
+    }
+
+    /**
+     * 参数槽位：nodes[nodeId].inputs[input]，templateValue 为模板中的原值
+     */
+    record Slot(String nodeId, String input, Object templateValue) {
+    }
+
+    /**
+     * 编译后的模板：只读节点树与各类型的槽位
+     */
+    record CompiledTemplate(Map<String, Object> nodes, Map<SlotType, List<Slot>> slots, int maxSteps) {
+    }
 
     @PostConstruct
     public void init() {
@@ -40,7 +95,10 @@ public class ComfyUiWorkflowTemplate {
                 }
                 String workflowId = filename.substring(0, filename.length() - 5);
                 try (InputStream in = resource.getInputStream()) {
-                    templateStore.put(workflowId, in.readAllBytes());
+                    Map<String, Object> nodes = objectMapper.readValue(in, new TypeReference<Map<String, Object>>() {});
+                    CompiledTemplate compiled = compile(nodes);
+                    templateStore.put(workflowId, compiled);
+                    log.info("ComfyUI 模板已编译: {}，槽位: {}", workflowId, compiled.slots().keySet());
                 }
             }
         } catch (IOException e) {
@@ -48,66 +106,142 @@ public class ComfyUiWorkflowTemplate {
         }
     }
 
-    public Map<String, Object> buildWorkflow(String workflowId, String prompt) {
-        if (!StringUtils.hasText(prompt)) {
+    /**
+     * 按参数生成本次请求的 workflow；返回的节点树与模板共享未修改的节点，调用方只能读取
+     */
+    public Map<String, Object> buildWorkflow(String workflowId, WorkflowParams params) {
+        if (params == null || !StringUtils.hasText(params.prompt())) {
             throw new IllegalArgumentException("prompt is required");
         }
-        String id = StringUtils.hasText(workflowId) ? workflowId : DEFAULT_WORKFLOW_ID;
-        byte[] raw = templateStore.get(id);
-        if (raw == null) {
+        validateSize("width", params.width());
+        validateSize("height", params.height());
+        if (params.steps() != null && (params.steps() < 1 || params.steps() > MAX_STEPS)) {
+            throw new IllegalArgumentException("steps must be between 1 and " + MAX_STEPS);
+        }
+        if (params.seed() != null && params.seed() < 0) {
+            throw new IllegalArgumentException("seed must not be negative");
+        }
+        String id = resolveWorkflowId(workflowId);
+        CompiledTemplate template = templateStore.get(id);
+        if (template == null) {
             throw new IllegalArgumentException("workflowId not found: " + id);
         }
-        Map<String, Object> copy;
-        try {
-            copy = objectMapper.readValue(raw, new TypeReference<Map<String, Object>>() {});
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to parse workflow: " + id, e);
+
+        Map<String, Object> workflow = new LinkedHashMap<>(template.nodes());
+        Map<String, Map<String, Object>> touchedInputs = new HashMap<>();
+        patch(template, SlotType.PROMPT, workflow, touchedInputs, slot -> params.prompt());
+        if (StringUtils.hasText(params.negativePrompt())) {
+            patch(template, SlotType.NEGATIVE_PROMPT, workflow, touchedInputs, slot -> params.negativePrompt());
+        }
+        patch(template, SlotType.SEED, workflow, touchedInputs,
+            slot -> params.seed() != null ? params.seed() : ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+        if (params.width() != null) {
+            patch(template, SlotType.WIDTH, workflow, touchedInputs, slot -> params.width());
+        }
+        if (params.height() != null) {
+            patch(template, SlotType.HEIGHT, workflow, touchedInputs, slot -> params.height());
+        }
+        if (params.steps() != null && template.maxSteps() > 0) {
+            // 多个采样器（如 base + refiner）按模板中的比例缩放，保持各阶段的步数划分
+            double ratio = (double) params.steps() / template.maxSteps();
+            patch(template, SlotType.STEPS, workflow, touchedInputs,
+                slot -> Math.max(1, (int) Math.round(((Number) slot.templateValue()).intValue() * ratio)));
+            patch(template, SlotType.STEP_RANGE, workflow, touchedInputs,
+                slot -> (int) Math.round(((Number) slot.templateValue()).intValue() * ratio));
         }
-        replacePrompt(copy, prompt);
-        randomizeSeeds(copy);
-        return copy;
+        return workflow;
     }
 
+    /**
+     * 未指定 workflowId 时使用默认模板
+     */
+    public String resolveWorkflowId(String workflowId) {
+        return StringUtils.hasText(workflowId) ? workflowId : DEFAULT_WORKFLOW_ID;
+    }
+
+    /**
+     * 写入一类槽位：首次修改某个节点时复制该节点及其 inputs，之后复用副本
+     */
     @SuppressWarnings("unchecked")
-    private void replacePrompt(Object node, String prompt) {
-        if (node instanceof Map<?, ?> map) {
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                Object value = entry.getValue();
-                if (value instanceof String str) {
-                    if (DEFAULT_PROMPT.equals(str)) {
-                        ((Map<Object, Object>) map).put(entry.getKey(), prompt);
-                    }
-                } else {
-                    replacePrompt(value, prompt);
-                }
-            }
-            return;
-        }
-        if (node instanceof List<?> list) {
-            for (Object item : list) {
-                replacePrompt(item, prompt);
-            }
+    private void patch(CompiledTemplate template, SlotType type, Map<String, Object> workflow,
+                       Map<String, Map<String, Object>> touchedInputs, Function<Slot, Object> value) {
+        for (Slot slot : template.slots().getOrDefault(type, List.of())) {
+            Map<String, Object> inputs = touchedInputs.computeIfAbsent(slot.nodeId(), nodeId -> {
+                Map<String, Object> node = new LinkedHashMap<>((Map<String, Object>) template.nodes().get(nodeId));
+                Map<String, Object> copy = new LinkedHashMap<>((Map<String, Object>) node.get("inputs"));
+                node.put("inputs", copy);
+                workflow.put(nodeId, node);
+                return copy;
+            });
+            inputs.put(slot.input(), value.apply(slot));
         }
     }
 
+    /**
+     * 扫描一次节点树，定位各类槽位；负面提示词取采样器 negative 输入所连节点的文本
+     */
     @SuppressWarnings("unchecked")
-    private void randomizeSeeds(Object node) {
-        if (node instanceof Map<?, ?> map) {
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                Object key = entry.getKey();
-                Object value = entry.getValue();
-                if (key instanceof String keyStr && ("noise_seed".equals(keyStr) || "seed".equals(keyStr))) {
-                    ((Map<Object, Object>) map).put(key, java.util.concurrent.ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
-                } else {
-                    randomizeSeeds(value);
-                }
+    private CompiledTemplate compile(Map<String, Object> nodes) {
+        Map<SlotType, List<Slot>> slots = new EnumMap<>(SlotType.class);
+        Set<String> negativeNodes = new HashSet<>();
+        for (Object node : nodes.values()) {
+            if (node instanceof Map<?, ?> nodeMap && nodeMap.get("inputs") instanceof Map<?, ?> inputs
+                && inputs.get("negative") instanceof List<?> link && !link.isEmpty()) {
+                negativeNodes.add(String.valueOf(link.get(0)));
             }
-            return;
         }
-        if (node instanceof List<?> list) {
-            for (Object item : list) {
-                randomizeSeeds(item);
+        int maxSteps = 0;
+        for (Map.Entry<String, Object> entry : nodes.entrySet()) {
+            String nodeId = entry.getKey();
+            if (!(entry.getValue() instanceof Map<?, ?> nodeMap) || !(nodeMap.get("inputs") instanceof Map<?, ?> inputs)) {
+                continue;
             }
+            boolean sampler = inputs.containsKey("steps") && (inputs.containsKey("seed") || inputs.containsKey("noise_seed"));
+            for (Map.Entry<String, Object> input : ((Map<String, Object>) inputs).entrySet()) {
+                String key = input.getKey();
+                Object value = input.getValue();
+                SlotType type = null;
+                if (value instanceof String str && DEFAULT_PROMPT.equals(str)) {
+                    type = SlotType.PROMPT;
+                } else if (value instanceof String && TEXT_KEYS.contains(key) && negativeNodes.contains(nodeId)) {
+                    type = SlotType.NEGATIVE_PROMPT;
+                } else if (value instanceof Number && SEED_KEYS.contains(key)) {
+                    type = SlotType.SEED;
+                } else if (value instanceof Number && SIZE_KEYS.contains(key)) {
+                    type = key.endsWith("width") ? SlotType.WIDTH : SlotType.HEIGHT;
+                } else if (sampler && value instanceof Number n && "steps".equals(key)) {
+                    type = SlotType.STEPS;
+                    maxSteps = Math.max(maxSteps, n.intValue());
+                } else if (sampler && value instanceof Number n && n.intValue() < STEP_SENTINEL
+                    && ("start_at_step".equals(key) || "end_at_step".equals(key))) {
+                    type = SlotType.STEP_RANGE;
+                }
+                if (type != null) {
+                    slots.computeIfAbsent(type, t -> new ArrayList<>()).add(new Slot(nodeId, key, value));
+                }
+            }
+        }
+        return new CompiledTemplate((Map<String, Object>) freeze(nodes), slots, maxSteps);
+    }
+
+    /**
+     * 递归转为只读结构，防止共享节点被意外修改
+     */
+    private static Object freeze(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((k, v) -> copy.put(k, freeze(v)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(ComfyUiWorkflowTemplate::freeze).toList();
+        }
+        return value;
+    }
+
+    private static void validateSize(String name, Integer size) {
+        if (size != null && (size < MIN_SIZE || size > MAX_SIZE || size % 8 != 0)) {
+            throw new IllegalArgumentException(name + " must be a multiple of 8 between " + MIN_SIZE + " and " + MAX_SIZE);
         }
     }
 }
@@ -10,8 +10,27 @@ public class Constants {
     public static final String REDIS_KEY_PREFIX = "tripdoge:";
     public static final String REDIS_SUMMARY = REDIS_KEY_PREFIX + "chat:summary_threshold_count:";
     public static final String REDIS_INTIMACY = REDIS_KEY_PREFIX + "intimacy:";
-    public static final String REDIS_CHAT_LIMIT_RULE = REDIS_KEY_PREFIX + "limit:rule";
     public static final String REDIS_CHAT_LIMIT_RPM = REDIS_KEY_PREFIX + "limit:rpm:";
+    public static final String REDIS_SKILL_LIMIT_RESET_LOCK = REDIS_KEY_PREFIX + "skill:reset:lock";
+    public static final String REDIS_SKILL_LIMIT_RESET_CHECKPOINT = REDIS_KEY_PREFIX + "skill:reset:checkpoint:";
+    public static final String REDIS_SKILL_QUOTA = REDIS_KEY_PREFIX + "skill:quota:";
+    public static final String REDIS_SKILL_QUOTA_DIRTY = REDIS_KEY_PREFIX + "skill:quota:dirty";
+    public static final String REDIS_TRAVEL_POI_CACHE = REDIS_KEY_PREFIX + "travel:poi:";
+    public static final String REDIS_TRAVEL_POI_REFRESH_LOCK = REDIS_KEY_PREFIX + "travel:poi:refresh:";
+    public static final String REDIS_TRAVEL_PLAN_LOCK = REDIS_KEY_PREFIX + "travel:plan:lock:";
+    public static final String REDIS_TRAVEL_PLAN_EVENTS = REDIS_KEY_PREFIX + "travel:plan:events:";
+    public static final String REDIS_TRAVEL_RUN = REDIS_KEY_PREFIX + "travel:run:";
+    public static final String REDIS_MCP_TOOL_CACHE = REDIS_KEY_PREFIX + "mcp:tool:";
+    public static final String REDIS_LOCK_FENCE = REDIS_KEY_PREFIX + "lock:fence";
+    public static final String REDIS_IMAGE_JOB = REDIS_KEY_PREFIX + "image:job:";
+    public static final String REDIS_IMAGE_JOB_QUEUE = REDIS_KEY_PREFIX + "image:queue";
+    public static final String REDIS_IMAGE_JOB_PROCESSING = REDIS_KEY_PREFIX + "image:processing:";
+    public static final String REDIS_IMAGE_JOB_NODES = REDIS_KEY_PREFIX + "image:nodes";
+    public static final String REDIS_IMAGE_JOB_NODE = REDIS_KEY_PREFIX + "image:node:";
+    public static final String REDIS_IMAGE_JOB_ACTIVE = REDIS_KEY_PREFIX + "image:active:";
+    public static final String REDIS_IMAGE_JOB_EVENTS = REDIS_KEY_PREFIX + "image:events";
+    public static final String REDIS_IMAGE_JOB_CANCEL = REDIS_KEY_PREFIX + "image:cancel";
+    public static final String REDIS_IMAGE_RESULT_CACHE = REDIS_KEY_PREFIX + "image:result:";
 
     // 系统设置 key
     public static final String SYS_RPM = "rpm";
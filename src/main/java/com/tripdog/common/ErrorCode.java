@@ -51,6 +51,9 @@ public enum ErrorCode {
 
     // 技能调度额度
     NO_SKILL_LIMIT(10700, "技能调度额度不足"),
+    TRAVEL_PLAN_BUSY(10701, "旅行规划排队人数过多，请稍后再试"),
+    TRAVEL_PLAN_TIMEOUT(10702, "旅行规划等待超时，请稍后重试"),
+    IMAGE_JOB_LIMIT(10703, "进行中的生图任务过多，请等待当前任务完成"),
 
     // 限流
     LIMIT_BY_RPM(10800, "请求过于频繁，请稍后再试");
@@ -0,0 +1,185 @@
+package com.tripdog.common.middleware;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.tripdog.common.Constants.REDIS_LOCK_FENCE;
+
+/**
+ * Redis 租约锁
+ * SET NX PX 加锁，锁值为 "fencingToken:随机串"；fencing token 全局单调递增，
+ * 持有者可据此识别锁是否已被他人接管。续租与释放都在 Lua 中校验持有者，不会误删他人的锁；
+ * 长任务通过 keepAlive 在后台按租期的 1/3 心跳续租
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LeaseLock {
+
+    /**
+     * KEYS[1]=锁 ARGV[1]=持有者 ARGV[2]=租期毫秒，返回 1 续租成功，0 已失去锁
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+        Long.class);
+
+    private final RedisClient redisClient;
+
+    /**
+     * 心跳续租线程，不注册为 Bean，避免被当作 @Scheduled 的默认调度器
+     */
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newScheduledThreadPool(2,
+        Thread.ofPlatform().daemon().name("lease-heartbeat-", 0).factory());
+
+    /**
+     * 租约
+     *
+     * @param key          锁 key
+     * @param owner        锁值
+     * @param fencingToken 本次加锁分配的 fencing token
+     */
+    public record Lease(String key, String owner, long fencingToken) {
+    }
+
+    /**
+     * 尝试加锁，锁已被持有时返回 null
+     */
+    public Lease tryAcquire(String key, Duration ttl) {
+        Long token = redisClient.incr(REDIS_LOCK_FENCE);
+        String owner = token + ":" + UUID.randomUUID();
+        if (Boolean.TRUE.equals(redisClient.setIfAbsent(key, owner, ttl.toMillis(), TimeUnit.MILLISECONDS))) {
+            return new Lease(key, owner, token);
+        }
+        return null;
+    }
+
+    /**
+     * 续租，返回 false 表示租约已过期或锁已被他人持有
+     */
+    public boolean renew(Lease lease, Duration ttl) {
+        try {
+            Long renewed = redisClient.execute(RENEW_SCRIPT, List.of(lease.key()), lease.owner(), ttl.toMillis());
+            return renewed != null && renewed == 1L;
+        } catch (Exception e) {
+            log.warn("租约续期失败，key: {}", lease.key(), e);
+            return false;
+        }
+    }
+
+    public void release(Lease lease) {
+        try {
+            redisClient.deleteIfEquals(lease.key(), lease.owner());
+        } catch (Exception e) {
+            // 释放失败时依赖 TTL 自然过期
+            log.warn("租约释放失败，key: {}", lease.key(), e);
+        }
+    }
+
+    /**
+     * 当前持有者的 fencing token，锁不存在时返回 null
+     */
+    public Long currentFencingToken(String key) {
+        Object owner = redisClient.get(key);
+        if (owner == null) {
+            return null;
+        }
+        String value = owner.toString();
+        int idx = value.indexOf(':');
+        try {
+            return Long.parseLong(idx > 0 ? value.substring(0, idx) : value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 启动后台心跳，每 ttl/3 续租一次；续租失败（租约已过期或被他人接管）时停止心跳并回调 onLost。
+     * 心跳在任务结束时需关闭，关闭后不会再回调 onLost
+     */
+    public Heartbeat keepAlive(Lease lease, Duration ttl, Runnable onLost) {
+        Heartbeat heartbeat = new Heartbeat(lease, onLost);
+        long period = Math.max(1, ttl.toMillis() / 3);
+        heartbeat.future = heartbeatScheduler.scheduleWithFixedDelay(() -> {
+            if (!renew(lease, ttl)) {
+                heartbeat.lose();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        return heartbeat;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatScheduler.shutdownNow();
+    }
+
+    /**
+     * 租约心跳
+     */
+    public static final class Heartbeat implements AutoCloseable {
+        private final Lease lease;
+        private final Runnable onLost;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean lost;
+        private boolean closed;
+
+        private Heartbeat(Lease lease, Runnable onLost) {
+            this.lease = lease;
+            this.onLost = onLost;
+        }
+
+        public Lease lease() {
+            return lease;
+        }
+
+        /**
+         * 租约是否已失去，失去后持有者不应再对外产生任何副作用
+         */
+        public boolean lost() {
+            return lost;
+        }
+
+        /**
+         * 租约已失去时抛出 IllegalStateException，用于在步骤之间中止任务
+         */
+        public void check() {
+            if (lost) {
+                throw new IllegalStateException("lease lost, key: " + lease.key() + ", fencingToken: " + lease.fencingToken());
+            }
+        }
+
+        private synchronized void lose() {
+            if (closed || lost) {
+                return;
+            }
+            lost = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            log.warn("租约已失效，停止心跳，key: {}, fencingToken: {}", lease.key(), lease.fencingToken());
+            try {
+                onLost.run();
+            } catch (Exception e) {
+                log.warn("租约失效回调执行失败，key: {}", lease.key(), e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
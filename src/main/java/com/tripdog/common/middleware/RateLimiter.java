@@ -0,0 +1,104 @@
+package com.tripdog.common.middleware;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 滑动窗口限流器
+ * 窗口清理、计数与记录在一个 Lua 脚本内完成（单次往返），
+ * 可选的本地令牌桶在明显超限时直接拒绝，不访问 Redis
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    /**
+     * KEYS[1]=窗口 zset ARGV[1]=当前毫秒 ARGV[2]=窗口毫秒 ARGV[3]=阈值 ARGV[4]=请求标识
+     * 返回 1 放行，0 拒绝
+     */
+    private static final DefaultRedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(
+        "local now = tonumber(ARGV[1]) " +
+        "local window = tonumber(ARGV[2]) " +
+        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window) " +
+        "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then return 0 end " +
+        "redis.call('ZADD', KEYS[1], now, ARGV[4]) " +
+        "redis.call('PEXPIRE', KEYS[1], window) " +
+        "return 1",
+        Long.class);
+
+    private final RedisClient redisClient;
+
+    @Value("${rate-limit.local-bucket-enabled:true}")
+    private boolean localBucketEnabled;
+
+    private final Cache<String, TokenBucket> localBuckets = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterAccess(Duration.ofMinutes(5))
+        .build();
+
+    /**
+     * 尝试获取一次访问许可
+     *
+     * @param key    限流 key（含业务前缀与维度，如用户ID）
+     * @param limit  窗口内允许的最大请求数，小于等于0表示不限流
+     * @param window 窗口长度
+     * @return 是否放行
+     */
+    public boolean tryAcquire(String key, int limit, Duration window) {
+        if (limit <= 0) {
+            return true;
+        }
+        long windowMillis = window.toMillis();
+        if (localBucketEnabled) {
+            TokenBucket bucket = localBuckets.get(key, k -> new TokenBucket(limit));
+            if (!bucket.tryConsume(limit, windowMillis)) {
+                log.debug("本地令牌桶拒绝请求，key: {}", key);
+                return false;
+            }
+        }
+        try {
+            Long allowed = redisClient.execute(SLIDING_WINDOW_SCRIPT, List.of(key),
+                System.currentTimeMillis(), windowMillis, limit, UUID.randomUUID().toString());
+            return allowed == null || allowed == 1L;
+        } catch (Exception e) {
+            // Redis 异常时放行，避免限流组件影响主流程
+            log.error("限流检查失败，key: {}", key, e);
+            return true;
+        }
+    }
+
+    /**
+     * 本地令牌桶：容量为窗口阈值，按 阈值/窗口 的速率匀速补充
+     */
+    private static class TokenBucket {
+        private double tokens;
+        private long lastRefillMillis;
+
+        TokenBucket(int capacity) {
+            this.tokens = capacity;
+            this.lastRefillMillis = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryConsume(int capacity, long windowMillis) {
+            long now = System.currentTimeMillis();
+            double refill = (now - lastRefillMillis) * ((double) capacity / windowMillis);
+            tokens = Math.min(capacity, tokens + refill);
+            lastRefillMillis = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
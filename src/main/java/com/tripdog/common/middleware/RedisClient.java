@@ -1,23 +1,54 @@
 package com.tripdog.common.middleware;
 
+import com.tripdog.common.middleware.codec.MeteredRedisSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Redis 客户端封装
- * 提供常用的 Redis 操作方法
+ * 提供常用的 Redis 操作方法，以及管道/批量/脚本注册能力
+ * 每次调用按命令与 key 前缀记录耗时直方图（redis.client.latency），并把该前缀交给 value 序列化器用于载荷大小统计
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class RedisClient {
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+    private final Map<String, RedisScript<?>> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * 值相等才删除（锁持有者校验释放）
+     */
+    private static final DefaultRedisScript<Long> DELETE_IF_EQUALS_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
 
     // ========================== String 命令 ==========================
 
@@ -25,21 +56,36 @@ public class RedisClient {
      * 设置缓存值
      */
     public void set(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value);
+        timedRun("set", key, () -> redisTemplate.opsForValue().set(key, value));
     }
 
     /**
      * 设置缓存值，带过期时间
      */
     public void set(String key, Object value, long timeout, TimeUnit unit) {
-        redisTemplate.opsForValue().set(key, value, timeout, unit);
+        timedRun("set", key, () -> redisTemplate.opsForValue().set(key, value, timeout, unit));
+    }
+
+    /**
+     * key 不存在时设置缓存值，带过期时间（SET NX PX）
+     */
+    public Boolean setIfAbsent(String key, Object value, long timeout, TimeUnit unit) {
+        return timed("setIfAbsent", key, () -> redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
     }
 
     /**
      * 获取缓存值
      */
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        return timed("get", key, () -> redisTemplate.opsForValue().get(key));
+    }
+
+    /**
+     * 获取缓存值并重置过期时间（GETEX）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAndExpire(String key, long timeout, TimeUnit unit, Class<T> type) {
+        return (T) timed("getAndExpire", key, () -> redisTemplate.opsForValue().getAndExpire(key, timeout, unit));
     }
 
     /**
@@ -47,91 +93,99 @@ public class RedisClient {
      */
     @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> type) {
-        return (T) redisTemplate.opsForValue().get(key);
+        return (T) timed("get", key, () -> redisTemplate.opsForValue().get(key));
     }
 
     /**
      * 删除指定 key
      */
     public Boolean delete(String key) {
-        return redisTemplate.delete(key);
+        return timed("delete", key, () -> redisTemplate.delete(key));
     }
 
     /**
      * 删除多个 key
      */
     public Long delete(Collection<String> keys) {
-        return redisTemplate.delete(keys);
+        return timed("delete", firstKey(keys), () -> redisTemplate.delete(keys));
+    }
+
+    /**
+     * 当 key 的值与 expected 相等时删除（原子操作）
+     */
+    public boolean deleteIfEquals(String key, Object expected) {
+        Long deleted = timed("deleteIfEquals", key, () -> redisTemplate.execute(DELETE_IF_EQUALS_SCRIPT, List.of(key), expected));
+        return deleted != null && deleted > 0;
     }
 
     /**
      * 判断 key 是否存在
      */
     public Boolean hasKey(String key) {
-        return redisTemplate.hasKey(key);
+        return timed("hasKey", key, () -> redisTemplate.hasKey(key));
     }
 
     /**
      * 获取 key 的过期时间（秒）
      */
     public Long getExpire(String key) {
-        return redisTemplate.getExpire(key);
+        return timed("getExpire", key, () -> redisTemplate.getExpire(key));
     }
 
     /**
      * 设置 key 的过期时间
      */
     public Boolean expire(String key, long timeout, TimeUnit unit) {
-        return redisTemplate.expire(key, timeout, unit);
+        return timed("expire", key, () -> redisTemplate.expire(key, timeout, unit));
     }
 
     /**
      * 移除 key 的过期时间（持久化）
      */
     public Boolean persist(String key) {
-        return redisTemplate.persist(key);
+        return timed("persist", key, () -> redisTemplate.persist(key));
     }
 
     /**
      * 对 key 的值进行递增
      */
     public Long incr(String key) {
-        return redisTemplate.opsForValue().increment(key);
+        return timed("incr", key, () -> redisTemplate.opsForValue().increment(key));
     }
 
     /**
      * 对 key 的值进行递增（指定步长）
      */
     public Long incrBy(String key, long delta) {
-        return redisTemplate.opsForValue().increment(key, delta);
+        return timed("incrBy", key, () -> redisTemplate.opsForValue().increment(key, delta));
     }
 
     /**
      * 对 key 的值进行递减
      */
     public Long decr(String key) {
-        return redisTemplate.opsForValue().decrement(key);
+        return timed("decr", key, () -> redisTemplate.opsForValue().decrement(key));
     }
 
     /**
      * 对 key 的值进行递减（指定步长）
      */
     public Long decrBy(String key, long delta) {
-        return redisTemplate.opsForValue().decrement(key, delta);
+        return timed("decrBy", key, () -> redisTemplate.opsForValue().decrement(key, delta));
     }
 
     /**
      * 获取字符串长度
      */
     public Long strlen(String key) {
-        return redisTemplate.opsForValue().size(key);
+        return timed("strlen", key, () -> redisTemplate.opsForValue().size(key));
     }
 
     /**
      * 追加字符串
      */
     public Integer append(String key, String value) {
-        return redisTemplate.opsForValue().append(key, value);
+        return timed("append", key, () -> redisTemplate.opsForValue().append(key, value));
     }
 
     // ========================== Hash 命令 ==========================
@@ -140,77 +194,84 @@ public class RedisClient {
      * 设置哈希字段
      */
     public void hset(String key, String field, Object value) {
-        redisTemplate.opsForHash().put(key, field, value);
+        timedRun("hset", key, () -> redisTemplate.opsForHash().put(key, field, value));
+    }
+
+    /**
+     * 哈希字段不存在时设置
+     */
+    public Boolean hsetnx(String key, String field, Object value) {
+        return timed("hsetnx", key, () -> redisTemplate.opsForHash().putIfAbsent(key, field, value));
     }
 
     /**
      * 批量设置哈希字段
      */
     public void hmset(String key, Map<String, Object> map) {
-        redisTemplate.opsForHash().putAll(key, map);
+        timedRun("hmset", key, () -> redisTemplate.opsForHash().putAll(key, map));
     }
 
     /**
      * 获取哈希字段值
      */
     public Object hget(String key, String field) {
-        return redisTemplate.opsForHash().get(key, field);
+        return timed("hget", key, () -> redisTemplate.opsForHash().get(key, field));
     }
 
     /**
      * 获取所有哈希字段值
      */
     public Map<Object, Object> hgetall(String key) {
-        return redisTemplate.opsForHash().entries(key);
+        return timed("hgetall", key, () -> redisTemplate.opsForHash().entries(key));
     }
 
     /**
      * 删除哈希字段
      */
     public Long hdel(String key, Object... fields) {
-        return redisTemplate.opsForHash().delete(key, fields);
+        return timed("hdel", key, () -> redisTemplate.opsForHash().delete(key, fields));
     }
 
     /**
      * 判断哈希字段是否存在
      */
     public Boolean hexists(String key, String field) {
-        return redisTemplate.opsForHash().hasKey(key, field);
+        return timed("hexists", key, () -> redisTemplate.opsForHash().hasKey(key, field));
     }
 
     /**
      * 获取哈希表中字段的个数
      */
     public Long hlen(String key) {
-        return redisTemplate.opsForHash().size(key);
+        return timed("hlen", key, () -> redisTemplate.opsForHash().size(key));
     }
 
     /**
      * 获取所有哈希字段名
      */
     public Set<Object> hkeys(String key) {
-        return redisTemplate.opsForHash().keys(key);
+        return timed("hkeys", key, () -> redisTemplate.opsForHash().keys(key));
     }
 
     /**
      * 获取所有哈希字段值
      */
     public List<Object> hvals(String key) {
-        return redisTemplate.opsForHash().values(key);
+        return timed("hvals", key, () -> redisTemplate.opsForHash().values(key));
     }
 
     /**
      * 对哈希字段进行递增
      */
     public Long hincrby(String key, String field, long delta) {
-        return redisTemplate.opsForHash().increment(key, field, delta);
+        return timed("hincrby", key, () -> redisTemplate.opsForHash().increment(key, field, delta));
     }
 
     /**
      * 对哈希字段进行递增（浮点数）
      */
     public Double hincrbyfloat(String key, String field, double delta) {
-        return redisTemplate.opsForHash().increment(key, field, delta);
+        return timed("hincrbyfloat", key, () -> redisTemplate.opsForHash().increment(key, field, delta));
     }
 
     // ========================== List 命令 ==========================
@@ -219,70 +280,78 @@ public class RedisClient {
      * 从左边推入元素
      */
     public Long lpush(String key, Object... values) {
-        return redisTemplate.opsForList().leftPushAll(key, values);
+        return timed("lpush", key, () -> redisTemplate.opsForList().leftPushAll(key, values));
     }
 
     /**
      * 从右边推入元素
      */
     public Long rpush(String key, Object... values) {
-        return redisTemplate.opsForList().rightPushAll(key, values);
+        return timed("rpush", key, () -> redisTemplate.opsForList().rightPushAll(key, values));
     }
 
     /**
      * 从左边弹出元素
      */
     public Object lpop(String key) {
-        return redisTemplate.opsForList().leftPop(key);
+        return timed("lpop", key, () -> redisTemplate.opsForList().leftPop(key));
     }
 
     /**
      * 从右边弹出元素
      */
     public Object rpop(String key) {
-        return redisTemplate.opsForList().rightPop(key);
+        return timed("rpop", key, () -> redisTemplate.opsForList().rightPop(key));
+    }
+
+    /**
+     * 原子地弹出 source 左边的元素并推入 destination 右边（LMOVE source destination LEFT RIGHT），source 为空时返回 null
+     */
+    public Object lmove(String source, String destination) {
+        return timed("lmove", source, () -> redisTemplate.opsForList()
+            .move(source, RedisListCommands.Direction.LEFT, destination, RedisListCommands.Direction.RIGHT));
     }
 
     /**
      * 获取列表长度
      */
     public Long llen(String key) {
-        return redisTemplate.opsForList().size(key);
+        return timed("llen", key, () -> redisTemplate.opsForList().size(key));
     }
 
     /**
      * 获取列表范围内的元素
      */
     public List<Object> lrange(String key, long start, long end) {
-        return redisTemplate.opsForList().range(key, start, end);
+        return timed("lrange", key, () -> redisTemplate.opsForList().range(key, start, end));
     }
 
     /**
      * 获取列表指定位置的元素
      */
     public Object lindex(String key, long index) {
-        return redisTemplate.opsForList().index(key, index);
+        return timed("lindex", key, () -> redisTemplate.opsForList().index(key, index));
     }
 
     /**
      * 设置列表指定位置的元素
      */
     public void lset(String key, long index, Object value) {
-        redisTemplate.opsForList().set(key, index, value);
+        timedRun("lset", key, () -> redisTemplate.opsForList().set(key, index, value));
     }
 
     /**
      * 删除列表中指定值的元素
      */
     public Long lrem(String key, long count, Object value) {
-        return redisTemplate.opsForList().remove(key, count, value);
+        return timed("lrem", key, () -> redisTemplate.opsForList().remove(key, count, value));
     }
 
     /**
      * 截断列表到指定范围
      */
     public void ltrim(String key, long start, long end) {
-        redisTemplate.opsForList().trim(key, start, end);
+        timedRun("ltrim", key, () -> redisTemplate.opsForList().trim(key, start, end));
     }
 
     // ========================== Set 命令 ==========================
@@ -291,77 +360,84 @@ public class RedisClient {
      * 添加集合成员
      */
     public Long sadd(String key, Object... members) {
-        return redisTemplate.opsForSet().add(key, members);
+        return timed("sadd", key, () -> redisTemplate.opsForSet().add(key, members));
     }
 
     /**
      * 删除集合成员
      */
     public Long srem(String key, Object... members) {
-        return redisTemplate.opsForSet().remove(key, members);
+        return timed("srem", key, () -> redisTemplate.opsForSet().remove(key, members));
     }
 
     /**
      * 获取集合所有成员
      */
     public Set<Object> smembers(String key) {
-        return redisTemplate.opsForSet().members(key);
+        return timed("smembers", key, () -> redisTemplate.opsForSet().members(key));
     }
 
     /**
      * 判断集合成员是否存在
      */
     public Boolean sismember(String key, Object member) {
-        return redisTemplate.opsForSet().isMember(key, member);
+        return timed("sismember", key, () -> redisTemplate.opsForSet().isMember(key, member));
     }
 
     /**
      * 获取集合大小
      */
     public Long scard(String key) {
-        return redisTemplate.opsForSet().size(key);
+        return timed("scard", key, () -> redisTemplate.opsForSet().size(key));
     }
 
     /**
      * 随机获取集合成员
      */
     public Object srandmember(String key) {
-        return redisTemplate.opsForSet().randomMember(key);
+        return timed("srandmember", key, () -> redisTemplate.opsForSet().randomMember(key));
     }
 
     /**
      * 随机获取指定数量的集合成员
      */
     public List<Object> srandmember(String key, long count) {
-        return redisTemplate.opsForSet().randomMembers(key, count);
+        return timed("srandmember", key, () -> redisTemplate.opsForSet().randomMembers(key, count));
     }
 
     /**
      * 随机删除并返回集合成员
      */
     public Object spop(String key) {
-        return redisTemplate.opsForSet().pop(key);
+        return timed("spop", key, () -> redisTemplate.opsForSet().pop(key));
+    }
+
+    /**
+     * 随机删除并返回指定数量的集合成员
+     */
+    public List<Object> spop(String key, long count) {
+        return timed("spop", key, () -> redisTemplate.opsForSet().pop(key, count));
     }
 
     /**
      * 集合交集
      */
     public Set<Object> sinter(String key1, String key2) {
-        return redisTemplate.opsForSet().intersect(key1, key2);
+        return timed("sinter", key1, () -> redisTemplate.opsForSet().intersect(key1, key2));
     }
 
     /**
      * 集合并集
      */
     public Set<Object> sunion(String key1, String key2) {
-        return redisTemplate.opsForSet().union(key1, key2);
+        return timed("sunion", key1, () -> redisTemplate.opsForSet().union(key1, key2));
     }
 
     /**
      * 集合差集
      */
     public Set<Object> sdiff(String key1, String key2) {
-        return redisTemplate.opsForSet().difference(key1, key2);
+        return timed("sdiff", key1, () -> redisTemplate.opsForSet().difference(key1, key2));
     }
 
     // ========================== ZSet 命令 ==========================
@@ -370,92 +446,270 @@ public class RedisClient {
      * 添加有序集合成员
      */
     public Boolean zadd(String key, Object member, double score) {
-        return redisTemplate.opsForZSet().add(key, member, score);
+        return timed("zadd", key, () -> redisTemplate.opsForZSet().add(key, member, score));
     }
 
     /**
      * 批量添加有序集合成员
      */
     public Long zadd(String key, Set<org.springframework.data.redis.core.ZSetOperations.TypedTuple<Object>> tuples) {
-        return redisTemplate.opsForZSet().add(key, tuples);
+        return timed("zadd", key, () -> redisTemplate.opsForZSet().add(key, tuples));
     }
 
     /**
      * 删除有序集合成员
      */
     public Long zrem(String key, Object... members) {
-        return redisTemplate.opsForZSet().remove(key, members);
+        return timed("zrem", key, () -> redisTemplate.opsForZSet().remove(key, members));
     }
 
     /**
      * 获取有序集合大小
      */
     public Long zcard(String key) {
-        return redisTemplate.opsForZSet().size(key);
+        return timed("zcard", key, () -> redisTemplate.opsForZSet().size(key));
     }
 
     /**
      * 获取有序集合成员的分数
      */
     public Double zscore(String key, Object member) {
-        return redisTemplate.opsForZSet().score(key, member);
+        return timed("zscore", key, () -> redisTemplate.opsForZSet().score(key, member));
     }
 
     /**
      * 获取有序集合指定范围成员（按分数升序）
      */
     public Set<Object> zrange(String key, long start, long end) {
-        return redisTemplate.opsForZSet().range(key, start, end);
+        return timed("zrange", key, () -> redisTemplate.opsForZSet().range(key, start, end));
     }
 
     /**
      * 获取有序集合指定范围成员（按分数降序）
      */
     public Set<Object> zrevrange(String key, long start, long end) {
-        return redisTemplate.opsForZSet().reverseRange(key, start, end);
+        return timed("zrevrange", key, () -> redisTemplate.opsForZSet().reverseRange(key, start, end));
     }
 
     /**
      * 获取有序集合指定分数范围内的成员
      */
     public Set<Object> zrangebyscore(String key, double min, double max) {
-        return redisTemplate.opsForZSet().rangeByScore(key, min, max);
+        return timed("zrangebyscore", key, () -> redisTemplate.opsForZSet().rangeByScore(key, min, max));
     }
 
     /**
      * 获取有序集合成员排名（从小到大）
      */
     public Long zrank(String key, Object member) {
-        return redisTemplate.opsForZSet().rank(key, member);
+        return timed("zrank", key, () -> redisTemplate.opsForZSet().rank(key, member));
     }
 
     /**
      * 获取有序集合成员排名（从大到小）
      */
     public Long zrevrank(String key, Object member) {
-        return redisTemplate.opsForZSet().reverseRank(key, member);
+        return timed("zrevrank", key, () -> redisTemplate.opsForZSet().reverseRank(key, member));
     }
 
     /**
      * 统计有序集合指定分数范围内的成员数
      */
     public Long zcount(String key, double min, double max) {
-        return redisTemplate.opsForZSet().count(key, min, max);
+        return timed("zcount", key, () -> redisTemplate.opsForZSet().count(key, min, max));
     }
 
     /**
      * 对有序集合成员分数进行递增
      */
     public Double zincrby(String key, Object member, double delta) {
-        return redisTemplate.opsForZSet().incrementScore(key, member, delta);
+        return timed("zincrby", key, () -> redisTemplate.opsForZSet().incrementScore(key, member, delta));
     }
 
     /**
      * 删除有序集合指定分数范围内的成员
      */
     public Long zremrangebyscore(String key, double min, double max) {
-        return redisTemplate.opsForZSet().removeRangeByScore(key, min, max);
+        return timed("zremrangebyscore", key, () -> redisTemplate.opsForZSet().removeRangeByScore(key, min, max));
     }
 
-}
+    // ========================== Pub/Sub 命令 ==========================
+
+    /**
+     * 发布消息
+     */
+    public Long publish(String channel, Object message) {
+        return timed("publish", channel, () -> redisTemplate.convertAndSend(channel, message));
+    }
 
+    /**
+     * 订阅频道，消息按 value 序列化方式反序列化后回调
+     *
+     * @return 取消订阅的句柄
+     */
+    public Runnable subscribe(String channel, Consumer<Object> handler) {
+        String prefix = RedisKeyPrefix.of(channel);
+        MessageListener listener = (message, pattern) -> handler.accept(MeteredRedisSerializer.withPrefix(prefix,
+            () -> redisTemplate.getValueSerializer().deserialize(message.getBody())));
+        ChannelTopic topic = new ChannelTopic(channel);
+        redisMessageListenerContainer.addMessageListener(listener, topic);
+        return () -> redisMessageListenerContainer.removeMessageListener(listener, topic);
+    }
+
+    // ========================== Script 命令 ==========================
+
+    /**
+     * 执行 Lua 脚本（args 按 value 序列化方式写入 ARGV）
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return timed("script", firstKey(keys), () -> redisTemplate.execute(script, keys, args));
+    }
+
+    /**
+     * 注册 Lua 脚本并预加载到服务端，后续按名称以 EVALSHA 执行（NOSCRIPT 时自动回退 EVAL）
+     */
+    public <T> RedisScript<T> registerScript(String name, String lua, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>(lua, resultType);
+        scripts.put(name, script);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(lua.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            // 预加载失败不影响使用，首次执行时回退 EVAL
+            log.warn("Lua 脚本预加载失败: {}", name, e);
+        }
+        return script;
+    }
+
+    /**
+     * 按名称执行已注册的 Lua 脚本
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T eval(String name, List<String> keys, Object... args) {
+        RedisScript<T> script = (RedisScript<T>) scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Lua 脚本未注册: " + name);
+        }
+        return execute(script, keys, args);
+    }
+
+    // ========================== 批量/管道 ==========================
+
+    /**
+     * 批量获取缓存值（MGET），结果顺序与 keys 一致，不存在的 key 对应 null
+     */
+    public List<Object> mget(List<String> keys) {
+        return timed("mget", firstKey(keys), () -> redisTemplate.opsForValue().multiGet(keys));
+    }
+
+    /**
+     * 批量设置缓存值（MSET）
+     */
+    public void mset(Map<String, Object> values) {
+        timedRun("mset", firstKey(values.keySet()), () -> redisTemplate.opsForValue().multiSet(values));
+    }
+
+    /**
+     * 批量设置缓存值并统一设置过期时间（管道内 SET EX，一次往返）
+     */
+    public void mset(Map<String, Object> values, long timeout, TimeUnit unit) {
+        timedRun("msetex", firstKey(values.keySet()), () -> pipelineRaw(operations ->
+            values.forEach((key, value) -> operations.opsForValue().set(key, value, timeout, unit))));
+    }
+
+    /**
+     * 管道执行多条命令（一次往返），回调内命令的返回值均为 null，结果按命令顺序返回
+     * <pre>
+     * PipelineResult r = redisClient.pipeline(k1, ops -> {
+     *     ops.opsForValue().get(k1);
+     *     ops.expire(k2, 30, TimeUnit.MINUTES);
+     * });
+     * UserInfoVO user = r.get(0, UserInfoVO.class);
+     * </pre>
+     *
+     * @param key      用于指标标签的 key（取其前缀），管道延迟与命令 value 的编解码都记在该前缀下
+     * @param commands 管道内的命令
+     */
+    public PipelineResult pipeline(String key, Consumer<RedisOperations<String, Object>> commands) {
+        return new PipelineResult(timed("pipeline", key, () -> pipelineRaw(commands)));
+    }
+
+    private List<Object> pipelineRaw(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(sessionCallback(commands));
+    }
+
+    private static SessionCallback<Object> sessionCallback(Consumer<RedisOperations<String, Object>> commands) {
+        return new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * 管道执行结果
+     */
+    public static class PipelineResult {
+        private final List<Object> results;
+
+        PipelineResult(List<Object> results) {
+            this.results = results;
+        }
+
+        /**
+         * 获取第 index 条命令的结果
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(int index, Class<T> type) {
+            Object value = results.get(index);
+            if (value != null && !type.isInstance(value)) {
+                throw new ClassCastException("管道结果类型不匹配，index=" + index + ", 期望 " + type.getName()
+                    + "，实际 " + value.getClass().getName());
+            }
+            return (T) value;
+        }
+
+        public int size() {
+            return results.size();
+        }
+
+        public List<Object> asList() {
+            return results;
+        }
+    }
+
+    // ========================== 指标 ==========================
+
+    private <T> T timed(String command, String key, Supplier<T> call) {
+        String prefix = RedisKeyPrefix.of(key);
+        long start = System.nanoTime();
+        try {
+            return MeteredRedisSerializer.withPrefix(prefix, call);
+        } finally {
+            latencyTimer(command, prefix).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void timedRun(String command, String key, Runnable call) {
+        timed(command, key, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private Timer latencyTimer(String command, String prefix) {
+        return latencyTimers.computeIfAbsent(command + "|" + prefix, k -> Timer.builder("redis.client.latency")
+            .tag("command", command)
+            .tag("prefix", prefix)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private static String firstKey(Collection<String> keys) {
+        return keys == null || keys.isEmpty() ? RedisKeyPrefix.UNKNOWN : keys.iterator().next();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.tripdog.common.middleware;
+
+/**
+ * Redis key 前缀提取，用作监控指标标签
+ */
+public final class RedisKeyPrefix {
+
+    public static final String UNKNOWN = "unknown";
+    private static final int MAX_SEGMENTS = 3;
+
+    private RedisKeyPrefix() {
+    }
+
+    /**
+     * 取 key 中第一个含数字的段之前的部分（最多3段），避免 userId/token 等进入标签
+     * 如 tripdoge:intimacy:daily:flag:1:2 -> tripdoge:intimacy:daily，user:session:abc1 -> user:session
+     */
+    public static String of(String key) {
+        if (key == null || key.isEmpty()) {
+            return UNKNOWN;
+        }
+        String[] segments = key.split(":", MAX_SEGMENTS + 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.length && i < MAX_SEGMENTS; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty() || segment.chars().anyMatch(Character::isDigit)) {
+                break;
+            }
+            if (!sb.isEmpty()) {
+                sb.append(':');
+            }
+            sb.append(segment);
+        }
+        return sb.isEmpty() ? UNKNOWN : sb.toString();
+    }
+}
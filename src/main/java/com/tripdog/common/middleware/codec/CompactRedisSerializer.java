@@ -0,0 +1,139 @@
+package com.tripdog.common.middleware.codec;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 紧凑的 Redis value 序列化器
+ * <ul>
+ *     <li>整数：十进制 ASCII，与 INCR/HINCRBY 及 Lua tonumber 兼容</li>
+ *     <li>字符串：原始 UTF-8；可能与其他编码混淆的字符串（纯数字、JSON 字面量等）退回 JSON 字符串</li>
+ *     <li>已注册类型：MAGIC + 类型ID + 无头 Smile 二进制，不写类名</li>
+ *     <li>其他类型：委托给 JSON 序列化器（带类型信息）</li>
+ * </ul>
+ * 反序列化兼容旧的 JSON 数据，可直接替换原有的 JSON 序列化器
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = 0;
+    private static final Pattern INTEGER = Pattern.compile("-?\\d{1,19}");
+    private static final Pattern JSON_NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private final RedisSerializer<Object> jsonSerializer;
+    private final ObjectMapper binaryMapper;
+    private final Map<Class<?>, Integer> typeToId = new ConcurrentHashMap<>();
+    private final Map<Integer, Class<?>> idToType = new ConcurrentHashMap<>();
+
+    public CompactRedisSerializer(RedisSerializer<Object> jsonSerializer) {
+        this.jsonSerializer = jsonSerializer;
+        SmileFactory smileFactory = SmileFactory.builder()
+            .disable(SmileGenerator.Feature.WRITE_HEADER)
+            .disable(SmileParser.Feature.REQUIRE_HEADER)
+            .build();
+        this.binaryMapper = new ObjectMapper(smileFactory);
+        this.binaryMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        this.binaryMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.binaryMapper.findAndRegisterModules();
+    }
+
+    /**
+     * 注册使用二进制编码的类型，类型ID写入数据，注册后不可变更
+     *
+     * @param typeId 1-255
+     */
+    public CompactRedisSerializer register(int typeId, Class<?> type) {
+        if (typeId < 1 || typeId > 255) {
+            throw new IllegalArgumentException("typeId 超出范围: " + typeId);
+        }
+        Class<?> existing = idToType.putIfAbsent(typeId, type);
+        if (existing != null && existing != type) {
+            throw new IllegalArgumentException("typeId " + typeId + " 已被 " + existing.getName() + " 占用");
+        }
+        typeToId.put(type, typeId);
+        return this;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        if (value instanceof String s) {
+            return needsQuoting(s) ? jsonSerializer.serialize(s) : s.getBytes(StandardCharsets.UTF_8);
+        }
+        Integer typeId = typeToId.get(value.getClass());
+        if (typeId == null) {
+            return jsonSerializer.serialize(value);
+        }
+        try {
+            byte[] body = binaryMapper.writeValueAsBytes(value);
+            byte[] out = new byte[body.length + 2];
+            out[0] = MAGIC;
+            out[1] = (byte) typeId.intValue();
+            System.arraycopy(body, 0, out, 2, body.length);
+            return out;
+        } catch (Exception e) {
+            throw new SerializationException("二进制序列化失败: " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == MAGIC) {
+            Class<?> type = bytes.length > 1 ? idToType.get(bytes[1] & 0xff) : null;
+            if (type == null) {
+                throw new SerializationException("未注册的二进制类型ID");
+            }
+            try {
+                return binaryMapper.readValue(bytes, 2, bytes.length - 2, type);
+            } catch (Exception e) {
+                throw new SerializationException("二进制反序列化失败: " + type.getName(), e);
+            }
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (INTEGER.matcher(text).matches()) {
+            try {
+                long v = Long.parseLong(text);
+                return v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE ? (Object) (int) v : (Object) v;
+            } catch (NumberFormatException ignored) {
+                // 超出 long 范围，交给 JSON 处理
+            }
+        }
+        if (looksLikeJson(text)) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        return text;
+    }
+
+    /**
+     * 原样写入后会被误判为其他编码的字符串
+     */
+    private boolean needsQuoting(String s) {
+        return s.isEmpty() || s.charAt(0) == MAGIC || looksLikeJson(s);
+    }
+
+    private boolean looksLikeJson(String s) {
+        char c = s.charAt(0);
+        return c == '"' || c == '[' || c == '{'
+            || "true".equals(s) || "false".equals(s) || "null".equals(s)
+            || JSON_NUMBER.matcher(s).matches();
+    }
+}
@@ -0,0 +1,85 @@
+package com.tripdog.common.middleware.codec;
+
+import com.tripdog.common.middleware.RedisKeyPrefix;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 带指标统计的 value 序列化器，按 key 前缀记录载荷大小与编解码耗时
+ * 前缀由调用方（RedisClient）通过 {@link #withPrefix} 在整个命令执行期间显式指定，
+ * 覆盖管道、哈希、Lua 参数与订阅回调；未指定时记为 unknown
+ */
+public class MeteredRedisSerializer implements RedisSerializer<Object> {
+
+    private static final ThreadLocal<String> CURRENT_PREFIX = new ThreadLocal<>();
+
+    private final RedisSerializer<Object> delegate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, DistributionSummary> sizeSummaries = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MeteredRedisSerializer(RedisSerializer<Object> delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 在指定 key 前缀下执行 Redis 调用，期间的 value 编解码都记在该前缀下；可嵌套，结束后恢复外层前缀
+     */
+    public static <T> T withPrefix(String prefix, Supplier<T> call) {
+        String previous = CURRENT_PREFIX.get();
+        CURRENT_PREFIX.set(prefix);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_PREFIX.remove();
+            } else {
+                CURRENT_PREFIX.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        long start = System.nanoTime();
+        byte[] bytes = delegate.serialize(value);
+        record("serialize", bytes, System.nanoTime() - start);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        long start = System.nanoTime();
+        Object value = delegate.deserialize(bytes);
+        record("deserialize", bytes, System.nanoTime() - start);
+        return value;
+    }
+
+    private void record(String op, byte[] bytes, long nanos) {
+        if (bytes == null || bytes.length == 0) {
+            return;
+        }
+        String prefix = CURRENT_PREFIX.get() == null ? RedisKeyPrefix.UNKNOWN : CURRENT_PREFIX.get();
+        String metricKey = prefix + "|" + op;
+        sizeSummaries.computeIfAbsent(metricKey, k -> DistributionSummary.builder("redis.value.size")
+                .baseUnit("bytes")
+                .tag("prefix", prefix)
+                .tag("op", op)
+                .register(meterRegistry))
+            .record(bytes.length);
+        timers.computeIfAbsent(metricKey, k -> Timer.builder("redis.value.codec")
+                .tag("prefix", prefix)
+                .tag("op", op)
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
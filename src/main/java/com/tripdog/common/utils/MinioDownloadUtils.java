@@ -0,0 +1,155 @@
+package com.tripdog.common.utils;
+
+import io.minio.StatObjectResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * MinIO 对象下载
+ * 响应体直接从 MinIO 流式读取并以固定大小的缓冲区写出，不在堆内缓冲整个文件；
+ * 支持单段 Range 请求（只向 MinIO 请求对应的字节区间）与基于 ETag/Last-Modified 的条件请求。
+ * 开启 redirect 时不经过应用转发，直接 302 到带下载文件名的预签名 URL
+ */
+@Component
+@RequiredArgsConstructor
+public class MinioDownloadUtils {
+    private final MinioUtils minioUtils;
+
+    @Value("${minio.download.redirect:false}")
+    private boolean redirect;
+
+    @Value("${minio.download.buffer-size:64KB}")
+    private DataSize bufferSize;
+
+    /**
+     * 下载对象，对象不存在时抛出 NO_FOUND_FILE（在写出响应之前）
+     *
+     * @param objectKey   对象路径
+     * @param fileName    下载文件名
+     * @param contentType 响应类型
+     * @param request     当前请求，用于读取 Range 与条件请求头
+     */
+    public ResponseEntity<StreamingResponseBody> download(String objectKey, String fileName, MediaType contentType,
+                                                          ServletWebRequest request) {
+        if (redirect) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                .header(HttpHeaders.LOCATION, minioUtils.getDownloadUrlByPath(objectKey, fileName))
+                .build();
+        }
+        StatObjectResponse stat = minioUtils.statObject(objectKey);
+        long size = stat.size();
+        String etag = StringUtils.hasText(stat.etag()) ? "\"" + stat.etag().replace("\"", "") + "\"" : null;
+        long lastModified = stat.lastModified() == null ? -1 : stat.lastModified().toInstant().toEpochMilli();
+
+        HttpMethod method = request.getHttpMethod();
+        boolean conditional = method == HttpMethod.GET || method == HttpMethod.HEAD;
+        if (conditional && request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.setContentDisposition(ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (conditional && rangeHeader != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // 多段 Range 按完整内容返回，协议允许服务端忽略 Range
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                long start;
+                long end;
+                try {
+                    start = range.getRangeStart(size);
+                    end = range.getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    start = size;
+                    end = size - 1;
+                }
+                if (size == 0 || start >= size || start > end) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+                }
+                long length = end - start + 1;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                headers.setContentLength(length);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .body(stream(objectKey, start, length));
+            }
+        }
+        headers.setContentLength(size);
+        return ResponseEntity.ok()
+            .headers(headers)
+            .body(stream(objectKey, 0, size));
+    }
+
+    /**
+     * 写出时才打开 MinIO 流，条件请求命中或客户端提前断开时不会读取对象
+     */
+    private StreamingResponseBody stream(String objectKey, long offset, long length) {
+        int bufSize = (int) bufferSize.toBytes();
+        return out -> {
+            if (length == 0) {
+                return;
+            }
+            try (InputStream in = minioUtils.getObject(objectKey, offset, length)) {
+                byte[] buffer = new byte[bufSize];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * If-Range 与当前版本一致（或未携带）时才按 Range 返回，否则返回完整内容
+     */
+    private boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified >= 0 && date / 1000 == lastModified / 1000;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
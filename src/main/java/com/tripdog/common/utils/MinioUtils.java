@@ -1,18 +1,28 @@
 package com.tripdog.common.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tripdog.common.ErrorCode;
 import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.GetObjectArgs;
 import io.minio.MinioClient;
+import io.minio.ObjectWriteArgs;
 import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
 import io.minio.http.Method;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
-import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 @Component
 @RequiredArgsConstructor
@@ -20,8 +30,43 @@ public class MinioUtils {
     @Value("${minio.bucket-name}")
     private String bucketName;
 
+    /**
+     * 预签名 URL 有效期
+     */
+    @Value("${minio.presign.expiry:PT1H}")
+    private Duration presignExpiry;
+
+    /**
+     * 安全余量：缓存的 URL 剩余有效期不足该值时重新签名，保证返回给前端的链接至少还能用这么久
+     */
+    @Value("${minio.presign.safety-margin:PT10M}")
+    private Duration presignSafetyMargin;
+
+    @Value("${minio.presign.cache-size:10000}")
+    private long presignCacheSize;
+
     final MinioClient minioClient;
 
+    /**
+     * 预签名 URL 缓存：按 (对象 key, 方法, Content-Disposition) 区分，写入后 (有效期 - 安全余量) 过期
+     */
+    private Cache<PresignKey, String> presignCache;
+
+    private record PresignKey(String objectKey, Method method, String disposition) {
+    }
+
+    @PostConstruct
+    public void init() {
+        Duration ttl = presignExpiry.minus(presignSafetyMargin);
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalStateException("minio.presign.safety-margin must be shorter than minio.presign.expiry");
+        }
+        presignCache = Caffeine.newBuilder()
+            .maximumSize(presignCacheSize)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
     public MinioClient getClient() {
         return minioClient;
     }
@@ -30,13 +75,16 @@ public class MinioUtils {
         return bucketName;
     }
 
+    /**
+     * 上传对象，size 传 -1 表示长度未知（边产生边上传），按最小分片大小分段
+     */
     public void putObject(String objectKey, InputStream inputStream, long size, String contentType) {
         try {
             minioClient.putObject(
                 PutObjectArgs.builder()
                     .bucket(bucketName)
                     .object(objectKey)
-                    .stream(inputStream, size, -1)
+                    .stream(inputStream, size, size < 0 ? ObjectWriteArgs.MIN_MULTIPART_SIZE : -1)
                     .contentType(contentType)
                     .build()
             );
@@ -62,20 +110,37 @@ public class MinioUtils {
     }
 
     /**
-     * 以字节形式获取对象内容，用于后端强制下载。
+     * 查询对象元数据（大小、ETag、最后修改时间），对象不存在时抛出 NO_FOUND_FILE
      */
-    public byte[] getObjectBytes(String objectKey) {
+    public StatObjectResponse statObject(String objectKey) {
         String key = normalizeObjectKey(objectKey);
-        try (InputStream in = minioClient.getObject(
-            GetObjectArgs.builder()
-                .bucket(bucketName)
-                .object(key)
-                .build()
-        ); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            in.transferTo(baos);
-            return baos.toByteArray();
+        try {
+            return minioClient.statObject(
+                StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(key)
+                    .build()
+            );
+        } catch (Exception e) {
+            throw new RuntimeException(ErrorCode.NO_FOUND_FILE.getMessage(), e);
+        }
+    }
+
+    /**
+     * 打开对象的一段内容 [offset, offset + length)，由调用方边读边写出并负责关闭
+     */
+    public InputStream getObject(String objectKey, long offset, long length) {
+        String key = normalizeObjectKey(objectKey);
+        try {
+            return minioClient.getObject(
+                GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(key)
+                    .offset(offset)
+                    .length(length)
+                    .build()
+            );
         } catch (Exception e) {
-            System.err.println("MinIO getObject failed, key=" + key + ", raw=" + objectKey + ", err=" + e.getMessage());
             throw new RuntimeException(ErrorCode.NO_FOUND_FILE.getMessage(), e);
         }
     }
@@ -109,20 +174,22 @@ public class MinioUtils {
 
 
     public String getTemporaryUrlByPath(String path) {
-        String url;
-        try{
-            url = minioClient.getPresignedObjectUrl(
-                    GetPresignedObjectUrlArgs.builder()
-                            .method(Method.GET)
-                            .bucket(bucketName)
-                            .object(path)
-                            .expiry(60 * 60)
-                            .build()
-            );
-        }catch (Exception e){
-            throw new RuntimeException(ErrorCode.NO_FOUND_FILE.getMessage());
-        }
-        return url;
+        return presign(new PresignKey(path, Method.GET, null));
+    }
+
+    /**
+     * 批量获取临时 URL，用于列表接口：重复路径只签名一次，已缓存的直接返回；空路径跳过
+     *
+     * @return 路径 -> 临时 URL
+     */
+    public Map<String, String> getTemporaryUrlsByPath(Collection<String> paths) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        paths.stream()
+            .filter(Objects::nonNull)
+            .filter(path -> !path.isBlank())
+            .distinct()
+            .forEach(path -> urls.put(path, getTemporaryUrlByPath(path)));
+        return urls;
     }
 
     /**
@@ -141,27 +208,32 @@ public class MinioUtils {
     public String getDownloadUrlByPath(String path, String fileName) {
         String objectKey = normalizeObjectKey(path);
         String dispositionFileName = fileName != null ? fileName : objectKey.substring(objectKey.lastIndexOf('/') + 1);
-        String url;
-        try {
-            url = minioClient.getPresignedObjectUrl(
-                    GetPresignedObjectUrlArgs.builder()
-                            .method(Method.GET)
-                            .bucket(bucketName)
-                            .object(objectKey)
-                            .expiry(60 * 60)
-                            .extraQueryParams(java.util.Map.of(
-                                    "response-content-disposition",
-                                    "attachment; filename=\"" + dispositionFileName + "\""
-                            ))
-                            .build()
-            );
-        } catch (Exception e) {
-            throw new RuntimeException(ErrorCode.NO_FOUND_FILE.getMessage(), e);
-        }
-        return url;
+        return presign(new PresignKey(objectKey, Method.GET, "attachment; filename=\"" + dispositionFileName + "\""));
+    }
+
+    /**
+     * 签名并缓存；签名失败不缓存
+     */
+    private String presign(PresignKey key) {
+        return presignCache.get(key, k -> {
+            try {
+                GetPresignedObjectUrlArgs.Builder args = GetPresignedObjectUrlArgs.builder()
+                    .method(k.method())
+                    .bucket(bucketName)
+                    .object(k.objectKey())
+                    .expiry((int) presignExpiry.toSeconds());
+                if (k.disposition() != null) {
+                    args.extraQueryParams(Map.of("response-content-disposition", k.disposition()));
+                }
+                return minioClient.getPresignedObjectUrl(args.build());
+            } catch (Exception e) {
+                throw new RuntimeException(ErrorCode.NO_FOUND_FILE.getMessage(), e);
+            }
+        });
     }
 
     public void removeObject(String objectKey) {
+        presignCache.asMap().keySet().removeIf(key -> Objects.equals(key.objectKey(), objectKey));
         try {
             minioClient.removeObject(
                     io.minio.RemoveObjectArgs.builder()
@@ -6,6 +6,8 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
@@ -48,4 +50,36 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 旅行规划检索分支线程池：分支主要阻塞在 LLM / MCP 调用上，使用虚拟线程
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService travelSearchExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("travel-search-", 0).factory());
+    }
+
+    /**
+     * 旅行规划执行线程池：并发度由 TravelPlanQueue 控制，这里只负责为每个出队的规划提供虚拟线程
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService travelPlanExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("travel-plan-", 0).factory());
+    }
+
+    /**
+     * 模型单轮返回多个工具调用时并发执行工具，调用多为远程 MCP 请求，使用虚拟线程
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiToolExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-tool-", 0).factory());
+    }
+
+    /**
+     * 生图任务线程池：任务大部分时间在等待 ComfyUI 事件与 MinIO 上传，使用虚拟线程
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService imageJobExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("image-job-", 0).factory());
+    }
 }
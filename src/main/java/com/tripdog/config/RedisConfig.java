@@ -4,14 +4,23 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.tripdog.ai.langgraph.travel.TravelStateModels;
+import com.tripdog.ai.model.comfyui.ComfyUiJob;
+import com.tripdog.common.middleware.codec.CompactRedisSerializer;
+import com.tripdog.common.middleware.codec.MeteredRedisSerializer;
+import com.tripdog.model.vo.UserInfoVO;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 
@@ -25,12 +34,19 @@ import org.springframework.session.data.redis.config.annotation.web.http.EnableR
 @EnableCaching
 public class RedisConfig {
 
+    /**
+     * value 序列化方式：compact（整数/字符串原样存储，注册类型二进制编码）或 json（全部 Jackson JSON）
+     * compact 可读取 json 写入的旧数据，反之不行
+     */
+    @Value("${redis.value-serializer:compact}")
+    private String valueSerializerType;
+
     /**
      * 配置RedisTemplate
-     * 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
+     * value 序列化器按配置选择，并按 key 前缀统计载荷大小与编解码耗时
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
@@ -41,6 +57,18 @@ public class RedisConfig {
 
         GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
 
+        RedisSerializer<Object> valueSerializer = jsonSerializer;
+        if ("compact".equalsIgnoreCase(valueSerializerType)) {
+            // 二进制类型ID写入数据，只能追加，不可修改已分配的ID
+            valueSerializer = new CompactRedisSerializer(jsonSerializer)
+                .register(1, UserInfoVO.class)
+                .register(2, TravelStateModels.PoiCacheEntry.class)
+                .register(3, TravelStateModels.TravelCheckpoint.class)
+                .register(4, ComfyUiJob.class);
+        }
+        log.info("Redis value 序列化方式: {}", valueSerializerType);
+        MeteredRedisSerializer meteredSerializer = new MeteredRedisSerializer(valueSerializer, meterRegistry);
+
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
@@ -48,10 +76,10 @@ public class RedisConfig {
         template.setKeySerializer(stringSerializer);
         // hash的key也采用String的序列化方式
         template.setHashKeySerializer(stringSerializer);
-        // value序列化方式采用jackson
-        template.setValueSerializer(jsonSerializer);
-        // hash的value序列化方式采用jackson
-        template.setHashValueSerializer(jsonSerializer);
+        // value序列化方式
+        template.setValueSerializer(meteredSerializer);
+        // hash的value序列化方式
+        template.setHashValueSerializer(meteredSerializer);
 
         template.afterPropertiesSet();
         return template;
@@ -67,4 +95,15 @@ public class RedisConfig {
         template.setConnectionFactory(connectionFactory);
         return template;
     }
+
+    /**
+     * 配置Redis消息监听容器
+     * 用于 pub/sub 订阅（如跨节点本地缓存失效通知）
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
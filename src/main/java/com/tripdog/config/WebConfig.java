@@ -1,7 +1,10 @@
 package com.tripdog.config;
 
+import com.tripdog.common.middleware.RateLimiter;
 import com.tripdog.hook.filter.ReqFilter;
 import com.tripdog.hook.interceptor.LoginInterceptor;
+import com.tripdog.hook.interceptor.RateLimitInterceptor;
+import com.tripdog.service.SystemSettingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
@@ -11,6 +14,11 @@ import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.Duration;
+
+import static com.tripdog.common.Constants.REDIS_CHAT_LIMIT_RPM;
+import static com.tripdog.common.Constants.SYS_RPM;
+
 /**
  * Web配置类
  */
@@ -19,6 +27,8 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final LoginInterceptor loginInterceptor;
+    private final RateLimiter rateLimiter;
+    private final SystemSettingService systemSettingService;
 
     @Value("${cors.allowed-origins}")
     private String allowedOrigins;
@@ -39,6 +49,11 @@ public class WebConfig implements WebMvcConfigurer {
                         "/actuator",           // 监控配置
                         "/actuator/**"
                 );
+
+        // 对话接口按用户 RPM 限流（依赖登录拦截器写入的用户信息）
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, systemSettingService,
+                        SYS_RPM, REDIS_CHAT_LIMIT_RPM, Duration.ofMinutes(1)))
+                .addPathPatterns("/chat/*");
     }
 
     @Override
@@ -2,10 +2,7 @@ package com.tripdog.controller;
 
 import java.util.List;
 
-import com.tripdog.common.Constants;
 import com.tripdog.common.PageVO;
-import com.tripdog.common.middleware.RedisClient;
-import com.tripdog.exception.LimitException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -26,9 +23,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 
-import static com.tripdog.common.Constants.REDIS_CHAT_LIMIT_RPM;
-import static com.tripdog.common.Constants.REDIS_CHAT_LIMIT_RULE;
-
 /**
  * 聊天控制器
  * 实现一个用户对同一角色只有一个持久会话的逻辑
@@ -42,7 +36,6 @@ public class ChatController {
     private final ChatService chatService;
     private final ConversationServiceImpl conversationServiceImpl;
     private final UserSessionService userSessionService;
-    private final RedisClient redisClient;
 
     /**
      * 与指定角色聊天
@@ -52,7 +45,8 @@ public class ChatController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "成功建立SSE连接，返回流式对话内容"),
             @ApiResponse(responseCode = "10200", description = "角色不存在"),
-            @ApiResponse(responseCode = "10105", description = "用户未登录")
+            @ApiResponse(responseCode = "10105", description = "用户未登录"),
+            @ApiResponse(responseCode = "10800", description = "请求过于频繁")
     })
     @PostMapping(value = "/{roleId}", produces = "text/event-stream;charset=UTF-8")
     public SseEmitter chat(@Parameter(description = "角色ID", required = true) @PathVariable Long roleId,
@@ -64,31 +58,7 @@ public class ChatController {
         }
         Long userId = userInfoVO.getId();
 
-        // 限流检查
-        String limitRpmKey = REDIS_CHAT_LIMIT_RPM + userId;
-        try {
-            int rmpLimit = (Integer) redisClient.hget(REDIS_CHAT_LIMIT_RULE, Constants.SYS_RPM);
-            long requestWindow = redisClient.zcount(limitRpmKey, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
-            if(requestWindow >= rmpLimit) {
-                throw new LimitException(ErrorCode.LIMIT_BY_RPM.getMessage());
-            }
-            return chatService.chat(roleId, userId, req);
-        }catch (LimitException e){
-            log.warn("uid:{}, request chat failed, err:{}", userId, e.getMessage());
-            throw new RuntimeException(ErrorCode.LIMIT_BY_RPM.getMessage());
-        } finally {
-            redisClient.zremrangebyscore(limitRpmKey, Double.NEGATIVE_INFINITY, getCurrentMinuteTimeStamp());
-        }
-    }
-
-    /**
-     *  当前11.42:30，则返回 11.42:00 的时间戳
-     * @return 当前分钟的整数时间戳
-     */
-    private int getCurrentMinuteTimeStamp() {
-        long currentTimeSeconds = System.currentTimeMillis() / 1000;
-        long secondsInMinute = currentTimeSeconds % 60;
-        return (int) (currentTimeSeconds - secondsInMinute);
+        return chatService.chat(roleId, userId, req);
     }
 
     /**
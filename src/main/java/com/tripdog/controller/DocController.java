@@ -2,9 +2,6 @@ package com.tripdog.controller;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -25,7 +22,6 @@ import com.tripdog.model.dto.*;
 import com.tripdog.service.direct.CloudFileService;
 import jakarta.annotation.PostConstruct;
 import org.apache.tomcat.websocket.AuthenticationException;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -40,6 +36,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import com.tripdog.common.ErrorCode;
 import com.tripdog.common.Result;
 import com.tripdog.common.utils.FileUploadUtils;
+import com.tripdog.common.utils.MinioDownloadUtils;
 import com.tripdog.common.utils.ThreadLocalUtils;
 import com.tripdog.config.MinioConfig;
 import com.tripdog.service.direct.UserSessionService;
@@ -48,7 +45,6 @@ import com.tripdog.model.entity.DocDO;
 import com.tripdog.model.vo.DocVO;
 import com.tripdog.model.vo.UserInfoVO;
 import com.tripdog.service.DocService;
-import io.minio.GetObjectArgs;
 import io.minio.MinioClient;
 import io.minio.RemoveObjectArgs;
 
@@ -58,7 +54,9 @@ import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser
 import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static com.tripdog.common.Constants.*;
 import static dev.langchain4j.data.document.loader.FileSystemDocumentLoader.loadDocument;
@@ -80,6 +78,7 @@ public class DocController {
     private final MinioConfig minioConfig;
     private final DocService docService;
     private final VectorDataService vectorDataService;
+    private final MinioDownloadUtils minioDownloadUtils;
 
     @PostMapping(path = "/parse", produces = "text/event-stream;charset=UTF-8")
     @Operation(summary = "文档上传并解析",
@@ -124,16 +123,38 @@ public class DocController {
         return Result.success(PageVO.of(docs, page, pageSize));
     }
 
-    @PostMapping("/download")
+    @GetMapping("/{fileId}/download")
     @Operation(summary = "下载文档",
-              description = "根据文件ID下载文档")
+              description = "根据文件ID下载文档，支持 Range 断点续传与 If-None-Match/If-Modified-Since 条件请求")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "下载成功"),
+        @ApiResponse(responseCode = "206", description = "返回请求的字节范围"),
+        @ApiResponse(responseCode = "304", description = "文件未修改"),
+        @ApiResponse(responseCode = "10105", description = "用户未登录"),
+        @ApiResponse(responseCode = "10404", description = "文件不存在")
+    })
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String fileId, ServletWebRequest request) {
+        return downloadDoc(fileId, request);
+    }
+
+    /**
+     * 兼容旧版客户端；POST 请求不会被缓存，也不支持条件请求与断点续传，新客户端请使用 GET /doc/{fileId}/download
+     */
+    @PostMapping("/download")
+    @Operation(summary = "下载文档（旧接口）",
+              description = "根据文件ID下载文档，建议改用 GET /doc/{fileId}/download")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "下载成功"),
         @ApiResponse(responseCode = "10001", description = "参数错误"),
         @ApiResponse(responseCode = "10105", description = "用户未登录"),
         @ApiResponse(responseCode = "10404", description = "文件不存在")
     })
-    public ResponseEntity<byte[]> download(@RequestBody @Validated DocDownloadDTO downloadDTO) {
+    public ResponseEntity<StreamingResponseBody> download(@RequestBody @Validated DocDownloadDTO downloadDTO,
+                                                          ServletWebRequest request) {
+        return downloadDoc(downloadDTO.getFileId(), request);
+    }
+
+    private ResponseEntity<StreamingResponseBody> downloadDoc(String fileId, ServletWebRequest request) {
         try {
             // 从用户会话服务获取当前登录用户信息
             UserInfoVO userInfoVO = userSessionService.getCurrentUser();
@@ -142,7 +163,7 @@ public class DocController {
             }
 
             // 查询文档信息
-            DocVO docVO = docService.getDocByFileId(downloadDTO.getFileId());
+            DocVO docVO = docService.getDocByFileId(fileId);
             if (docVO == null) {
                 return ResponseEntity.notFound().build();
             }
@@ -152,26 +173,9 @@ public class DocController {
                 return ResponseEntity.badRequest().build();
             }
 
-            // 从MinIO下载文件
-            InputStream inputStream = minioClient.getObject(
-                GetObjectArgs.builder()
-                    .bucket(minioConfig.getBucketName())
-                    .object(docVO.getFileUrl())
-                    .build()
-            );
-            byte[] bytes = inputStream.readAllBytes();
-            inputStream.close();
-
-            // 设置响应头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment",
-                URLEncoder.encode(docVO.getFileName(), StandardCharsets.UTF_8));
-            headers.setContentLength(bytes.length);
-
-            return ResponseEntity.ok()
-                .headers(headers)
-                .body(bytes);
+            // 从MinIO流式下载文件
+            return minioDownloadUtils.download(docVO.getFileUrl(), docVO.getFileName(),
+                MediaType.APPLICATION_OCTET_STREAM, request);
 
         } catch (Exception e) {
             log.error("文档下载异常", e);
@@ -1,19 +1,27 @@
 package com.tripdog.controller;
 
+import com.tripdog.common.ErrorCode;
 import com.tripdog.common.Result;
 import com.tripdog.model.dto.ImageGenerateReqDTO;
-import com.tripdog.model.dto.ImageGenerateRespDTO;
+import com.tripdog.model.vo.ImageJobVO;
+import com.tripdog.model.vo.UserInfoVO;
 import com.tripdog.service.ImageGenerateService;
+import com.tripdog.service.direct.UserSessionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Tag(name = "生图")
@@ -22,13 +30,87 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class ImageGenerateController {
 	private final ImageGenerateService imageGenerateService;
+	private final UserSessionService userSessionService;
 
-	@Operation(summary = "ComfyUI 生图", description = "调用本地 ComfyUI workflow 生成图片")
+	@Operation(summary = "ComfyUI 生图", description = "提交 ComfyUI workflow 生图任务，立即返回任务 ID，通过任务查询或事件流获取结果；任务在多个 ComfyUI 后端间按负载调度")
 	@ApiResponses(value = {
-		@ApiResponse(responseCode = "200", description = "生成成功")
+		@ApiResponse(responseCode = "200", description = "提交成功")
 	})
 	@PostMapping("/generate")
-	public Result<ImageGenerateRespDTO> generate(@RequestBody ImageGenerateReqDTO request) {
-		return Result.success(imageGenerateService.generate(request));
+	public Result<ImageJobVO> generate(@RequestBody ImageGenerateReqDTO request) {
+		UserInfoVO user = userSessionService.getCurrentUser();
+		if (user == null) {
+			return Result.error(ErrorCode.USER_NOT_LOGIN);
+		}
+		ImageJobVO job = imageGenerateService.submit(user.getId(), request);
+		if (job == null) {
+			return Result.error(ErrorCode.IMAGE_JOB_LIMIT);
+		}
+		return Result.success(job);
+	}
+
+	@Operation(summary = "查询生图任务")
+	@GetMapping("/job/{jobId}")
+	public Result<ImageJobVO> job(@PathVariable String jobId) {
+		UserInfoVO user = userSessionService.getCurrentUser();
+		if (user == null) {
+			return Result.error(ErrorCode.USER_NOT_LOGIN);
+		}
+		ImageJobVO job = imageGenerateService.getJob(user.getId(), jobId);
+		if (job == null) {
+			return Result.error(ErrorCode.NOT_FOUND);
+		}
+		return Result.success(job);
+	}
+
+	@Operation(summary = "取消生图任务", description = "排队中的任务直接移出队列，执行中的任务中断 ComfyUI 执行")
+	@PostMapping("/job/{jobId}/cancel")
+	public Result<Boolean> cancel(@PathVariable String jobId) {
+		UserInfoVO user = userSessionService.getCurrentUser();
+		if (user == null) {
+			return Result.error(ErrorCode.USER_NOT_LOGIN);
+		}
+		return Result.success(imageGenerateService.cancel(user.getId(), jobId));
+	}
+
+	@Operation(summary = "生图任务事件流", description = "progress 推送任务状态与采样进度，成功时推送 done，失败或取消时推送 error，随后关闭")
+	@GetMapping(value = "/job/{jobId}/events", produces = "text/event-stream")
+	public SseEmitter events(@PathVariable String jobId) {
+		SseEmitter emitter = new SseEmitter(0L);
+		UserInfoVO user = userSessionService.getCurrentUser();
+		AtomicReference<Runnable> unsubscribe = new AtomicReference<>();
+		Runnable handle = user == null ? null : imageGenerateService.subscribe(user.getId(), jobId, job -> {
+			try {
+				if (ImageJobVO.SUCCEEDED.equals(job.getStatus())) {
+					emitter.send(SseEmitter.event().name("done").data(job));
+					emitter.complete();
+				} else if (job.finished()) {
+					emitter.send(SseEmitter.event().name("error").data(job));
+					emitter.complete();
+				} else {
+					emitter.send(SseEmitter.event().name("progress").data(job));
+				}
+			} catch (Exception e) {
+				// 客户端已断开
+				Runnable r = unsubscribe.get();
+				if (r != null) {
+					r.run();
+				}
+			}
+		});
+		if (handle == null) {
+			try {
+				emitter.send(SseEmitter.event().name("error").data(user == null
+					? ErrorCode.USER_NOT_LOGIN.getMessage() : ErrorCode.NOT_FOUND.getMessage()));
+			} catch (Exception ignored) {
+			}
+			emitter.complete();
+			return emitter;
+		}
+		unsubscribe.set(handle);
+		emitter.onCompletion(handle);
+		emitter.onTimeout(handle);
+		emitter.onError(e -> handle.run());
+		return emitter;
 	}
 }
@@ -24,6 +24,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.tripdog.common.Constants.CONVERSATION_ID;
 
@@ -57,6 +58,8 @@ public class RoleController {
         }
         // 检查所有角色是否已创建好对话
         List<RoleInfoVO> roleInfoList = roleService.getRoleInfoList();
+        Map<String, String> avatarUrls = minioUtils.getTemporaryUrlsByPath(
+            roleInfoList.stream().map(RoleInfoVO::getAvatarUrl).toList());
         roleInfoList.forEach(roleInfoVO -> {
             ConversationDO conversation = conversationService.findConversationByUserAndRole(
                 userInfo.getId(), roleInfoVO.getId());
@@ -64,7 +67,7 @@ public class RoleController {
                 conversation = conversationService.getOrCreateConversation(userInfo.getId(), roleInfoVO.getId());
             }
             roleInfoVO.setConversationId(conversation.getConversationId());
-            roleInfoVO.setAvatarUrl(minioUtils.getTemporaryUrlByPath(roleInfoVO.getAvatarUrl()));
+            roleInfoVO.setAvatarUrl(avatarUrls.get(roleInfoVO.getAvatarUrl()));
         });
 
         return Result.success(roleInfoList);
@@ -3,7 +3,7 @@ package com.tripdog.controller;
 import com.tripdog.common.PageVO;
 import com.tripdog.common.Result;
 import com.tripdog.model.entity.SkillHistory;
-import com.tripdog.common.utils.MinioUtils;
+import com.tripdog.common.utils.MinioDownloadUtils;
 import com.tripdog.model.vo.UserInfoVO;
 import com.tripdog.model.vo.SkillLimitVO;
 import com.tripdog.service.SkillHistoryService;
@@ -15,9 +15,9 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -28,7 +28,7 @@ public class SkillController {
     private final SkillHistoryService skillHistoryService;
     private final UserSkillLimitService userSkillLimitService;
     private final UserSessionService userSessionService;
-    private final MinioUtils minioUtils;
+    private final MinioDownloadUtils minioDownloadUtils;
 
     @GetMapping("/limit")
     public Result<SkillLimitVO> getSkillLimit(@RequestParam Long roleId) {
@@ -55,7 +55,7 @@ public class SkillController {
     }
 
     @GetMapping("/history/{id}/md")
-    public ResponseEntity<byte[]> downloadMarkdown(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> downloadMarkdown(@PathVariable Long id, ServletWebRequest request) {
         UserInfoVO user = userSessionService.getCurrentUser();
         if (user == null) {
             return ResponseEntity.status(401).build();
@@ -65,12 +65,9 @@ public class SkillController {
             return ResponseEntity.notFound().build();
         }
         try {
-            byte[] bytes = minioUtils.getObjectBytes(history.getMdPath());
-            String filename = URLEncoder.encode((history.getDestination() == null ? "travel" : history.getDestination()) + ".md", StandardCharsets.UTF_8);
-            return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + filename)
-                .contentType(MediaType.parseMediaType("text/markdown; charset=utf-8"))
-                .body(bytes);
+            String filename = (history.getDestination() == null ? "travel" : history.getDestination()) + ".md";
+            return minioDownloadUtils.download(history.getMdPath(), filename,
+                MediaType.parseMediaType("text/markdown; charset=utf-8"), request);
         } catch (RuntimeException e) {
             // 如果对象路径取不到，回退重定向预签名 URL，避免返回空内容
             if (history.getMdUrl() != null) {
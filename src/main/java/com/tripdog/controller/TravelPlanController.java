@@ -5,17 +5,29 @@ import com.tripdog.common.Result;
 import com.tripdog.common.utils.ThreadLocalUtils;
 import com.tripdog.model.dto.TravelPlanRequest;
 import com.tripdog.model.dto.TravelPlanResponse;
+import com.tripdog.ai.langgraph.travel.TravelCheckpointStore;
+import com.tripdog.ai.langgraph.travel.TravelPlanQueue;
+import com.tripdog.ai.langgraph.travel.TravelState;
 import com.tripdog.model.entity.ConversationDO;
+import com.tripdog.model.vo.TravelRunStatusVO;
 import com.tripdog.model.vo.UserInfoVO;
 import com.tripdog.service.ConversationService;
 import com.tripdog.service.TravelPlanService;
 import com.tripdog.service.UserSkillLimitService;
 import com.tripdog.service.direct.UserSessionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.concurrent.CompletableFuture;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static com.tripdog.common.Constants.*;
 
@@ -27,6 +39,13 @@ public class TravelPlanController {
     private final TravelPlanService travelPlanService;
     private final UserSessionService userSessionService;
     private final UserSkillLimitService userSkillLimitService;
+    private final TravelPlanQueue travelPlanQueue;
+
+    /**
+     * JSON 接口等待规划完成（含排队）的最长时间
+     */
+    @Value("${travel.plan.sync-timeout:PT5M}")
+    private Duration syncTimeout;
 
     /**
      * SSE 版本：前端可订阅进度与完成事件。
@@ -48,13 +67,136 @@ public class TravelPlanController {
             req.setRawRequirement(buildRawRequirement(req));
         }
 
-        // 校验技能额度是否够
-        int roleSkillLimit = userSkillLimitService.getRoleSkillLimit(user.getId(), roleId);
-        if(roleSkillLimit == 0) {
+        // 预扣技能额度，规划失败时退还
+        if (!userSkillLimitService.tryAcquireSkillLimit(user.getId(), roleId)) {
             throw new RuntimeException(ErrorCode.NO_SKILL_LIMIT.getMessage());
         }
+        return stream(user, roleId, TravelPlanQueue.Priority.NORMAL, true, (onNode, onMarkdown) ->
+            travelPlanService.runTravelPlanStream(roleId, req, onNode, onMarkdown));
+    }
+
+    /**
+     * 从检查点续跑失败或中断的规划，事件格式与 /plan 一致；已成功的运行直接下发结果。
+     * 续跑属于原规划的一部分，不再扣减额度，失败时也不退还
+     */
+    @PostMapping(value = "/plan/resume", produces = "text/event-stream")
+    public SseEmitter resume(@RequestParam String runId) {
+        UserInfoVO user = userSessionService.getCurrentUser();
+        TravelRunStatusVO status = user == null ? null : travelPlanService.getRunStatus(user.getId(), runId);
+        if (status == null || TravelCheckpointStore.SUCCEEDED.equals(status.getStatus())) {
+            SseEmitter emitter = new SseEmitter(0L);
+            try {
+                if (status == null) {
+                    emitter.send(SseEmitter.event().name("error").data(user == null
+                        ? ErrorCode.USER_NOT_LOGIN.getMessage() : ErrorCode.NOT_FOUND.getMessage()));
+                } else {
+                    TravelPlanResponse resp = travelPlanService.resumeTravelPlanStream(user.getId(), runId, null, null);
+                    emitter.send(SseEmitter.event().name("done").data(resp));
+                    emitter.send(SseEmitter.event().name("done").data("[DONE]"));
+                }
+            } catch (Exception ignored) {
+            }
+            emitter.complete();
+            return emitter;
+        }
+        Long roleId = status.getRoleId();
+        return stream(user, roleId, TravelPlanQueue.Priority.HIGH, false, (onNode, onMarkdown) ->
+            travelPlanService.resumeTravelPlanStream(user.getId(), runId, onNode, onMarkdown));
+    }
+
+    @GetMapping("/run/{runId}")
+    public Result<TravelRunStatusVO> runStatus(@PathVariable String runId) {
+        UserInfoVO user = userSessionService.getCurrentUser();
+        if (user == null) {
+            return Result.error(ErrorCode.USER_NOT_LOGIN);
+        }
+        TravelRunStatusVO status = travelPlanService.getRunStatus(user.getId(), runId);
+        if (status == null) {
+            return Result.error(ErrorCode.NOT_FOUND);
+        }
+        return Result.success(status);
+    }
+
+    /**
+     * JSON 版本：请求线程提交到排队执行器后立即释放，规划完成或超时后再写出响应。
+     * 额度的退还在任务结束时统一处理；超时或客户端断开只取消任务，任务被取消或执行失败后同样走结束回调退还
+     */
+    @PostMapping(value = "/plan", consumes = "application/json", produces = "application/json")
+    public DeferredResult<Result<TravelPlanResponse>> planJson(@RequestParam(required = false) Long roleId,
+                                                               @RequestBody TravelPlanRequest req) {
+        DeferredResult<Result<TravelPlanResponse>> deferred = new DeferredResult<>(syncTimeout.toMillis());
+        UserInfoVO user = userSessionService.getCurrentUser();
+        if (user == null) {
+            deferred.setResult(Result.error(ErrorCode.USER_NOT_LOGIN));
+            return deferred;
+        }
+
+        // 预扣技能额度，规划失败时退还
+        if (!userSkillLimitService.tryAcquireSkillLimit(user.getId(), roleId)) {
+            deferred.setResult(Result.error(ErrorCode.NO_SKILL_LIMIT));
+            return deferred;
+        }
+
+        if (req.getRawRequirement() == null) {
+            req.setRawRequirement(buildRawRequirement(req));
+        }
+        TravelPlanQueue.Ticket<TravelPlanResponse> ticket = travelPlanQueue.submit(user.getId(), TravelPlanQueue.Priority.NORMAL, () -> {
+            try {
+                ThreadLocalUtils.set(USER_ID, user.getId());
+                ThreadLocalUtils.set(ROLE_ID, roleId == null ? 0L : roleId);
+                ConversationDO conv = conversationService.findConversationByUserAndRole(user.getId(), roleId);
+                ThreadLocalUtils.set(CONVERSATION_ID, conv.getConversationId());
+                return travelPlanService.runTravelPlan(roleId, req);
+            } finally {
+                ThreadLocalUtils.remove(USER_ID);
+                ThreadLocalUtils.remove(ROLE_ID);
+            }
+        }, null);
+        if (ticket == null) {
+            userSkillLimitService.refundSkillLimit(user.getId(), roleId);
+            deferred.setResult(Result.error(ErrorCode.TRAVEL_PLAN_BUSY));
+            return deferred;
+        }
+        // 任务只会结束一次，额度在这里最多退还一次；超时后才结束的任务结果不再写出
+        ticket.future().whenComplete((resp, e) -> {
+            if (e == null) {
+                refundIfFailed(resp, user.getId(), roleId);
+                deferred.setResult(Result.success(resp));
+                return;
+            }
+            userSkillLimitService.refundSkillLimit(user.getId(), roleId);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof CancellationException) {
+                deferred.setResult(Result.error(ErrorCode.TRAVEL_PLAN_TIMEOUT));
+            } else {
+                deferred.setErrorResult(cause);
+            }
+        });
+        // 排队中的任务移出队列，执行中的任务被中断
+        deferred.onTimeout(() -> {
+            ticket.cancel();
+            deferred.setResult(Result.error(ErrorCode.TRAVEL_PLAN_TIMEOUT));
+        });
+        deferred.onError(e -> ticket.cancel());
+        return deferred;
+    }
+
+    /**
+     * 规划进入排队执行器，通过 SSE 推送排队位置、进度、路书增量与结果；charged 表示调用前已预扣额度，失败或排队中断开时退还。
+     * 客户端断开后取消排队中的任务，或中断执行中的任务
+     */
+    private SseEmitter stream(UserInfoVO user, Long roleId, TravelPlanQueue.Priority priority, boolean charged,
+                              PlanCall call) {
         SseEmitter emitter = new SseEmitter(0L); // 不超时，避免长耗时中断
-        CompletableFuture.runAsync(() -> {
+        AtomicReference<TravelPlanQueue.Ticket<Void>> ticketRef = new AtomicReference<>();
+        // 失败、断开与取消可能先后发生，额度只退还一次；未预扣时视为已退还
+        AtomicBoolean refunded = new AtomicBoolean(!charged);
+        Runnable refund = () -> {
+            if (refunded.compareAndSet(false, true)) {
+                userSkillLimitService.refundSkillLimit(user.getId(), roleId);
+            }
+        };
+        TravelPlanQueue.Ticket<Void> ticket = travelPlanQueue.submit(user.getId(), priority, () -> {
             try {
                 // 子线程补写 ThreadLocal，避免异步丢失
                 ThreadLocalUtils.set(USER_ID, user.getId());
@@ -64,15 +206,26 @@ public class TravelPlanController {
                 // 进度开始
                 emitter.send(SseEmitter.event().name("progress").data(java.util.Map.of("status", "running")));
 
-                TravelPlanResponse resp = travelPlanService.runTravelPlanStream(roleId, req, (node, state) -> {
+                TravelPlanResponse resp = call.run((node, state) -> {
                     try {
-                        emitter.send(SseEmitter.event().name("workflow_update").data(java.util.Map.of(
-                            "step", node,
-                            "status", "finish",
-                            "timestamp", System.currentTimeMillis()
-                        )));
+                        java.util.Map<String, Object> update = new java.util.HashMap<>();
+                        update.put("step", node);
+                        update.put("status", "finish");
+                        update.put("timestamp", System.currentTimeMillis());
+                        if (state != null) {
+                            // 客户端据此查询状态或断线后续跑
+                            update.put("runId", state.runId());
+                        }
+                        emitter.send(SseEmitter.event().name("workflow_update").data(update));
+                    } catch (Exception ignored) {}
+                }, token -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("markdown").data(java.util.Map.of("delta", token)));
                     } catch (Exception ignored) {}
                 });
+                if (resp == null || resp.getHistoryId() == null) {
+                    refund.run();
+                }
 
                 // 下发完成事件
                 emitter.send(SseEmitter.event().name("done").data(resp));
@@ -80,6 +233,7 @@ public class TravelPlanController {
                 emitter.send(SseEmitter.event().name("done").data("[DONE]"));
                 emitter.complete();
             } catch (Exception e) {
+                refund.run();
                 try {
                     emitter.send(SseEmitter.event().name("error").data("规划生成异常，请稍后重试。"));
                 } catch (Exception ignored) {
@@ -89,41 +243,49 @@ public class TravelPlanController {
                 ThreadLocalUtils.remove(USER_ID);
                 ThreadLocalUtils.remove(ROLE_ID);
             }
+            return null;
+        }, position -> {
+            try {
+                emitter.send(SseEmitter.event().name("queue").data(java.util.Map.of("position", position)));
+            } catch (Exception e) {
+                cancel(ticketRef.get(), refund);
+            }
         });
-        userSkillLimitService.updateSkillLimit(user.getId(), roleId, -1);
+        if (ticket == null) {
+            refund.run();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(ErrorCode.TRAVEL_PLAN_BUSY.getMessage()));
+            } catch (Exception ignored) {
+            }
+            emitter.complete();
+            return emitter;
+        }
+        ticketRef.set(ticket);
+        // 正常完成时任务已结束，cancel 不产生影响
+        emitter.onCompletion(() -> cancel(ticket, refund));
+        emitter.onTimeout(() -> cancel(ticket, refund));
+        emitter.onError(e -> cancel(ticket, refund));
         return emitter;
     }
 
-    @PostMapping(value = "/plan", consumes = "application/json", produces = "application/json")
-    public Result<TravelPlanResponse> planJson(@RequestParam(required = false) Long roleId,
-                                               @RequestBody TravelPlanRequest req) {
-        UserInfoVO user = userSessionService.getCurrentUser();
-        if (user == null) {
-            return Result.error(ErrorCode.USER_NOT_LOGIN);
+    /**
+     * 服务内部捕获的失败（重复任务、未生成路书、执行异常）以未保存历史记录的响应返回，同样退还预扣的额度
+     */
+    private void refundIfFailed(TravelPlanResponse resp, Long userId, Long roleId) {
+        if (resp == null || resp.getHistoryId() == null) {
+            userSkillLimitService.refundSkillLimit(userId, roleId);
         }
+    }
 
-        // 校验技能额度是否够
-        int roleSkillLimit = userSkillLimitService.getRoleSkillLimit(user.getId(), roleId);
-        if (roleSkillLimit == 0) {
-            return Result.error(ErrorCode.NO_SKILL_LIMIT);
+    private void cancel(TravelPlanQueue.Ticket<?> ticket, Runnable refund) {
+        if (ticket != null && ticket.cancel()) {
+            refund.run();
         }
+    }
 
-        if (req.getRawRequirement() == null) {
-            req.setRawRequirement(buildRawRequirement(req));
-        }
-        try {
-            ThreadLocalUtils.set(USER_ID, user.getId());
-            ThreadLocalUtils.set(ROLE_ID, roleId == null ? 0L : roleId);
-            ConversationDO conv = conversationService.findConversationByUserAndRole(user.getId(), roleId);
-            ThreadLocalUtils.set(CONVERSATION_ID, conv.getConversationId());
-            TravelPlanResponse resp = travelPlanService.runTravelPlan(roleId, req);
-            // 扣减额度（与 SSE 版本保持一致）
-            userSkillLimitService.updateSkillLimit(user.getId(), roleId, -1);
-            return Result.success(resp);
-        } finally {
-            ThreadLocalUtils.remove(USER_ID);
-            ThreadLocalUtils.remove(ROLE_ID);
-        }
+    @FunctionalInterface
+    private interface PlanCall {
+        TravelPlanResponse run(BiConsumer<String, TravelState> onNodeFinish, Consumer<String> onMarkdownToken) throws Exception;
     }
 
     private String buildRawRequirement(TravelPlanRequest req) {
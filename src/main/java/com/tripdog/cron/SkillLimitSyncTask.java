@@ -0,0 +1,48 @@
+package com.tripdog.cron;
+
+import com.tripdog.common.middleware.RedisClient;
+import com.tripdog.service.UserSkillLimitService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.tripdog.common.Constants.REDIS_SKILL_LIMIT_RESET_LOCK;
+
+/**
+ * 技能额度回写任务：将 Redis 账本中变更过的额度写回 MySQL。
+ * 与月度重置任务共用一把锁，重置期间跳过回写。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SkillLimitSyncTask {
+    private static final long LOCK_TIMEOUT_SECONDS = 60;
+
+    private final UserSkillLimitService userSkillLimitService;
+    private final RedisClient redisClient;
+
+    /**
+     * 每 30 秒执行一次。
+     */
+    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        String owner = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisClient.setIfAbsent(REDIS_SKILL_LIMIT_RESET_LOCK, owner, LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS))) {
+            return;
+        }
+        try {
+            int flushed = userSkillLimitService.flushDirtySkillLimits();
+            if (flushed > 0) {
+                log.info("技能额度回写完成，共 {} 条", flushed);
+            }
+        } catch (Exception e) {
+            log.error("技能额度回写任务执行异常", e);
+        } finally {
+            redisClient.deleteIfEquals(REDIS_SKILL_LIMIT_RESET_LOCK, owner);
+        }
+    }
+}
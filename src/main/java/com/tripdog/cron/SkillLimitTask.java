@@ -1,70 +1,138 @@
 package com.tripdog.cron;
 
+import com.tripdog.common.middleware.RedisClient;
 import com.tripdog.common.utils.RoleConfigParser;
 import com.tripdog.mapper.RoleMapper;
 import com.tripdog.mapper.UserSkillLimitMapper;
 import com.tripdog.model.entity.RoleDO;
-import com.tripdog.model.entity.UserSkillLimitDO;
+import com.tripdog.service.UserSkillLimitService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.tripdog.common.Constants.REDIS_SKILL_LIMIT_RESET_CHECKPOINT;
+import static com.tripdog.common.Constants.REDIS_SKILL_LIMIT_RESET_LOCK;
 
 /**
  * 月初刷新技能额度
+ * 按主键区间分块执行集合式 UPDATE，分布式锁保证多节点只执行一次，
+ * 每块完成后记录检查点，任务中断后下一次触发从检查点继续；
+ * 该锁同时与额度回写任务互斥，避免回写旧额度覆盖重置结果
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SkillLimitTask {
+    /**
+     * 单次 UPDATE 覆盖的主键区间大小，控制单条语句的锁持有时间
+     */
+    private static final long CHUNK_SIZE = 1000L;
+    private static final long LOCK_TIMEOUT_MINUTES = 10;
+    private static final long CHECKPOINT_TTL_DAYS = 40;
+    private static final String FIELD_LAST_ID = "lastId";
+    private static final String FIELD_DONE = "done";
+    private static final int LOCK_WAIT_SECONDS = 60;
+
     private final UserSkillLimitMapper userSkillLimitMapper;
     private final RoleMapper roleMapper;
+    private final RedisClient redisClient;
+    private final UserSkillLimitService userSkillLimitService;
 
-    @Scheduled(cron = "0 0 12 1 * ?")
+    /**
+     * 每月1日 12:00 起每小时触发一次，本月已完成则直接跳过，未完成则从检查点续跑
+     */
+    @Scheduled(cron = "0 0 12-23 1 * ?")
     public void runTask() {
+        String owner = UUID.randomUUID().toString();
+        if (!acquireLock(owner)) {
+            log.info("技能额度重置任务未获取到锁，跳过");
+            return;
+        }
         try {
+            String checkpointKey = REDIS_SKILL_LIMIT_RESET_CHECKPOINT + YearMonth.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
+            if (redisClient.hexists(checkpointKey, FIELD_DONE)) {
+                log.info("本月技能额度已重置，跳过");
+                return;
+            }
+
             List<RoleDO> roleList = roleMapper.selectActiveRoles();
             Map<Long, Integer> roleSkillLimitMap = new HashMap<>();
             for (RoleDO roleDO : roleList) {
                 int limitMonth = RoleConfigParser.extractSkillExecLimitMonth(roleDO.getRoleSetting());
                 roleSkillLimitMap.put(roleDO.getId(), limitMonth);
             }
+            if (roleSkillLimitMap.isEmpty()) {
+                log.info("无启用角色，技能额度重置任务结束");
+                return;
+            }
 
-            int batchSize = 100;
-            long lastId = 0L;
+            long lastId = readCheckpoint(checkpointKey);
+            long maxId = userSkillLimitMapper.selectMaxId();
             int totalUpdated = 0;
+            if (lastId > 0) {
+                log.info("技能额度重置任务从检查点继续，lastId={}", lastId);
+            }
 
-            while (true) {
-                List<UserSkillLimitDO> list = userSkillLimitMapper.pageById(lastId, batchSize);
-                if (list.isEmpty()) {
-                    break;
-                }
-
-                for (UserSkillLimitDO item : list) {
-                    Integer limit = roleSkillLimitMap.get(item.getRoleId());
-                    if (limit != null) {
-                        int updated = userSkillLimitMapper.updateLimitByUserAndRole(
-                            item.getUserId(), item.getRoleId(), limit
-                        );
-                        totalUpdated += updated;
-                    }
-                }
-
-                // 使用最后一条记录的 ID 作为下一次查询的起点
-                lastId = list.getLast().getId();
+            while (lastId < maxId) {
+                long endId = Math.min(lastId + CHUNK_SIZE, maxId);
+                totalUpdated += userSkillLimitMapper.resetLimitByIdRange(lastId, endId, roleSkillLimitMap);
+                lastId = endId;
 
-                if (list.size() < batchSize) {
-                    break;
-                }
+                // 记录检查点并续期锁
+                redisClient.hset(checkpointKey, FIELD_LAST_ID, String.valueOf(lastId));
+                redisClient.expire(checkpointKey, CHECKPOINT_TTL_DAYS, TimeUnit.DAYS);
+                redisClient.expire(REDIS_SKILL_LIMIT_RESET_LOCK, LOCK_TIMEOUT_MINUTES, TimeUnit.MINUTES);
             }
 
+            // 清空额度缓存，后续请求从数据库重新加载
+            userSkillLimitService.evictSkillLimitCache(roleSkillLimitMap.keySet());
+            redisClient.hset(checkpointKey, FIELD_DONE, "1");
+            redisClient.expire(checkpointKey, CHECKPOINT_TTL_DAYS, TimeUnit.DAYS);
             log.info("技能额度重置任务完成，共更新 {} 条记录", totalUpdated);
         } catch (Exception e) {
             log.error("技能额度重置任务失败", e);
+        } finally {
+            redisClient.deleteIfEquals(REDIS_SKILL_LIMIT_RESET_LOCK, owner);
+        }
+    }
+
+    /**
+     * 等待额度回写任务释放锁，其他节点的重置任务同样会在此等待，拿到锁后通过完成标记跳过
+     */
+    private boolean acquireLock(String owner) {
+        for (int i = 0; i < LOCK_WAIT_SECONDS; i++) {
+            if (Boolean.TRUE.equals(redisClient.setIfAbsent(REDIS_SKILL_LIMIT_RESET_LOCK, owner, LOCK_TIMEOUT_MINUTES, TimeUnit.MINUTES))) {
+                return true;
+            }
+            try {
+                TimeUnit.SECONDS.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private long readCheckpoint(String checkpointKey) {
+        Object val = redisClient.hget(checkpointKey, FIELD_LAST_ID);
+        if (val == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(val.toString());
+        } catch (NumberFormatException e) {
+            log.warn("技能额度重置检查点无效: {}", val);
+            return 0L;
         }
     }
 }
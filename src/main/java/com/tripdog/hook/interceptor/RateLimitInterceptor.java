@@ -0,0 +1,67 @@
+package com.tripdog.hook.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tripdog.common.ErrorCode;
+import com.tripdog.common.Result;
+import com.tripdog.common.middleware.RateLimiter;
+import com.tripdog.model.vo.UserInfoVO;
+import com.tripdog.service.SystemSettingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+import static com.tripdog.common.Constants.USER_SESSION_KEY;
+
+/**
+ * 限流拦截器
+ * 按登录用户维度做滑动窗口限流，阈值取自系统设置（内存缓存），需注册在登录拦截器之后
+ */
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final SystemSettingService systemSettingService;
+    private final String settingKey;
+    private final String keyPrefix;
+    private final Duration window;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param settingKey 系统设置中窗口阈值的 key
+     * @param keyPrefix  限流 Redis key 前缀
+     * @param window     窗口长度
+     */
+    public RateLimitInterceptor(RateLimiter rateLimiter, SystemSettingService systemSettingService,
+                                String settingKey, String keyPrefix, Duration window) {
+        this.rateLimiter = rateLimiter;
+        this.systemSettingService = systemSettingService;
+        this.settingKey = settingKey;
+        this.keyPrefix = keyPrefix;
+        this.window = window;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            return true;
+        }
+        Object loginUser = request.getAttribute(USER_SESSION_KEY);
+        if (!(loginUser instanceof UserInfoVO user)) {
+            return true;
+        }
+
+        int limit = systemSettingService.getInt(settingKey, 0);
+        if (rateLimiter.tryAcquire(keyPrefix + user.getId(), limit, window)) {
+            return true;
+        }
+
+        log.warn("uid:{}, request {} limited, limit:{}", user.getId(), request.getRequestURI(), limit);
+        response.setContentType("application/json;charset=UTF-8");
+        response.setStatus(429);
+        response.getWriter().write(objectMapper.writeValueAsString(Result.error(ErrorCode.LIMIT_BY_RPM)));
+        return false;
+    }
+}
@@ -18,6 +18,11 @@ public interface ChatHistoryMapper {
      */
     int insert(ChatHistoryDO chatHistory);
 
+    /**
+     * 批量插入聊天记录（按列表顺序写入）
+     */
+    int batchInsert(List<ChatHistoryDO> list);
+
     /**
      * 根据ID删除聊天记录
      */
@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserSkillLimitMapper {
@@ -41,6 +42,19 @@ public interface UserSkillLimitMapper {
      * 查询技能额度总数
      */
     long countAll();
+
+    /**
+     * 查询当前最大主键ID，表为空时返回0
+     */
+    long selectMaxId();
+
+    /**
+     * 按主键区间批量重置技能额度（区间为 (startId, endId]）
+     * @param roleLimits roleId -> 月度额度
+     * @return 受影响行数
+     */
+    int resetLimitByIdRange(@Param("startId") Long startId, @Param("endId") Long endId,
+                            @Param("roleLimits") Map<Long, Integer> roleLimits);
 }
 
 
@@ -15,7 +15,30 @@ public class ImageGenerateReqDTO {
     private String workflowId;
 
     /**
-     * Optional client id, if empty will be generated.
+     * Negative prompt. Optional, template value is kept when empty.
+     */
+    private String negativePrompt;
+
+    /**
+     * Image size, multiple of 8 between 64 and 2048. Optional.
+     */
+    private Integer width;
+
+    private Integer height;
+
+    /**
+     * Sampling steps (1-150). Optional; multi-stage templates are scaled proportionally.
+     */
+    private Integer steps;
+
+    /**
+     * Fixed sampler seed (>= 0). Optional; random when empty. With a fixed seed, repeated requests on a
+     * workflow that has result caching enabled return the stored images without regenerating.
+     */
+    private Long seed;
+
+    /**
+     * Optional client id. When set, ComfyUI pushes events to this client and progress falls back to polling.
      */
     private String clientId;
 
@@ -4,6 +4,7 @@ import lombok.Data;
 
 @Data
 public class TravelPlanResponse {
+    private String runId;
     private Long historyId;
     private String mdPath;
     private String mdUrl;
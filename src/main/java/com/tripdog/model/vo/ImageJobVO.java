@@ -0,0 +1,71 @@
+package com.tripdog.model.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 生图任务状态
+ */
+@Data
+public class ImageJobVO {
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    /**
+     * 任务 ID
+     */
+    private String jobId;
+
+    /**
+     * 任务状态（QUEUED/RUNNING/SUCCEEDED/FAILED/CANCELLED）
+     */
+    private String status;
+
+    private String workflowId;
+
+    /**
+     * ComfyUI prompt ID，提交到 ComfyUI 后才有值
+     */
+    private String promptId;
+
+    /**
+     * 当前执行的节点与采样步数，非采样节点时步数为 0
+     */
+    private String node;
+
+    private Integer step;
+
+    private Integer totalSteps;
+
+    /**
+     * 成功后的图片地址与对象存储路径
+     */
+    private List<String> imageUrls;
+
+    private List<String> objectKeys;
+
+    /**
+     * 是否直接返回了缓存的生成结果（相同 workflow、提示词与种子）
+     */
+    private boolean cached;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    private Long createdAt;
+
+    private Long updatedAt;
+
+    /**
+     * 是否已结束（成功、失败或取消）
+     */
+    public boolean finished() {
+        return SUCCEEDED.equals(status) || FAILED.equals(status) || CANCELLED.equals(status);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tripdog.model.vo;
+
+import lombok.Data;
+
+/**
+ * 旅行规划运行状态
+ */
+@Data
+public class TravelRunStatusVO {
+    /**
+     * 运行 ID
+     */
+    private String runId;
+
+    /**
+     * 角色 ID
+     */
+    private Long roleId;
+
+    /**
+     * 运行状态（RUNNING/SUCCEEDED/FAILED）
+     */
+    private String status;
+
+    /**
+     * 最近完成的节点
+     */
+    private String lastNode;
+
+    /**
+     * 检查点更新时间（毫秒）
+     */
+    private Long updatedAt;
+
+    private String destination;
+
+    private Integer days;
+
+    /**
+     * 成功后的历史记录 ID 与路书地址
+     */
+    private Long historyId;
+
+    private String mdUrl;
+
+    /**
+     * 是否可以从检查点续跑
+     */
+    private Boolean resumable;
+}
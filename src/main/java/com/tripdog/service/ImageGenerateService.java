@@ -1,8 +1,30 @@
 package com.tripdog.service;
 
 import com.tripdog.model.dto.ImageGenerateReqDTO;
-import com.tripdog.model.dto.ImageGenerateRespDTO;
+import com.tripdog.model.vo.ImageJobVO;
+
+import java.util.function.Consumer;
 
 public interface ImageGenerateService {
-    ImageGenerateRespDTO generate(ImageGenerateReqDTO request);
+    /**
+     * 提交生图任务，立即返回任务 ID，生成在后台执行；该用户未结束的任务达到上限时返回 null
+     */
+    ImageJobVO submit(Long userId, ImageGenerateReqDTO request);
+
+    /**
+     * 查询任务状态，任务不存在或不属于该用户时返回 null
+     */
+    ImageJobVO getJob(Long userId, String jobId);
+
+    /**
+     * 订阅任务状态变化，订阅时立即回调一次当前状态
+     *
+     * @return 取消订阅的句柄；任务不存在或不属于该用户时返回 null
+     */
+    Runnable subscribe(Long userId, String jobId, Consumer<ImageJobVO> listener);
+
+    /**
+     * 取消排队中或执行中的任务，任务不存在、不属于该用户或已结束时返回 false
+     */
+    boolean cancel(Long userId, String jobId);
 }
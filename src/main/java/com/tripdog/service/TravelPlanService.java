@@ -4,17 +4,32 @@ import com.tripdog.ai.langgraph.travel.TravelState;
 import com.tripdog.exception.TravelPlannerGraphException;
 import com.tripdog.model.dto.TravelPlanRequest;
 import com.tripdog.model.dto.TravelPlanResponse;
+import com.tripdog.model.vo.TravelRunStatusVO;
 
 public interface TravelPlanService {
 
     TravelPlanResponse runTravelPlan(Long roleId, TravelPlanRequest request);
 
     /**
-     * 流式执行，按节点回调进度。
+     * 流式执行，按节点回调进度，路书生成阶段逐段回调 Markdown 增量。
      */
     TravelPlanResponse runTravelPlanStream(Long roleId, TravelPlanRequest request,
-                                           java.util.function.BiConsumer<String, TravelState> onNodeFinish)
+                                           java.util.function.BiConsumer<String, TravelState> onNodeFinish,
+                                           java.util.function.Consumer<String> onMarkdownToken)
         throws TravelPlannerGraphException;
 
+    /**
+     * 按 runId 从最近的检查点续跑，已完成的节点不会重复执行；已成功的运行直接返回结果。
+     */
+    TravelPlanResponse resumeTravelPlanStream(Long userId, String runId,
+                                              java.util.function.BiConsumer<String, TravelState> onNodeFinish,
+                                              java.util.function.Consumer<String> onMarkdownToken)
+        throws TravelPlannerGraphException;
+
+    /**
+     * 查询运行状态，运行不存在或不属于该用户时返回 null
+     */
+    TravelRunStatusVO getRunStatus(Long userId, String runId);
+
 }
 
@@ -16,4 +16,26 @@ public interface UserSkillLimitService {
      * 如果用户无额度记录，会自动初始化
      */
     void updateSkillLimit(Long userId, Long roleId, Integer delta);
+
+    /**
+     * 原子预扣一次技能额度
+     * @return 额度充足并扣减成功返回 true，额度不足返回 false
+     */
+    boolean tryAcquireSkillLimit(Long userId, Long roleId);
+
+    /**
+     * 退还一次预扣的技能额度（技能执行失败时调用）
+     */
+    void refundSkillLimit(Long userId, Long roleId);
+
+    /**
+     * 将缓存中变更过的额度回写到数据库
+     * @return 回写条数
+     */
+    int flushDirtySkillLimits();
+
+    /**
+     * 清空指定角色的额度缓存（月度重置后调用）
+     */
+    void evictSkillLimitCache(Iterable<Long> roleIds);
 }
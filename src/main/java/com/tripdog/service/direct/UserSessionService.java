@@ -1,5 +1,7 @@
 package com.tripdog.service.direct;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tripdog.common.middleware.RedisClient;
 import com.tripdog.model.vo.UserInfoVO;
 import com.tripdog.common.utils.TokenUtils;
@@ -9,13 +11,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 用户Session管理服务
  * 基于Redis实现用户登录状态管理，替代HttpSession
+ * 本地近端缓存 token -> 用户信息，续期按剩余有效期节流，登出通过 pub/sub 通知各节点失效
  *
  * @author tripdog
  */
@@ -32,6 +38,46 @@ public class UserSessionService {
     private static final long SESSION_TIMEOUT = 30;
     private static final String SESSION_KEY_PREFIX = "user:session:";
     private static final String USER_TOKEN_PREFIX = "user:token:";
+    private static final String SESSION_INVALIDATE_CHANNEL = "user:session:invalidate";
+
+    /**
+     * 近端缓存有效期（秒），兜底 pub/sub 丢失的情况
+     */
+    private static final long NEAR_CACHE_TTL_SECONDS = 30;
+
+    /**
+     * 近端缓存：token -> 用户信息
+     */
+    private final Cache<String, UserInfoVO> nearCache = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterWrite(Duration.ofSeconds(NEAR_CACHE_TTL_SECONDS))
+        .build();
+
+    /**
+     * 续期记录：存在即表示本节点在半个超时周期内续期过，Redis 剩余有效期不少于一半
+     */
+    private final Cache<String, Boolean> renewTracker = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterWrite(Duration.ofMinutes(SESSION_TIMEOUT / 2))
+        .build();
+
+    /**
+     * token -> 用户ID：比近端缓存保留更久，近端缓存过期后仍能拼出用户token映射的 key，
+     * 使读取与续期在同一管道内完成
+     */
+    private final Cache<String, Long> sessionUsers = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterAccess(Duration.ofMinutes(SESSION_TIMEOUT))
+        .build();
+
+    @PostConstruct
+    public void init() {
+        redisClient.subscribe(SESSION_INVALIDATE_CHANNEL, token -> {
+            if (token != null) {
+                invalidateLocal(token.toString());
+            }
+        });
+    }
 
     /**
      * 创建用户Session
@@ -52,14 +98,14 @@ public class UserSessionService {
             Object existingToken = redisClient.get(userTokenKey);
             if (existingToken != null) {
                 redisClient.delete(SESSION_KEY_PREFIX + existingToken.toString());
+                publishInvalidation(existingToken.toString());
                 log.debug("删除用户 {} 的旧session", userInfo.getId());
             }
 
-            // 保存用户信息到Redis，设置过期时间
-            redisClient.set(sessionKey, userInfo, SESSION_TIMEOUT, TimeUnit.MINUTES);
-
-            // 保存用户ID到token的映射，便于管理
-            redisClient.set(userTokenKey, token, SESSION_TIMEOUT, TimeUnit.MINUTES);
+            // 保存用户信息及用户ID到token的映射（便于管理），一次往返设置并带过期时间
+            redisClient.mset(Map.of(sessionKey, userInfo, userTokenKey, token), SESSION_TIMEOUT, TimeUnit.MINUTES);
+            sessionUsers.put(token, userInfo.getId());
+            renewTracker.put(token, Boolean.TRUE);
 
             log.debug("为用户 {} 创建session成功", userInfo.getId());
             return token;
@@ -72,6 +118,7 @@ public class UserSessionService {
 
     /**
      * 获取用户Session信息
+     * 优先读近端缓存；Redis 剩余有效期不足一半时才续期
      *
      * @param token 用户token
      * @return 用户信息，如果session不存在或已过期返回null
@@ -81,15 +128,20 @@ public class UserSessionService {
             return null;
         }
 
-        String sessionKey = SESSION_KEY_PREFIX + token;
-
         try {
-            UserInfoVO userInfo = redisClient.get(sessionKey, UserInfoVO.class);
+            UserInfoVO userInfo = nearCache.getIfPresent(token);
+            boolean needRenew = renewTracker.getIfPresent(token) == null;
             if (userInfo != null) {
-                // Session续期
-                renewSession(token);
-                log.debug("获取用户session成功，用户ID: {}", userInfo.getId());
+                if (needRenew && !renewSession(token, userInfo.getId())) {
+                    return null;
+                }
+            } else {
+                userInfo = loadSession(token, needRenew);
+                if (userInfo == null) {
+                    return null;
+                }
             }
+            log.debug("获取用户session成功，用户ID: {}", userInfo.getId());
             return userInfo;
 
         } catch (Exception e) {
@@ -108,29 +160,77 @@ public class UserSessionService {
             return;
         }
 
-        String sessionKey = SESSION_KEY_PREFIX + token;
-
         try {
-            // 检查session是否存在
-            if (redisClient.hasKey(sessionKey)) {
-                // 获取用户信息
-                UserInfoVO userInfo = redisClient.get(sessionKey, UserInfoVO.class);
-                if (userInfo != null) {
-                    // 重新设置过期时间
-                    redisClient.expire(sessionKey, SESSION_TIMEOUT, TimeUnit.MINUTES);
-
-                    // 同时续期用户token映射
-                    String userTokenKey = USER_TOKEN_PREFIX + userInfo.getId();
-                    redisClient.expire(userTokenKey, SESSION_TIMEOUT, TimeUnit.MINUTES);
-
-                    log.debug("用户session续期成功，用户ID: {}", userInfo.getId());
-                }
+            UserInfoVO userInfo = nearCache.getIfPresent(token);
+            if (userInfo != null) {
+                renewSession(token, userInfo.getId());
+            } else {
+                loadSession(token, true);
             }
         } catch (Exception e) {
             log.error("续期用户session失败，token: {}", token, e);
         }
     }
 
+    /**
+     * 近端缓存未命中时从 Redis 读取Session，需要续期时一并续期
+     * 本节点已知该 token 的用户ID时，GETEX 与用户token映射的 EXPIRE 在同一管道内一次往返完成；
+     * 本节点首次见到该 token 时须先读出用户ID，再一次管道续期两个 key
+     *
+     * @return 用户信息，session 不存在时返回 null
+     */
+    private UserInfoVO loadSession(String token, boolean renew) {
+        String sessionKey = SESSION_KEY_PREFIX + token;
+        Long userId = sessionUsers.getIfPresent(token);
+        if (!renew || userId == null) {
+            UserInfoVO userInfo = redisClient.get(sessionKey, UserInfoVO.class);
+            if (userInfo == null) {
+                return null;
+            }
+            remember(token, userInfo);
+            return !renew || renewSession(token, userInfo.getId()) ? userInfo : null;
+        }
+
+        RedisClient.PipelineResult result = redisClient.pipeline(sessionKey, ops -> {
+            ops.opsForValue().getAndExpire(sessionKey, SESSION_TIMEOUT, TimeUnit.MINUTES);
+            ops.expire(USER_TOKEN_PREFIX + userId, SESSION_TIMEOUT, TimeUnit.MINUTES);
+        });
+        UserInfoVO userInfo = result.get(0, UserInfoVO.class);
+        if (userInfo == null) {
+            invalidateLocal(token);
+            return null;
+        }
+        remember(token, userInfo);
+        renewTracker.put(token, Boolean.TRUE);
+        log.debug("用户session续期成功，用户ID: {}", userId);
+        return userInfo;
+    }
+
+    /**
+     * 续期已知用户ID的Session，session 与用户token映射在同一管道内续期
+     *
+     * @return session 是否仍然存在
+     */
+    private boolean renewSession(String token, Long userId) {
+        RedisClient.PipelineResult result = redisClient.pipeline(SESSION_KEY_PREFIX + token, ops -> {
+            ops.expire(SESSION_KEY_PREFIX + token, SESSION_TIMEOUT, TimeUnit.MINUTES);
+            ops.expire(USER_TOKEN_PREFIX + userId, SESSION_TIMEOUT, TimeUnit.MINUTES);
+        });
+        if (!Boolean.TRUE.equals(result.get(0, Boolean.class))) {
+            // 其他节点已删除（通知可能丢失），本地同步失效
+            invalidateLocal(token);
+            return false;
+        }
+        renewTracker.put(token, Boolean.TRUE);
+        log.debug("用户session续期成功，用户ID: {}", userId);
+        return true;
+    }
+
+    private void remember(String token, UserInfoVO userInfo) {
+        nearCache.put(token, userInfo);
+        sessionUsers.put(token, userInfo.getId());
+    }
+
     /**
      * 删除用户Session（登出）
      *
@@ -149,6 +249,7 @@ public class UserSessionService {
 
             // 删除session
             redisClient.delete(sessionKey);
+            publishInvalidation(token);
 
             // 删除用户token映射
             if (userInfo != null) {
@@ -180,6 +281,7 @@ public class UserSessionService {
             if (token != null) {
                 String sessionKey = SESSION_KEY_PREFIX + token.toString();
                 redisClient.delete(sessionKey);
+                publishInvalidation(token.toString());
             }
 
             // 删除用户token映射
@@ -203,6 +305,9 @@ public class UserSessionService {
             return false;
         }
 
+        if (nearCache.getIfPresent(token) != null) {
+            return true;
+        }
         String sessionKey = SESSION_KEY_PREFIX + token;
         return redisClient.hasKey(sessionKey);
     }
@@ -223,6 +328,24 @@ public class UserSessionService {
         return expireTime != null ? expireTime : -1;
     }
 
+    /**
+     * 本节点失效并通知其他节点失效近端缓存
+     */
+    private void publishInvalidation(String token) {
+        invalidateLocal(token);
+        try {
+            redisClient.publish(SESSION_INVALIDATE_CHANNEL, token);
+        } catch (Exception e) {
+            log.warn("发布session失效通知失败，token: {}", token, e);
+        }
+    }
+
+    private void invalidateLocal(String token) {
+        nearCache.invalidate(token);
+        renewTracker.invalidate(token);
+        sessionUsers.invalidate(token);
+    }
+
     /**
      * 生成唯一token
      */
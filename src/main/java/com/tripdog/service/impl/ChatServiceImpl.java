@@ -7,7 +7,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.tripdog.ai.model.router.ChatModelRouter;
-import com.tripdog.common.middleware.RedisClient;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.util.StringUtils;
@@ -36,7 +35,6 @@ public class ChatServiceImpl implements ChatService {
     private final IntimacyService intimacyService;
     private final QwenRealtimeTtsService qwenRealtimeTtsService;
     private final ChatModelRouter chatModelRouter;
-    private final RedisClient redisClient;
 
     @Override
     public SseEmitter chat(Long roleId, Long userId, ChatReqDTO chatReqDTO) {
@@ -80,8 +78,6 @@ public class ChatServiceImpl implements ChatService {
                 emitter.completeWithError(e);
             }
         } finally {
-            String limitRpmKey = REDIS_CHAT_LIMIT_RPM + userId;
-            redisClient.zadd(limitRpmKey, UUID.randomUUID(), (double) (int) System.currentTimeMillis() / 1000L);
             log.info("userid: {}, ai response time consuming: {}s", userId, (System.currentTimeMillis() - start) / 1000);
             ThreadLocalUtils.remove(ROLE_ID);
         }
@@ -1,58 +1,457 @@
 package com.tripdog.service.impl;
 
 import com.tripdog.ai.model.comfyui.ComfyUiClient;
+import com.tripdog.ai.model.comfyui.ComfyUiJob;
+import com.tripdog.ai.model.comfyui.ComfyUiJobStore;
+import com.tripdog.ai.model.comfyui.ComfyUiResultCache;
 import com.tripdog.ai.model.comfyui.ComfyUiWorkflowTemplate;
 import com.tripdog.common.utils.MinioUtils;
 import com.tripdog.model.dto.ImageGenerateReqDTO;
-import com.tripdog.model.dto.ImageGenerateRespDTO;
+import com.tripdog.model.vo.ImageJobVO;
 import com.tripdog.service.ImageGenerateService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
+/**
+ * 生图服务
+ * 提交后任务写入 Redis 队列并立即返回任务 ID；各节点定时（及提交时）按后端负载出队派发，
+ * 只把任务派给负载未满的后端，其余任务留在共享队列中等待任意后端空闲。
+ * 任务由执行节点单独写状态，状态变化经 Redis 广播给订阅方所在节点；取消请求同样广播给执行节点处理。
+ * 固定种子且 workflow 开启结果缓存时，提交时先查缓存，命中则直接以成功状态返回，不再排队生成
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ImageGenerateServiceImpl implements ImageGenerateService {
+    /**
+     * 进度写入 Redis 的最小间隔，采样步数较多时避免每步都写
+     */
+    private static final long PROGRESS_SAVE_INTERVAL_MS = 500;
+    /**
+     * 转存失败后等待其余转存响应中断的最长时间，超时未退出的转存不再清理
+     */
+    private static final long TRANSFER_ABORT_WAIT_SECONDS = 10;
+
     private final ComfyUiClient comfyUiClient;
     private final ComfyUiWorkflowTemplate workflowTemplate;
+    private final ComfyUiJobStore jobStore;
+    private final ComfyUiResultCache resultCache;
     private final MinioUtils minioUtils;
+    private final ExecutorService imageJobExecutor;
+
+    /**
+     * 每个用户未结束（排队或执行中）的任务数上限
+     */
+    @Value("${comfyui.jobs.max-active-per-user:2}")
+    private int maxActivePerUser;
+
+    /**
+     * 单个后端的负载上限（执行中 + 排队），取 2 使后端执行完当前任务时已有下一个任务就绪
+     */
+    @Value("${comfyui.jobs.max-load-per-backend:2}")
+    private int maxLoadPerBackend;
+
+    /**
+     * 本节点订阅方：jobId -> 回调
+     */
+    private final Map<String, List<Consumer<ImageJobVO>>> listeners = new ConcurrentHashMap<>();
+    /**
+     * 本节点执行中的任务，以及收到取消请求的任务 ID
+     */
+    private final Map<String, ComfyUiJob> runningJobs = new ConcurrentHashMap<>();
+    private final Set<String> cancelRequested = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        jobStore.subscribe(this::notifyListeners);
+        jobStore.subscribeCancel(this::onCancelRequest);
+        // 先登记本节点，之后出队的任务才能在本节点下线时被其他节点回收
+        jobStore.heartbeat();
+    }
+
+    @Override
+    public ImageJobVO submit(Long userId, ImageGenerateReqDTO request) {
+        ComfyUiJob job = new ComfyUiJob();
+        job.setJobId(UUID.randomUUID().toString().replace("-", ""));
+        job.setUserId(userId);
+        job.setWorkflowId(workflowTemplate.resolveWorkflowId(request.getWorkflowId()));
+        job.setPrompt(request.getPrompt());
+        job.setNegativePrompt(request.getNegativePrompt());
+        job.setWidth(request.getWidth());
+        job.setHeight(request.getHeight());
+        job.setSteps(request.getSteps());
+        job.setSeed(request.getSeed());
+        // 参数错误（模板不存在、prompt 为空、尺寸、步数或种子越界）在提交时直接返回
+        Map<String, Object> workflow = workflowTemplate.buildWorkflow(job.getWorkflowId(), toParams(job));
+        job.setClientId(request.getClientId());
+        job.setMaxWaitMs(request.getMaxWaitMs());
+        job.setCreatedAt(System.currentTimeMillis());
+        if (job.getSeed() != null && resultCache.enabled(job.getWorkflowId())) {
+            String hash = resultCache.hash(workflow);
+            List<String> cachedKeys = resultCache.get(job.getWorkflowId(), hash);
+            if (cachedKeys != null) {
+                // 命中缓存不占用并发名额，直接以终态保存
+                job.setObjectKeys(cachedKeys);
+                job.setCached(true);
+                job.setStatus(ComfyUiJobStore.SUCCEEDED);
+                jobStore.save(job);
+                return toVO(job);
+            }
+            job.setCacheKey(hash);
+        }
+        if (!jobStore.enqueue(job, maxActivePerUser)) {
+            return null;
+        }
+        imageJobExecutor.execute(this::dispatch);
+        return toVO(job);
+    }
+
+    @Override
+    public ImageJobVO getJob(Long userId, String jobId) {
+        ComfyUiJob job = find(userId, jobId);
+        return job == null ? null : toVO(job);
+    }
 
     @Override
-    public ImageGenerateRespDTO generate(ImageGenerateReqDTO request) {
-        var workflow = workflowTemplate.buildWorkflow(request.getWorkflowId(), request.getPrompt());
-        var result = comfyUiClient.generate(workflow, request.getClientId(), request.getMaxWaitMs());
-        List<String> urls = new ArrayList<>();
-        List<String> keys = new ArrayList<>();
-
-        for (ComfyUiClient.ComfyUiImageRef ref : result.images()) {
-            ResponseEntity<byte[]> response = comfyUiClient.fetchImage(ref);
-            byte[] body = response.getBody();
-            if (body == null || body.length == 0) {
+    public Runnable subscribe(Long userId, String jobId, Consumer<ImageJobVO> listener) {
+        ComfyUiJob job = find(userId, jobId);
+        if (job == null) {
+            return null;
+        }
+        listeners.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>()).add(listener);
+        Runnable unsubscribe = () -> listeners.computeIfPresent(jobId, (k, list) -> {
+            list.remove(listener);
+            return list.isEmpty() ? null : list;
+        });
+        // 订阅前已结束的任务不会再有广播，重新读取一次避免漏掉终态
+        ComfyUiJob latest = jobStore.get(jobId);
+        listener.accept(toVO(latest == null ? job : latest));
+        return unsubscribe;
+    }
+
+    @Override
+    public boolean cancel(Long userId, String jobId) {
+        ComfyUiJob job = find(userId, jobId);
+        if (job == null || isFinished(job.getStatus())) {
+            return false;
+        }
+        if (ComfyUiJobStore.QUEUED.equals(job.getStatus()) && jobStore.removeQueued(jobId)) {
+            // 尚未被派发，本节点直接写终态
+            jobStore.finish(job, ComfyUiJobStore.CANCELLED);
+            return true;
+        }
+        jobStore.requestCancel(jobId);
+        return true;
+    }
+
+    /**
+     * 按后端负载出队派发：每次取一个有空闲名额的后端，再取队首任务；没有空闲后端或队列为空时停止
+     */
+    @Scheduled(fixedDelayString = "${comfyui.jobs.dispatch-interval:PT1S}")
+    public synchronized void dispatch() {
+        while (true) {
+            String backend = comfyUiClient.acquireBackend(maxLoadPerBackend);
+            if (backend == null) {
+                return;
+            }
+            String jobId = jobStore.poll();
+            if (jobId == null) {
+                comfyUiClient.releaseBackend(backend);
+                return;
+            }
+            ComfyUiJob job = jobStore.get(jobId);
+            if (job == null || !ComfyUiJobStore.QUEUED.equals(job.getStatus())) {
+                jobStore.ack(jobId);
+                comfyUiClient.releaseBackend(backend);
                 continue;
             }
+            job.setStatus(ComfyUiJobStore.RUNNING);
+            job.setBackend(backend);
+            runningJobs.put(jobId, job);
+            try {
+                imageJobExecutor.execute(() -> run(job, backend));
+            } catch (RejectedExecutionException e) {
+                runningJobs.remove(jobId);
+                comfyUiClient.releaseBackend(backend);
+                job.setStatus(ComfyUiJobStore.QUEUED);
+                job.setBackend(null);
+                jobStore.requeue(jobId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 刷新本节点心跳，并把已下线节点处理中的任务放回队列
+     */
+    @Scheduled(fixedDelayString = "${comfyui.jobs.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        try {
+            jobStore.heartbeat();
+            if (jobStore.reclaimOrphans() > 0) {
+                dispatch();
+            }
+        } catch (Exception e) {
+            log.warn("生图节点心跳或任务回收失败: {}", e.getMessage());
+        }
+    }
+
+    private void run(ComfyUiJob job, String backend) {
+        try {
+            save(job);
+            ComfyUiClient.ComfyUiResult result;
+            long[] lastSaved = {0};
+            try {
+                Map<String, Object> workflow = workflowTemplate.buildWorkflow(job.getWorkflowId(), toParams(job));
+                result = comfyUiClient.generate(backend, workflow, job.getClientId(), job.getMaxWaitMs(),
+                    promptId -> {
+                        synchronized (job) {
+                            job.setPromptId(promptId);
+                        }
+                        save(job);
+                        if (cancelRequested.contains(job.getJobId())) {
+                            comfyUiClient.cancel(backend, promptId);
+                        }
+                    },
+                    progress -> {
+                        long now = System.currentTimeMillis();
+                        boolean changed;
+                        synchronized (job) {
+                            changed = !Objects.equals(job.getNode(), progress.node());
+                            job.setNode(progress.node());
+                            job.setStep(progress.value());
+                            job.setTotalSteps(progress.max());
+                        }
+                        if (changed || now - lastSaved[0] >= PROGRESS_SAVE_INTERVAL_MS || progress.value() == progress.max()) {
+                            lastSaved[0] = now;
+                            save(job);
+                        }
+                    });
+            } finally {
+                comfyUiClient.releaseBackend(backend);
+            }
+            if (cancelRequested.contains(job.getJobId())) {
+                finish(job, ComfyUiJobStore.CANCELLED, null);
+                return;
+            }
+            List<String> keys = storeImages(job, result);
+            synchronized (job) {
+                job.setObjectKeys(keys);
+            }
+            if (job.getCacheKey() != null) {
+                resultCache.put(job.getWorkflowId(), job.getCacheKey(), keys);
+            }
+            finish(job, ComfyUiJobStore.SUCCEEDED, null);
+        } catch (Exception e) {
+            if (cancelRequested.contains(job.getJobId())) {
+                finish(job, ComfyUiJobStore.CANCELLED, null);
+            } else {
+                log.error("生图任务失败，jobId: {}", job.getJobId(), e);
+                finish(job, ComfyUiJobStore.FAILED, e.getMessage());
+            }
+        } finally {
+            runningJobs.remove(job.getJobId());
+            cancelRequested.remove(job.getJobId());
+            jobStore.ack(job.getJobId());
+            // 后端名额已释放，尽快派发下一个任务
+            dispatch();
+        }
+    }
+
+    /**
+     * 取消请求广播到所有节点，只有执行该任务的节点处理：记录取消标记，已提交到 ComfyUI 时中断执行
+     */
+    private void onCancelRequest(String jobId) {
+        ComfyUiJob job = runningJobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+        cancelRequested.add(jobId);
+        String promptId;
+        synchronized (job) {
+            promptId = job.getPromptId();
+        }
+        if (promptId != null) {
+            comfyUiClient.cancel(job.getBackend(), promptId);
+        }
+    }
+
+    /**
+     * 多张图片并发转存：ComfyUI /view 响应流直接作为 MinIO 上传的输入，不在堆内缓冲整张图片；
+     * 任一图片转存失败立即中断其余转存（/view 响应流的读取可被中断），并删除本次已上传的对象后使任务失败。
+     * 开启结果缓存的任务按内容摘要存放到固定路径
+     */
+    private List<String> storeImages(ComfyUiJob job, ComfyUiClient.ComfyUiResult result) {
+        List<ComfyUiClient.ComfyUiImageRef> images = result.images();
+        List<String> objectKeys = new ArrayList<>(images.size());
+        List<CompletableFuture<String>> transfers = new ArrayList<>(images.size());
+        List<Future<?>> tasks = new ArrayList<>(images.size());
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (int i = 0; i < images.size(); i++) {
+            ComfyUiClient.ComfyUiImageRef ref = images.get(i);
             String ext = extractExt(ref.filename());
-            String objectKey = "comfyui/" + result.promptId() + "/" + UUID.randomUUID() + ext;
-            String contentType = response.getHeaders().getContentType() != null
-                ? response.getHeaders().getContentType().toString()
-                : MediaType.IMAGE_PNG_VALUE;
-            minioUtils.putObject(objectKey, new ByteArrayInputStream(body), body.length, contentType);
-            keys.add(objectKey);
-            urls.add(minioUtils.getTemporaryUrlByPath(objectKey));
-        }
-
-        ImageGenerateRespDTO resp = new ImageGenerateRespDTO();
-        resp.setPromptId(result.promptId());
-        resp.setImageUrls(urls);
-        resp.setObjectKeys(keys);
-        return resp;
+            String objectKey = job.getCacheKey() != null
+                ? ComfyUiResultCache.objectKey(job.getWorkflowId(), job.getCacheKey(), i, ext)
+                : "comfyui/" + result.promptId() + "/" + UUID.randomUUID() + ext;
+            objectKeys.add(objectKey);
+            CompletableFuture<String> transfer = new CompletableFuture<>();
+            transfer.whenComplete((key, e) -> {
+                if (e != null) {
+                    firstFailure.completeExceptionally(e);
+                }
+            });
+            transfers.add(transfer);
+            tasks.add(imageJobExecutor.submit(() -> {
+                try {
+                    transfer.complete(transfer(result, ref, objectKey));
+                } catch (Throwable e) {
+                    transfer.completeExceptionally(e);
+                }
+            }));
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(transfers.toArray(CompletableFuture[]::new)), firstFailure).join();
+        } catch (CompletionException e) {
+            abortTransfers(job, tasks, transfers, objectKeys);
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+        return transfers.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * 中断仍在进行的转存，等待其退出后删除本次已上传成功的对象。
+     * 按内容摘要存放的缓存对象不删除：同一摘要的并发任务可能共用该路径，下次生成时会被覆盖
+     */
+    private void abortTransfers(ComfyUiJob job, List<Future<?>> tasks, List<CompletableFuture<String>> transfers,
+                                List<String> objectKeys) {
+        tasks.forEach(task -> task.cancel(true));
+        for (Future<?> task : tasks) {
+            try {
+                task.get(TRANSFER_ABORT_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (CancellationException | ExecutionException ignored) {
+                // 已中断或已失败
+            } catch (TimeoutException e) {
+                log.warn("生图转存未在中断后退出，jobId: {}", job.getJobId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (job.getCacheKey() != null) {
+            return;
+        }
+        for (int i = 0; i < transfers.size(); i++) {
+            CompletableFuture<String> transfer = transfers.get(i);
+            if (transfer.isDone() && !transfer.isCompletedExceptionally()) {
+                try {
+                    minioUtils.removeObject(objectKeys.get(i));
+                } catch (Exception e) {
+                    log.warn("清理转存失败任务的图片失败，jobId: {}, objectKey: {}", job.getJobId(), objectKeys.get(i), e);
+                }
+            }
+        }
+    }
+
+    private String transfer(ComfyUiClient.ComfyUiResult result, ComfyUiClient.ComfyUiImageRef ref, String objectKey) {
+        try (ComfyUiClient.ComfyUiImageStream image = comfyUiClient.openImage(result.backend(), ref)) {
+            minioUtils.putObject(objectKey, image.body(), image.contentLength(), image.contentType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return objectKey;
+    }
+
+    private void save(ComfyUiJob job) {
+        synchronized (job) {
+            jobStore.save(job);
+        }
+    }
+
+    private void finish(ComfyUiJob job, String status, String error) {
+        synchronized (job) {
+            job.setError(error);
+            jobStore.finish(job, status);
+        }
+    }
+
+    private ComfyUiWorkflowTemplate.WorkflowParams toParams(ComfyUiJob job) {
+        return new ComfyUiWorkflowTemplate.WorkflowParams(job.getPrompt(), job.getNegativePrompt(),
+            job.getWidth(), job.getHeight(), job.getSteps(), job.getSeed());
+    }
+
+    private ComfyUiJob find(Long userId, String jobId) {
+        ComfyUiJob job = jobId == null ? null : jobStore.get(jobId);
+        return job != null && Objects.equals(job.getUserId(), userId) ? job : null;
+    }
+
+    private void notifyListeners(ComfyUiJob job) {
+        List<Consumer<ImageJobVO>> subscribers = listeners.get(job.getJobId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        ImageJobVO vo = toVO(job);
+        for (Consumer<ImageJobVO> listener : subscribers) {
+            try {
+                listener.accept(vo);
+            } catch (Exception e) {
+                log.debug("生图进度通知失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 成功的任务在读取时生成图片临时地址，避免保存过期链接
+     */
+    private ImageJobVO toVO(ComfyUiJob job) {
+        ImageJobVO vo = new ImageJobVO();
+        vo.setJobId(job.getJobId());
+        vo.setStatus(job.getStatus());
+        vo.setWorkflowId(job.getWorkflowId());
+        vo.setPromptId(job.getPromptId());
+        vo.setNode(job.getNode());
+        vo.setStep(job.getStep());
+        vo.setTotalSteps(job.getTotalSteps());
+        vo.setObjectKeys(job.getObjectKeys());
+        vo.setCached(job.isCached());
+        if (ComfyUiJobStore.SUCCEEDED.equals(job.getStatus()) && job.getObjectKeys() != null) {
+            Map<String, String> urls = minioUtils.getTemporaryUrlsByPath(job.getObjectKeys());
+            vo.setImageUrls(job.getObjectKeys().stream().map(urls::get).toList());
+        }
+        vo.setError(job.getError());
+        vo.setCreatedAt(job.getCreatedAt());
+        vo.setUpdatedAt(job.getUpdatedAt());
+        return vo;
+    }
+
+    private boolean isFinished(String status) {
+        return ComfyUiJobStore.SUCCEEDED.equals(status)
+            || ComfyUiJobStore.FAILED.equals(status)
+            || ComfyUiJobStore.CANCELLED.equals(status);
     }
 
     private String extractExt(String filename) {
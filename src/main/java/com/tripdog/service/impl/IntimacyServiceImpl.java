@@ -94,7 +94,7 @@ public class IntimacyServiceImpl implements IntimacyService {
         cacheToRedis(current);
 
         // 记录最后一次用户发言时间
-        redisClient.set(keyLastMsg(uid, roleId), String.valueOf(now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        redisClient.set(keyLastMsg(uid, roleId), now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
         IntimacyChange change = new IntimacyChange();
         change.setIntimacy(current);
         change.setDelta(deltaSum);
@@ -132,7 +132,7 @@ public class IntimacyServiceImpl implements IntimacyService {
             return false;
         }
         // 未存在，则设置标记并加分
-        redisClient.set(key, "1", ttlToNextMidnightPlusBufferMinutes(60), TimeUnit.MINUTES);
+        redisClient.set(key, 1, ttlToNextMidnightPlusBufferMinutes(60), TimeUnit.MINUTES);
         return true;
     }
 
@@ -155,7 +155,7 @@ public class IntimacyServiceImpl implements IntimacyService {
             return false;
         }
         // 增加一次计数并设置过期
-        redisClient.set(dayKey, String.valueOf(used + 1), ttlToNextMidnightPlusBufferMinutes(60), java.util.concurrent.TimeUnit.MINUTES);
+        redisClient.set(dayKey, used + 1, ttlToNextMidnightPlusBufferMinutes(60), TimeUnit.MINUTES);
         return true;
     }
 
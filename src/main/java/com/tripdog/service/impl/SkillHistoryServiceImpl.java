@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,13 +31,18 @@ public class SkillHistoryServiceImpl implements SkillHistoryService {
     @Override
     public List<SkillHistory> listByRole(Long roleId, Long userId) {
         List<TravelPlanerHistory> list = travelHistoryMapper.listByUserAndRole(userId, roleId);
-        return list.stream().map(this::toSkillHistory).collect(Collectors.toList());
+        // 缺少 mdUrl 的记录统一批量签名
+        Map<String, String> mdUrls = minioUtils.getTemporaryUrlsByPath(list.stream()
+            .filter(t -> t.getMdUrl() == null || t.getMdUrl().isBlank())
+            .map(TravelPlanerHistory::getMdPath)
+            .toList());
+        return list.stream().map(t -> toSkillHistory(t, mdUrls)).collect(Collectors.toList());
     }
 
     @Override
     public SkillHistory findById(Long id, Long userId) {
         TravelPlanerHistory h = travelHistoryMapper.selectByIdAndUser(id, userId);
-        return h == null ? null : toSkillHistory(h);
+        return h == null ? null : toSkillHistory(h, null);
     }
 
     private TravelPlanerHistory toTravelHistory(SkillHistory src) {
@@ -53,7 +59,10 @@ public class SkillHistoryServiceImpl implements SkillHistoryService {
         return t;
     }
 
-    private SkillHistory toSkillHistory(TravelPlanerHistory t) {
+    /**
+     * @param mdUrls 已批量签名的 mdPath -> 临时 URL，为空时单独签名
+     */
+    private SkillHistory toSkillHistory(TravelPlanerHistory t, Map<String, String> mdUrls) {
         SkillHistory s = new SkillHistory();
         s.setId(t.getId());
         s.setUserId(t.getUserId());
@@ -67,7 +76,9 @@ public class SkillHistoryServiceImpl implements SkillHistoryService {
         if (t.getMdUrl() != null && !t.getMdUrl().isBlank()) {
             url = t.getMdUrl();
         } else if (t.getMdPath() != null) {
-            url = minioUtils.getTemporaryUrlByPath(t.getMdPath());
+            url = mdUrls != null && mdUrls.containsKey(t.getMdPath())
+                ? mdUrls.get(t.getMdPath())
+                : minioUtils.getTemporaryUrlByPath(t.getMdPath());
         }
         s.setMdUrl(url);
         // 保持 mdPath 为对象 key，下载接口用 key 取对象
@@ -1,189 +1,420 @@
 package com.tripdog.service.impl;
 
+import com.tripdog.ai.langgraph.travel.TravelCheckpointStore;
+import com.tripdog.ai.langgraph.travel.TravelMarkdownStreams;
 import com.tripdog.ai.langgraph.travel.TravelPlannerGraph;
 import com.tripdog.ai.langgraph.travel.TravelState;
+import com.tripdog.ai.langgraph.travel.TravelStateModels;
+import com.tripdog.common.middleware.LeaseLock;
+import com.tripdog.common.middleware.RedisClient;
 import com.tripdog.exception.TravelPlannerGraphException;
 import com.tripdog.common.utils.MinioUtils;
 import com.tripdog.common.utils.ThreadLocalUtils;
 import com.tripdog.model.dto.TravelPlanRequest;
 import com.tripdog.model.dto.TravelPlanResponse;
 import com.tripdog.model.entity.SkillHistory;
+import com.tripdog.model.vo.TravelRunStatusVO;
 import com.tripdog.service.SkillHistoryService;
 import com.tripdog.service.TravelPlanService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.CompiledGraph;
-import org.bsc.langgraph4j.GraphStateException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import static com.tripdog.common.Constants.CONVERSATION_ID;
+import static com.tripdog.common.Constants.REDIS_TRAVEL_PLAN_EVENTS;
+import static com.tripdog.common.Constants.REDIS_TRAVEL_PLAN_LOCK;
 import static com.tripdog.common.Constants.USER_ID;
 
+/**
+ * 旅行规划服务
+ * 同一用户的相同请求通过 Redis 租约锁在集群内去重，租约在每个节点完成后续期；
+ * 开启 join 模式时，重复请求订阅进行中任务的进度事件，而不是直接被拒绝；
+ * 每个节点完成后保存检查点，失败的运行可按 runId 从最近完成的节点续跑
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TravelPlanServiceImpl implements TravelPlanService {
 
-    private record TravelLock(String runId, long ts) {}
-    private static final ConcurrentHashMap<String, TravelLock> LOCKS = new ConcurrentHashMap<>();
-    private static final long LOCK_TTL_MS = 2 * 60 * 1000;
+    private static final Duration LOCK_TTL = Duration.ofMinutes(2);
+    private static final long JOIN_TIMEOUT_MS = 10 * 60 * 1000;
+    private static final long JOIN_CHECK_INTERVAL_MS = 5000;
+    private static final String MD_CONTENT_TYPE = "text/markdown; charset=utf-8";
+    private static final String EVENT_NODE = "node";
+    private static final String EVENT_MARKDOWN = "markdown";
+    private static final String EVENT_DONE = "done";
 
     private final TravelPlannerGraph travelPlannerGraph;
     private final SkillHistoryService skillHistoryService;
     private final MinioUtils minioUtils;
+    private final TravelMarkdownStreams travelMarkdownStreams;
+    private final LeaseLock leaseLock;
+    private final RedisClient redisClient;
+    private final TravelCheckpointStore travelCheckpointStore;
+
+    /**
+     * 重复提交时是否加入进行中的任务（仅流式接口生效）
+     */
+    @Value("${travel.plan.join-existing:false}")
+    private boolean joinExisting;
 
     @Override
     public TravelPlanResponse runTravelPlan(Long roleId, TravelPlanRequest request) {
         ThreadLocalUtils.set("roleId", roleId);
         Long userId = (Long) ThreadLocalUtils.get(USER_ID);
         String lockKey = buildLockKey(userId, roleId, request);
-        String runId = UUID.randomUUID().toString();
-
-        if (userId != null && isLocked(lockKey, runId)) {
+        LeaseLock.Lease lease = leaseLock.tryAcquire(lockKey, LOCK_TTL);
+        if (lease == null) {
             return buildResponse(null, null, "已有旅行规划任务进行中，请稍后再试。");
         }
-        if (userId != null) {
-            LOCKS.put(lockKey, new TravelLock(runId, System.currentTimeMillis()));
-        }
 
+        var input = buildInput(request, userId, roleId);
+        String runId = UUID.randomUUID().toString();
+        input.put(TravelState.RUN_ID, runId);
+        TravelStateModels.TravelCheckpoint checkpoint = buildCheckpoint(runId, request, userId, roleId, input);
+        LeaseLock.Heartbeat heartbeat = startHeartbeat(lease);
         try {
-            CompiledGraph<TravelState> graph = travelPlannerGraph.compile();
-            var input = buildInput(request);
-            input.put(TravelState.DESTINATION, nvl(request.getDestination()));
-            input.put(TravelState.DAYS, request.getDays() == null ? 3 : request.getDays());
-            input.put(TravelState.PEOPLE, nvl(request.getPeople()));
-            input.put(TravelState.TAGS, request.getPreferences() == null ? java.util.List.of() : request.getPreferences());
-            input.put(TravelState.RAW_REQUIREMENT, nvl(request.getRawRequirement()));
-            input.put("roleId", roleId);
-            Optional<TravelState> stateOpt = graph.invoke(input);
+            Optional<TravelState> stateOpt = Optional.ofNullable(runGraph(input, heartbeat, checkpoint, null));
+            heartbeat.check();
             Optional<String> mdOpt = stateOpt.map(TravelState::markdown).filter(StringUtils::hasText);
 
             if (mdOpt.isEmpty()) {
+                travelCheckpointStore.markFailed(checkpoint);
                 return buildResponse(null, null, "规划未生成 Markdown，请重试或补充信息。");
             }
 
             SkillHistory history = buildHistory(request, stateOpt.get(), roleId, userId);
             MdFile mdFile = generateAndUploadMarkdown(history.getUserId(), mdOpt.get());
-            history.setMdPath(mdFile.path);
-            history.setMdUrl(mdFile.url);
-            skillHistoryService.save(history);
-
-            TravelPlanResponse resp = new TravelPlanResponse();
-            resp.setHistoryId(history.getId());
-            resp.setMdPath(history.getMdPath());
-            resp.setMdUrl(history.getMdUrl());
-            resp.setMessage("行程规划已生成，请前往历史记录下载。");
+            TravelPlanResponse resp = saveHistory(history, mdFile);
+            travelCheckpointStore.markSucceeded(checkpoint, resp.getHistoryId(), resp.getMdPath(), resp.getMdUrl());
+            resp.setRunId(runId);
             return resp;
-        } catch (GraphStateException e) {
-            log.error("Travel plan graph execution failed", e);
-            return buildResponse(null, null, "规划执行失败，请稍后重试。");
         } catch (Exception e) {
             log.error("Travel plan failed", e);
-            return buildResponse(null, null, "规划生成异常，请稍后重试。");
-        } finally {
-            if (userId != null) {
-                TravelLock last = LOCKS.get(lockKey);
-                if (last != null && runId.equals(last.runId)) {
-                    LOCKS.remove(lockKey);
-                }
+            // 租约已被他人接管时检查点归新的持有者，不再改写
+            if (!heartbeat.lost()) {
+                travelCheckpointStore.markFailed(checkpoint);
             }
+            TravelPlanResponse resp = buildResponse(null, null, "规划生成异常，请稍后重试。");
+            resp.setRunId(runId);
+            return resp;
+        } finally {
+            stopHeartbeat(heartbeat);
+            leaseLock.release(lease);
         }
     }
 
     @Override
     public TravelPlanResponse runTravelPlanStream(Long roleId, TravelPlanRequest request,
-                                                  java.util.function.BiConsumer<String, TravelState> onNodeFinish) throws TravelPlannerGraphException {
+                                                  BiConsumer<String, TravelState> onNodeFinish,
+                                                  Consumer<String> onMarkdownToken) throws TravelPlannerGraphException {
         ThreadLocalUtils.set("roleId", roleId);
         Long userId = (Long) ThreadLocalUtils.get(USER_ID);
         String lockKey = buildLockKey(userId, roleId, request);
+        LeaseLock.Lease lease = leaseLock.tryAcquire(lockKey, LOCK_TTL);
+        if (lease == null) {
+            if (joinExisting) {
+                return joinExistingRun(lockKey, onNodeFinish, onMarkdownToken);
+            }
+            return buildResponse(null, null, "已有旅行规划任务进行中，请稍后再试。");
+        }
+
+        var input = buildInput(request, userId, roleId);
         String runId = UUID.randomUUID().toString();
+        input.put(TravelState.RUN_ID, runId);
+        TravelStateModels.TravelCheckpoint checkpoint = buildCheckpoint(runId, request, userId, roleId, input);
+        return executeStream(request, roleId, userId, input, checkpoint, lease, onNodeFinish, onMarkdownToken);
+    }
 
-        if (userId != null && isLocked(lockKey, runId)) {
-            return buildResponse(null, null, "已有旅行规划任务进行中，请稍后再试。");
+    @Override
+    public TravelPlanResponse resumeTravelPlanStream(Long userId, String runId,
+                                                     BiConsumer<String, TravelState> onNodeFinish,
+                                                     Consumer<String> onMarkdownToken) throws TravelPlannerGraphException {
+        TravelStateModels.TravelCheckpoint checkpoint = travelCheckpointStore.get(runId);
+        if (checkpoint == null || !Objects.equals(checkpoint.getUserId(), userId)) {
+            return buildResponse(null, null, "规划记录不存在或已过期，请重新发起。");
+        }
+        if (TravelCheckpointStore.SUCCEEDED.equals(checkpoint.getStatus())) {
+            return buildSucceededResponse(checkpoint);
+        }
+        TravelPlanRequest request = toRequest(checkpoint);
+        Long roleId = checkpoint.getRoleId();
+        ThreadLocalUtils.set("roleId", roleId);
+        // 与原请求共用租约锁，原任务仍在执行时不会重复续跑
+        LeaseLock.Lease lease = leaseLock.tryAcquire(buildLockKey(userId, roleId, request), LOCK_TTL);
+        if (lease == null) {
+            return buildResponse(null, null, "该旅行规划任务仍在进行中，请稍后再试。");
         }
-        if (userId != null) {
-            LOCKS.put(lockKey, new TravelLock(runId, System.currentTimeMillis()));
+        log.info("旅行规划从检查点续跑，runId: {}, lastNode: {}", runId, checkpoint.getLastNode());
+        return executeStream(request, roleId, userId, travelCheckpointStore.toInput(checkpoint), checkpoint, lease,
+            onNodeFinish, onMarkdownToken);
+    }
+
+    @Override
+    public TravelRunStatusVO getRunStatus(Long userId, String runId) {
+        TravelStateModels.TravelCheckpoint checkpoint = travelCheckpointStore.get(runId);
+        if (checkpoint == null || !Objects.equals(checkpoint.getUserId(), userId)) {
+            return null;
         }
+        TravelRunStatusVO vo = new TravelRunStatusVO();
+        vo.setRunId(checkpoint.getRunId());
+        vo.setRoleId(checkpoint.getRoleId());
+        vo.setStatus(checkpoint.getStatus());
+        vo.setLastNode(checkpoint.getLastNode());
+        vo.setUpdatedAt(checkpoint.getUpdatedAt());
+        vo.setDestination(checkpoint.getDestination());
+        vo.setDays(checkpoint.getDays());
+        vo.setHistoryId(checkpoint.getHistoryId());
+        vo.setMdUrl(checkpoint.getMdUrl());
+        // 未成功且租约已释放（任务失败或所在实例已退出）时可续跑
+        String lockKey = buildLockKey(userId, checkpoint.getRoleId(), toRequest(checkpoint));
+        vo.setResumable(!TravelCheckpointStore.SUCCEEDED.equals(checkpoint.getStatus())
+            && leaseLock.currentFencingToken(lockKey) == null);
+        return vo;
+    }
 
+    /**
+     * 在已持有租约的前提下执行流式规划，结束后释放租约
+     */
+    private TravelPlanResponse executeStream(TravelPlanRequest request, Long roleId, Long userId,
+                                             Map<String, Object> input, TravelStateModels.TravelCheckpoint checkpoint,
+                                             LeaseLock.Lease lease,
+                                             BiConsumer<String, TravelState> onNodeFinish,
+                                             Consumer<String> onMarkdownToken) throws TravelPlannerGraphException {
+        String runId = checkpoint.getRunId();
+        String eventChannel = eventChannel(lease.key());
+        LeaseLock.Heartbeat heartbeat = startHeartbeat(lease);
         try {
-            CompiledGraph<TravelState> graph = travelPlannerGraph.compile();
-            var input = buildInput(request);
-            input.put(TravelState.DESTINATION, nvl(request.getDestination()));
-            input.put(TravelState.DAYS, request.getDays() == null ? 3 : request.getDays());
-            input.put(TravelState.PEOPLE, nvl(request.getPeople()));
-            input.put(TravelState.TAGS, request.getPreferences() == null ? java.util.List.of() : request.getPreferences());
-            input.put(TravelState.RAW_REQUIREMENT, nvl(request.getRawRequirement()));
-            input.put("roleId", roleId);
-
-            TravelState last = null;
-            for (var output : graph.stream(input)) {
-                String node = output.node();
-                TravelState state = output.state();
-                last = state;
-                if (!"__START__".equals(node) && !"__END__".equals(node) && onNodeFinish != null) {
-                    onNodeFinish.accept(node, state);
+            // 路书增量推送给客户端；路书通常只有几十 KB，生成结束后整体上传
+            travelMarkdownStreams.register(runId, token -> {
+                if (onMarkdownToken != null) {
+                    onMarkdownToken.accept(token);
                 }
-            }
+                publishEvent(eventChannel, heartbeat, Map.of("type", EVENT_MARKDOWN, "delta", token));
+            });
 
-            Optional<TravelState> stateOpt = Optional.ofNullable(last);
+            Optional<TravelState> stateOpt = Optional.ofNullable(runGraph(input, heartbeat, checkpoint, (node, state) -> {
+                if (onNodeFinish != null) {
+                    onNodeFinish.accept(node, state);
+                }
+                publishEvent(eventChannel, heartbeat, Map.of("type", EVENT_NODE, "node", node));
+            }));
+            heartbeat.check();
             Optional<String> mdOpt = stateOpt.map(TravelState::markdown).filter(StringUtils::hasText);
 
             if (mdOpt.isEmpty()) {
+                travelCheckpointStore.markFailed(checkpoint);
                 return buildResponse(null, null, "规划未生成 Markdown，请重试或补充信息。");
             }
 
             SkillHistory history = buildHistory(request, stateOpt.get(), roleId, userId);
             MdFile mdFile = generateAndUploadMarkdown(history.getUserId(), mdOpt.get());
-            history.setMdPath(mdFile.path);
-            history.setMdUrl(mdFile.url);
-            skillHistoryService.save(history);
-
-            TravelPlanResponse resp = new TravelPlanResponse();
-            resp.setHistoryId(history.getId());
-            resp.setMdPath(history.getMdPath());
-            resp.setMdUrl(history.getMdUrl());
-            resp.setMessage("行程规划已生成，请前往历史记录下载。");
+            TravelPlanResponse resp = saveHistory(history, mdFile);
+            travelCheckpointStore.markSucceeded(checkpoint, resp.getHistoryId(), resp.getMdPath(), resp.getMdUrl());
+            resp.setRunId(runId);
+            Map<String, Object> done = new HashMap<>();
+            done.put("type", EVENT_DONE);
+            done.put("historyId", resp.getHistoryId());
+            done.put("mdPath", resp.getMdPath());
+            done.put("mdUrl", resp.getMdUrl());
+            done.put("message", resp.getMessage());
+            publishEvent(eventChannel, heartbeat, done);
             return resp;
         } catch (Exception e) {
+            if (!heartbeat.lost()) {
+                travelCheckpointStore.markFailed(checkpoint);
+            }
             throw new TravelPlannerGraphException("stream travel plan failed", e);
         } finally {
-            if (userId != null) {
-                TravelLock last = LOCKS.get(lockKey);
-                if (last != null && runId.equals(last.runId)) {
-                    LOCKS.remove(lockKey);
+            travelMarkdownStreams.remove(runId);
+            stopHeartbeat(heartbeat);
+            leaseLock.release(lease);
+        }
+    }
+
+    /**
+     * 执行工作流，每个节点完成后保存检查点；租约由后台心跳续期，失去租约后在下一个节点处中止
+     */
+    private TravelState runGraph(Map<String, Object> input, LeaseLock.Heartbeat heartbeat,
+                                 TravelStateModels.TravelCheckpoint checkpoint,
+                                 BiConsumer<String, TravelState> onNodeFinish) throws Exception {
+        CompiledGraph<TravelState> graph = travelPlannerGraph.graph();
+        TravelState last = null;
+        for (var output : graph.stream(input)) {
+            heartbeat.check();
+            String node = output.node();
+            TravelState state = output.state();
+            last = state;
+            if ("__START__".equals(node) || "__END__".equals(node)) {
+                continue;
+            }
+            travelCheckpointStore.save(checkpoint, node, state);
+            if (onNodeFinish != null) {
+                onNodeFinish.accept(node, state);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 启动租约心跳；失去租约时中断执行线程，使阻塞在模型调用上的节点尽快退出
+     */
+    private LeaseLock.Heartbeat startHeartbeat(LeaseLock.Lease lease) {
+        Thread runner = Thread.currentThread();
+        return leaseLock.keepAlive(lease, LOCK_TTL, runner::interrupt);
+    }
+
+    /**
+     * 停止心跳；心跳关闭后不会再中断线程，清除因失去租约留下的中断标记，避免影响复用的请求线程
+     */
+    private void stopHeartbeat(LeaseLock.Heartbeat heartbeat) {
+        heartbeat.close();
+        if (heartbeat.lost()) {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 加入进行中的任务：转发其进度与路书增量，直到收到完成事件、锁被释放或超时。
+     * 只接受与加入时锁持有者 fencing token 一致的事件，避免串入后续任务的输出
+     */
+    private TravelPlanResponse joinExistingRun(String lockKey, BiConsumer<String, TravelState> onNodeFinish,
+                                               Consumer<String> onMarkdownToken) {
+        CompletableFuture<TravelPlanResponse> done = new CompletableFuture<>();
+        AtomicReference<Long> fence = new AtomicReference<>();
+        Runnable unsubscribe = redisClient.subscribe(eventChannel(lockKey), message -> {
+            if (!(message instanceof Map<?, ?> event) || !Objects.equals(fence.get(), toLong(event.get("fence")))) {
+                return;
+            }
+            String type = String.valueOf(event.get("type"));
+            if (EVENT_NODE.equals(type) && onNodeFinish != null) {
+                onNodeFinish.accept(String.valueOf(event.get("node")), null);
+            } else if (EVENT_MARKDOWN.equals(type) && onMarkdownToken != null) {
+                onMarkdownToken.accept(String.valueOf(event.get("delta")));
+            } else if (EVENT_DONE.equals(type)) {
+                TravelPlanResponse resp = new TravelPlanResponse();
+                resp.setHistoryId(toLong(event.get("historyId")));
+                resp.setMdPath((String) event.get("mdPath"));
+                resp.setMdUrl((String) event.get("mdUrl"));
+                resp.setMessage((String) event.get("message"));
+                done.complete(resp);
+            }
+        });
+        try {
+            // 先订阅再读取持有者，避免错过订阅前发布的完成事件后一直等待
+            fence.set(leaseLock.currentFencingToken(lockKey));
+            long deadline = System.currentTimeMillis() + JOIN_TIMEOUT_MS;
+            while (System.currentTimeMillis() < deadline) {
+                if (fence.get() == null || !fence.get().equals(leaseLock.currentFencingToken(lockKey))) {
+                    break;
+                }
+                try {
+                    return done.get(JOIN_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ignored) {
+                    // 继续检查锁是否仍由同一任务持有
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
+            return done.getNow(buildResponse(null, null, "已有相同的旅行规划任务刚刚结束，请前往历史记录查看。"));
+        } finally {
+            unsubscribe.run();
         }
     }
 
-    private boolean isLocked(String lockKey, String runId) {
-        long now = System.currentTimeMillis();
-        TravelLock last = LOCKS.get(lockKey);
-        boolean valid = last != null && (now - last.ts) < LOCK_TTL_MS;
-        return valid && !runId.equals(last.runId);
+    private void publishEvent(String channel, LeaseLock.Heartbeat heartbeat, Map<String, Object> event) {
+        // 失去租约后锁可能已被新的任务持有，不再发布事件
+        if (!joinExisting || heartbeat.lost()) {
+            return;
+        }
+        try {
+            Map<String, Object> payload = new HashMap<>(event);
+            payload.put("fence", heartbeat.lease().fencingToken());
+            redisClient.publish(channel, payload);
+        } catch (Exception e) {
+            log.debug("旅行规划事件发布失败: {}", e.getMessage());
+        }
     }
 
+    private TravelPlanResponse saveHistory(SkillHistory history, MdFile mdFile) {
+        history.setMdPath(mdFile.path);
+        history.setMdUrl(mdFile.url);
+        skillHistoryService.save(history);
+
+        TravelPlanResponse resp = new TravelPlanResponse();
+        resp.setHistoryId(history.getId());
+        resp.setMdPath(history.getMdPath());
+        resp.setMdUrl(history.getMdUrl());
+        resp.setMessage("行程规划已生成，请前往历史记录下载。");
+        return resp;
+    }
+
+    /**
+     * 锁 key 取归一化请求的 SHA-256，不同请求不会因哈希碰撞互相阻塞
+     */
     private String buildLockKey(Long userId, Long roleId, TravelPlanRequest req) {
-        String hash = Integer.toHexString(Objects.hash(
-            userId,
-            roleId,
-            req.getDestination(),
-            req.getDays(),
-            req.getPeople(),
-            req.getBudget(),
-            req.getPreferences()
-        ));
-        return (userId == null ? "anonymous" : userId) + ":" + (roleId == null ? "0" : roleId) + ":" + hash;
-    }
-
-    private java.util.Map<String, Object> buildInput(TravelPlanRequest req) {
+        List<String> prefs = req.getPreferences() == null ? List.of() : req.getPreferences().stream()
+            .filter(StringUtils::hasText)
+            .map(this::normalize)
+            .distinct()
+            .sorted()
+            .toList();
+        String raw = String.join("|",
+            String.valueOf(userId == null ? "anonymous" : userId),
+            String.valueOf(roleId == null ? 0L : roleId),
+            normalize(req.getDestination()),
+            String.valueOf(req.getDays() == null ? 3 : req.getDays()),
+            normalize(req.getPeople()),
+            normalize(req.getBudget()),
+            String.join(",", prefs));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8));
+            return REDIS_TRAVEL_PLAN_LOCK + HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private String eventChannel(String lockKey) {
+        return REDIS_TRAVEL_PLAN_EVENTS + lockKey.substring(REDIS_TRAVEL_PLAN_LOCK.length());
+    }
+
+    private String normalize(String s) {
+        return nvl(s).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : null;
+    }
+
+    private java.util.Map<String, Object> buildInput(TravelPlanRequest req, Long userId, Long roleId) {
         java.util.Map<String, Object> map = new java.util.HashMap<>();
+        map.put(TravelState.USER_ID, userId == null ? 0L : userId);
+        map.put(TravelState.ROLE_ID, roleId == null ? 0L : roleId);
+        map.put(TravelState.CONVERSATION_ID, nvl((String) ThreadLocalUtils.get(CONVERSATION_ID)));
         map.put(TravelState.DESTINATION, nvl(req.getDestination()));
         map.put(TravelState.DAYS, req.getDays() == null ? 3 : req.getDays());
         map.put(TravelState.PEOPLE, nvl(req.getPeople()));
@@ -192,6 +423,40 @@ public class TravelPlanServiceImpl implements TravelPlanService {
         return map;
     }
 
+    private TravelStateModels.TravelCheckpoint buildCheckpoint(String runId, TravelPlanRequest req, Long userId,
+                                                               Long roleId, Map<String, Object> input) {
+        TravelStateModels.TravelCheckpoint cp = new TravelStateModels.TravelCheckpoint();
+        cp.setRunId(runId);
+        cp.setUserId(userId);
+        cp.setRoleId(roleId);
+        cp.setConversationId((String) input.get(TravelState.CONVERSATION_ID));
+        cp.setDestination(req.getDestination());
+        cp.setDays(req.getDays());
+        cp.setPeople(req.getPeople());
+        cp.setBudget(req.getBudget());
+        cp.setTags(req.getPreferences() == null ? null : new ArrayList<>(req.getPreferences()));
+        cp.setRawRequirement(req.getRawRequirement());
+        return cp;
+    }
+
+    private TravelPlanRequest toRequest(TravelStateModels.TravelCheckpoint cp) {
+        TravelPlanRequest req = new TravelPlanRequest();
+        req.setDestination(cp.getDestination());
+        req.setDays(cp.getDays());
+        req.setPeople(cp.getPeople());
+        req.setBudget(cp.getBudget());
+        req.setPreferences(cp.getTags());
+        req.setRawRequirement(cp.getRawRequirement());
+        return req;
+    }
+
+    private TravelPlanResponse buildSucceededResponse(TravelStateModels.TravelCheckpoint cp) {
+        TravelPlanResponse resp = buildResponse(cp.getHistoryId(), cp.getMdUrl(), "行程规划已生成，请前往历史记录下载。");
+        resp.setMdPath(cp.getMdPath());
+        resp.setRunId(cp.getRunId());
+        return resp;
+    }
+
     private SkillHistory buildHistory(TravelPlanRequest req, TravelState state, Long roleId, Long userId) {
         SkillHistory h = new SkillHistory();
         h.setUserId(userId);
@@ -205,11 +470,15 @@ public class TravelPlanServiceImpl implements TravelPlanService {
         return h;
     }
 
+    private String buildObjectKey(Long userId) {
+        return "workflow/traval/" + (userId == null ? "anonymous" : userId) + "/" + UUID.randomUUID() + ".md";
+    }
+
     private MdFile generateAndUploadMarkdown(Long userId, String markdown) throws Exception {
         byte[] bytes = markdown == null ? new byte[0] : markdown.getBytes(StandardCharsets.UTF_8);
-        String objectKey = "workflow/traval/" + (userId == null ? "anonymous" : userId) + "/" + UUID.randomUUID() + ".md";
+        String objectKey = buildObjectKey(userId);
         try (java.io.ByteArrayInputStream in = new java.io.ByteArrayInputStream(bytes)) {
-            minioUtils.putObject(objectKey, in, bytes.length, "text/markdown; charset=utf-8");
+            minioUtils.putObject(objectKey, in, bytes.length, MD_CONTENT_TYPE);
         }
         String url = minioUtils.getTemporaryUrlByPath(objectKey);
         return new MdFile(objectKey, url);
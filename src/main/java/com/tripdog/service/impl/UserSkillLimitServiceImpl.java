@@ -1,5 +1,8 @@
 package com.tripdog.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tripdog.common.middleware.RedisClient;
 import com.tripdog.common.utils.RoleConfigParser;
 import com.tripdog.mapper.RoleMapper;
 import com.tripdog.mapper.UserSkillLimitMapper;
@@ -7,46 +10,172 @@ import com.tripdog.model.entity.RoleDO;
 import com.tripdog.model.entity.UserSkillLimitDO;
 import com.tripdog.service.UserSkillLimitService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+
+import static com.tripdog.common.Constants.REDIS_SKILL_QUOTA;
+import static com.tripdog.common.Constants.REDIS_SKILL_QUOTA_DIRTY;
+
+/**
+ * 技能额度服务
+ * 额度以 Redis 哈希（roleId -> {userId: 剩余额度}）作为账本，扣减/退还通过 Lua 脚本原子完成，
+ * 变更记入脏集合，由定时任务异步回写 MySQL
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserSkillLimitServiceImpl implements UserSkillLimitService {
+    private static final long CACHE_MISS = -2L;
+    private static final long INSUFFICIENT = -1L;
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    /**
+     * KEYS[1]=额度哈希 KEYS[2]=脏集合 ARGV[1]=userId ARGV[2]=delta ARGV[3]=脏标记
+     * 返回：-2 缓存未加载，-1 额度不足，其余为变更后的剩余额度
+     */
+    private static final DefaultRedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>(
+        "local v = redis.call('HGET', KEYS[1], ARGV[1]) " +
+        "if not v then return -2 end " +
+        "local d = tonumber(ARGV[2]) " +
+        "if d < 0 and tonumber(v) + d < 0 then return -1 end " +
+        "local r = redis.call('HINCRBY', KEYS[1], ARGV[1], d) " +
+        "redis.call('SADD', KEYS[2], ARGV[3]) " +
+        "return r",
+        Long.class);
+
     private final UserSkillLimitMapper userSkillLimitMapper;
     private final RoleMapper roleMapper;
+    private final RedisClient redisClient;
+
+    /**
+     * 角色月度额度本地缓存
+     */
+    private final Cache<Long, Integer> roleLimitCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(Duration.ofMinutes(10))
+        .build();
 
     @Override
     public int getRoleSkillLimit(Long userId, Long roleId) {
-        // todo 本地缓存优化
-        RoleDO role = roleMapper.selectById(roleId);
-        return RoleConfigParser.extractSkillExecLimitMonth(role.getRoleSetting());
+        return roleLimitCache.get(roleId, id -> {
+            RoleDO role = roleMapper.selectById(id);
+            return RoleConfigParser.extractSkillExecLimitMonth(role.getRoleSetting());
+        });
     }
 
     @Override
     public int getUserCurrentSkillLimit(Long userId, Long roleId) {
-        // 获取用户当前月度剩余额度
-        UserSkillLimitDO userSkillLimitDO = userSkillLimitMapper.selectByUserAndRole(userId, roleId);
-        if (userSkillLimitDO == null) {
-            // 如果无记录，自动初始化并返回角色配置的限制
-            int roleSkillLimitMonth = getRoleSkillLimit(userId, roleId);
-            userSkillLimitMapper.insert(userId, roleId, roleSkillLimitMonth);
-            return roleSkillLimitMonth;
+        Object cached = redisClient.hget(quotaKey(roleId), String.valueOf(userId));
+        if (cached != null) {
+            return Integer.parseInt(cached.toString());
         }
-        return userSkillLimitDO.getSkillExecLimitMonth();
+        return loadToCache(userId, roleId);
     }
 
     @Override
     public void updateSkillLimit(Long userId, Long roleId, Integer limitDelta) {
+        adjust(userId, roleId, limitDelta);
+    }
+
+    @Override
+    public boolean tryAcquireSkillLimit(Long userId, Long roleId) {
+        return adjust(userId, roleId, -1) != INSUFFICIENT;
+    }
+
+    @Override
+    public void refundSkillLimit(Long userId, Long roleId) {
+        try {
+            adjust(userId, roleId, 1);
+        } catch (Exception e) {
+            log.error("技能额度退还失败，userId={}, roleId={}", userId, roleId, e);
+        }
+    }
+
+    @Override
+    public int flushDirtySkillLimits() {
+        int flushed = 0;
+        while (true) {
+            List<Object> members = redisClient.spop(REDIS_SKILL_QUOTA_DIRTY, FLUSH_BATCH_SIZE);
+            if (members == null || members.isEmpty()) {
+                break;
+            }
+            for (Object member : members) {
+                String[] parts = member.toString().split(":");
+                Long userId = Long.valueOf(parts[0]);
+                Long roleId = Long.valueOf(parts[1]);
+                Object val = redisClient.hget(quotaKey(roleId), String.valueOf(userId));
+                if (val == null) {
+                    continue;
+                }
+                try {
+                    userSkillLimitMapper.updateLimitByUserAndRole(userId, roleId, Integer.parseInt(val.toString()));
+                    flushed++;
+                } catch (Exception e) {
+                    // 回写失败重新标记，等待下次回写
+                    redisClient.sadd(REDIS_SKILL_QUOTA_DIRTY, member);
+                    log.error("技能额度回写失败，userId={}, roleId={}", userId, roleId, e);
+                }
+            }
+            if (members.size() < FLUSH_BATCH_SIZE) {
+                break;
+            }
+        }
+        return flushed;
+    }
+
+    @Override
+    public void evictSkillLimitCache(Iterable<Long> roleIds) {
+        for (Long roleId : roleIds) {
+            redisClient.delete(quotaKey(roleId));
+        }
+        redisClient.delete(REDIS_SKILL_QUOTA_DIRTY);
+        roleLimitCache.invalidateAll();
+    }
+
+    /**
+     * 原子调整额度，缓存未加载时从数据库加载后重试一次
+     */
+    private long adjust(Long userId, Long roleId, int delta) {
+        List<String> keys = List.of(quotaKey(roleId), REDIS_SKILL_QUOTA_DIRTY);
+        String dirtyMember = userId + ":" + roleId;
+        Long result = redisClient.execute(ADJUST_SCRIPT, keys, userId, delta, dirtyMember);
+        if (result != null && result == CACHE_MISS) {
+            loadToCache(userId, roleId);
+            result = redisClient.execute(ADJUST_SCRIPT, keys, userId, delta, dirtyMember);
+        }
+        if (result == null || result == CACHE_MISS) {
+            throw new IllegalStateException("技能额度缓存加载失败");
+        }
+        return result;
+    }
+
+    /**
+     * 从数据库加载额度到缓存，无记录时按角色配置初始化
+     */
+    private int loadToCache(Long userId, Long roleId) {
         UserSkillLimitDO userSkillLimitDO = userSkillLimitMapper.selectByUserAndRole(userId, roleId);
+        int limit;
         if (userSkillLimitDO == null) {
-            // 向前兼容：如果用户无额度记录，自动初始化（获取角色配置中的月度限制）
-            int roleSkillLimitMonth = getRoleSkillLimit(userId, roleId);
-            userSkillLimitMapper.insert(userId, roleId, roleSkillLimitMonth);
-            // 重新查询
-            userSkillLimitDO = userSkillLimitMapper.selectByUserAndRole(userId, roleId);
+            limit = getRoleSkillLimit(userId, roleId);
+            userSkillLimitMapper.insert(userId, roleId, limit);
+        } else {
+            limit = Math.max(0, userSkillLimitDO.getSkillExecLimitMonth());
         }
-        userSkillLimitMapper.updateLimitByUserAndRole(userId, roleId, userSkillLimitDO.getSkillExecLimitMonth() + limitDelta);
+        // 并发加载时以先写入者为准
+        if (!Boolean.TRUE.equals(redisClient.hsetnx(quotaKey(roleId), String.valueOf(userId), limit))) {
+            Object cached = redisClient.hget(quotaKey(roleId), String.valueOf(userId));
+            if (cached != null) {
+                return Integer.parseInt(cached.toString());
+            }
+        }
+        return limit;
     }
 
-
+    private String quotaKey(Long roleId) {
+        return REDIS_SKILL_QUOTA + roleId;
+    }
 }
@@ -0,0 +1,35 @@
+package com.tripdog.ai.langgraph.travel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * POI 检索的模型输出语料（src/test/resources/poi-corpus），按检索提示词要求的字段构造，
+ * 覆盖代码块、包装对象、非标准 JSON、截断与损坏元素几种常见形态
+ */
+final class PoiCorpus {
+    static final List<String> FILES = List.of(
+        "fenced-array.txt",
+        "data-results-wrapper.txt",
+        "lenient-syntax.txt",
+        "truncated.txt",
+        "broken-elements.txt"
+    );
+
+    private PoiCorpus() {
+    }
+
+    static String read(String file) {
+        try (InputStream in = PoiCorpus.class.getResourceAsStream("/poi-corpus/" + file)) {
+            if (in == null) {
+                throw new IllegalArgumentException("corpus file not found: " + file);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
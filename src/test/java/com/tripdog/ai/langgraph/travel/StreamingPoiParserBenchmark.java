@@ -0,0 +1,145 @@
+package com.tripdog.ai.langgraph.travel;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POI 解析基准：在语料上对比流式解析（整段 / 按 token 分片 / 读到首个 POI 为止）与原来的
+ * 去代码块 + 截取括号 + readTree/convertValue 做法。原做法只能解析 fenced-array，其余语料（results 包装、
+ * 非标准 JSON、截断、损坏元素）都返回空列表。
+ * 运行 main 方法，或 {@code java -cp <test classpath> org.openjdk.jmh.Main StreamingPoiParserBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingPoiParserBenchmark {
+    /**
+     * 模型流式输出每片的字符数
+     */
+    private static final int TOKEN_CHARS = 4;
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .build();
+
+    @Param({"fenced-array.txt", "data-results-wrapper.txt", "lenient-syntax.txt", "truncated.txt", "broken-elements.txt"})
+    public String file;
+
+    private String text;
+    private List<String> tokens;
+
+    @Setup
+    public void setUp() {
+        text = PoiCorpus.read(file);
+        tokens = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += TOKEN_CHARS) {
+            tokens.add(text.substring(i, Math.min(text.length(), i + TOKEN_CHARS)));
+        }
+    }
+
+    @Benchmark
+    public List<TravelStateModels.Poi> streamingWholeText() {
+        return StreamingPoiParser.parse(text);
+    }
+
+    @Benchmark
+    public List<TravelStateModels.Poi> streamingTokens() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        for (String token : tokens) {
+            parser.feed(token);
+        }
+        parser.finish();
+        return pois;
+    }
+
+    /**
+     * 流式输出中拿到首个 POI（下游筛选可以开始）所需的解析开销
+     */
+    @Benchmark
+    public int streamingUntilFirstPoi() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        int fed = 0;
+        while (pois.isEmpty() && fed < tokens.size()) {
+            parser.feed(tokens.get(fed++));
+        }
+        return fed;
+    }
+
+    /**
+     * 原 TravelPlannerGraph.parsePoisFromJson：等待完整响应后整体解析，失败时返回空列表
+     */
+    @Benchmark
+    public List<TravelStateModels.Poi> legacyParse() {
+        String cleaned = text
+            .replace("```json", "")
+            .replace("```", "")
+            .trim();
+
+        int resultsIdx = cleaned.indexOf("\"results\"");
+        if (resultsIdx >= 0) {
+            int firstBracket = cleaned.indexOf('[', resultsIdx);
+            int lastBracket = cleaned.indexOf(']', firstBracket);
+            if (firstBracket > 0 && lastBracket > firstBracket) {
+                cleaned = cleaned.substring(firstBracket, lastBracket + 1);
+            }
+        } else {
+            int l = cleaned.indexOf('[');
+            int r = cleaned.lastIndexOf(']');
+            if (l >= 0 && r > l) {
+                cleaned = cleaned.substring(l, r + 1);
+            } else if (cleaned.startsWith("{") && cleaned.endsWith("}")) {
+                cleaned = "[" + cleaned + "]";
+            }
+        }
+
+        try {
+            JsonNode root = OBJECT_MAPPER.readTree(cleaned);
+            if (root.isObject()) {
+                if (root.has("results")) {
+                    root = root.get("results");
+                } else if (root.has("data")) {
+                    root = root.get("data");
+                    if (root.has("results")) {
+                        root = root.get("results");
+                    }
+                }
+            }
+            if (root.isArray()) {
+                return OBJECT_MAPPER.convertValue(root, new TypeReference<List<TravelStateModels.Poi>>() {});
+            }
+            return OBJECT_MAPPER.readValue(cleaned, new TypeReference<List<TravelStateModels.Poi>>() {});
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StreamingPoiParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,152 @@
+package com.tripdog.ai.langgraph.travel;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 语料上的解析结果，以及基于语料的随机分片、截断与字符损坏：解析器不抛异常，结果与分片方式无关，
+ * 截断只丢失未闭合的元素
+ */
+class StreamingPoiParserFuzzTest {
+    private static final int ROUNDS = 200;
+    private static final String NOISE = "{}[]\"',:\\";
+
+    static Stream<Arguments> corpus() {
+        return Stream.of(
+            Arguments.of("fenced-array.txt", 15, 0),
+            Arguments.of("data-results-wrapper.txt", 15, 0),
+            Arguments.of("lenient-syntax.txt", 10, 0),
+            Arguments.of("truncated.txt", 11, 1),
+            Arguments.of("broken-elements.txt", 10, 2)
+        );
+    }
+
+    static Stream<String> files() {
+        return PoiCorpus.FILES.stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void parsesCorpus(String file, int expected, int skipped) {
+        Result result = parse(PoiCorpus.read(file), text -> List.of(text));
+
+        assertEquals(expected, result.pois().size());
+        assertEquals(skipped, result.skipped());
+        for (TravelStateModels.Poi poi : result.pois()) {
+            assertFalse(poi.getName().isBlank());
+            assertNotNull(poi.getType(), poi.getName());
+            assertNotNull(poi.getLongitude(), poi.getName());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("files")
+    void randomChunkingMatchesWholeText(String file) {
+        String text = PoiCorpus.read(file);
+        Result whole = parse(text, t -> List.of(t));
+        Random random = new Random(file.hashCode());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            Result chunked = parse(text, t -> randomChunks(t, random));
+            assertEquals(whole.names(), chunked.names(), "round " + round);
+            assertEquals(whole.skipped(), chunked.skipped(), "round " + round);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("files")
+    void truncationOnlyLosesUnclosedElements(String file) {
+        String text = PoiCorpus.read(file);
+        List<String> full = parse(text, t -> List.of(t)).names();
+        Random random = new Random(file.hashCode());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int cut = random.nextInt(text.length() + 1);
+            List<String> names = parse(text.substring(0, cut), t -> List.of(t)).names();
+            assertEquals(full.subList(0, names.size()), names, "cut at " + cut);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("files")
+    void corruptedInputNeverThrows(String file) {
+        String text = PoiCorpus.read(file);
+        Random random = new Random(file.hashCode());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String corrupted = corrupt(text, random, 1 + random.nextInt(3));
+            Result whole = parse(corrupted, t -> List.of(t));
+            Result chunked = parse(corrupted, t -> randomChunks(t, random));
+
+            assertEquals(whole.names(), chunked.names(), "round " + round);
+            assertEquals(whole.skipped(), chunked.skipped(), "round " + round);
+            assertTrue(whole.pois().stream().noneMatch(p -> p.getName() == null || p.getName().isBlank()));
+        }
+    }
+
+    private static Result parse(String text, Function<String, List<String>> chunker) {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        chunker.apply(text).forEach(parser::feed);
+        parser.finish();
+        assertEquals(pois.size(), parser.emitted());
+        return new Result(pois, parser.skipped());
+    }
+
+    /**
+     * 模拟模型按 token 推送：1~32 个字符一片
+     */
+    private static List<String> randomChunks(String text, Random random) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); ) {
+            int end = Math.min(text.length(), i + 1 + random.nextInt(32));
+            chunks.add(text.substring(i, end));
+            i = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 删除字符、插入结构字符、重复片段、交换相邻字符
+     */
+    private static String corrupt(String text, Random random, int mutations) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int i = 0; i < mutations && !sb.isEmpty(); i++) {
+            int pos = random.nextInt(sb.length());
+            switch (random.nextInt(4)) {
+                case 0 -> sb.deleteCharAt(pos);
+                case 1 -> sb.insert(pos, NOISE.charAt(random.nextInt(NOISE.length())));
+                case 2 -> {
+                    int end = Math.min(sb.length(), pos + 1 + random.nextInt(40));
+                    sb.insert(end, sb.substring(pos, end));
+                }
+                default -> {
+                    if (pos + 1 < sb.length()) {
+                        char c = sb.charAt(pos);
+                        sb.setCharAt(pos, sb.charAt(pos + 1));
+                        sb.setCharAt(pos + 1, c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private record Result(List<TravelStateModels.Poi> pois, int skipped) {
+        List<String> names() {
+            return pois.stream().map(TravelStateModels.Poi::getName).toList();
+        }
+    }
+}
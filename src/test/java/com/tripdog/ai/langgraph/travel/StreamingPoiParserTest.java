@@ -0,0 +1,133 @@
+package com.tripdog.ai.langgraph.travel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 模型输出的常见损坏形式：说明文字、代码块、包装对象、非标准 JSON、损坏元素、括号失配与截断
+ */
+class StreamingPoiParserTest {
+
+    static Stream<Arguments> corpus() {
+        return Stream.of(
+            Arguments.of("bare array",
+                "[{\"name\":\"西湖\"},{\"name\":\"灵隐寺\"}]",
+                List.of("西湖", "灵隐寺"), 0),
+            Arguments.of("code fence with preamble",
+                "好的，以下是推荐：\n```json\n[{\"name\":\"西湖\"},{\"name\":\"灵隐寺\"}]\n```\n祝旅途愉快！",
+                List.of("西湖", "灵隐寺"), 0),
+            Arguments.of("results wrapper",
+                "{\"results\":[{\"name\":\"西湖\"},{\"name\":\"灵隐寺\"}]}",
+                List.of("西湖", "灵隐寺"), 0),
+            Arguments.of("nested data wrapper with sibling fields",
+                "{\"data\":{\"tags\":[\"自然\"],\"results\":[{\"name\":\"西湖\",\"tags\":[\"自然\"]},{\"name\":\"灵隐寺\"}]},\"count\":2}",
+                List.of("西湖", "灵隐寺"), 0),
+            Arguments.of("several top-level arrays",
+                "{\"sights\":[{\"name\":\"西湖\"}],\"foods\":[{\"name\":\"知味观\",\"type\":\"food\"}]}",
+                List.of("西湖", "知味观"), 0),
+            Arguments.of("single bare object",
+                "推荐：{\"name\":\"西湖\",\"lat\":30.25,\"lng\":120.15}",
+                List.of("西湖"), 0),
+            Arguments.of("lenient syntax",
+                "[{name:'西湖', rating: 4.8,}, // 热门\n {'name':'灵隐寺',},]",
+                List.of("西湖", "灵隐寺"), 0),
+            Arguments.of("brackets inside strings",
+                "[{\"name\":\"河坊街 [夜市]\",\"raw\":\"营业时间 {18:00-23:00}\"},{\"name\":\"西湖\"}]",
+                List.of("河坊街 [夜市]", "西湖"), 0),
+            Arguments.of("escaped quotes inside strings",
+                "[{\"name\":\"\\\"断桥\\\"残雪\"},{\"name\":\"西湖\"}]",
+                List.of("\"断桥\"残雪", "西湖"), 0),
+            Arguments.of("broken element in the middle",
+                "[{\"name\":\"西湖\"},{\"name\":\"灵隐寺\",\"lat\":},{\"name\":\"雷峰塔\"}]",
+                List.of("西湖", "雷峰塔"), 1),
+            Arguments.of("mismatched bracket resyncs on the next object",
+                "[{\"name\":\"西湖\"},{\"name\":\"灵隐寺\"]},{\"name\":\"雷峰塔\"}]",
+                List.of("西湖", "雷峰塔"), 1),
+            Arguments.of("truncated stream",
+                "[{\"name\":\"西湖\"},{\"name\":\"灵隐",
+                List.of("西湖"), 1),
+            Arguments.of("non-poi objects are ignored",
+                "[{\"tool\":\"maps_text_search\"},{\"name\":\"西湖\"},{\"name\":\"  \"}]",
+                List.of("西湖"), 0),
+            Arguments.of("nested objects with a name stay inside their poi",
+                "{\"results\":[{\"name\":\"知味观\",\"type\":\"food\",\"dishes\":[{\"name\":\"小笼包\"},{\"name\":\"片儿川\"}],"
+                    + "\"location\":{\"name\":\"湖滨\"}},{\"name\":\"西湖\"}]}",
+                List.of("知味观", "西湖"), 0),
+            Arguments.of("nested objects in a bare poi array",
+                "[{\"name\":\"知味观\",\"dishes\":[{\"name\":\"小笼包\"}]}]",
+                List.of("知味观"), 0)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void parsesWholeText(String caseName, String text, List<String> expected, int skipped) {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        parser.feed(text);
+        parser.finish();
+
+        assertEquals(expected, pois.stream().map(TravelStateModels.Poi::getName).toList());
+        assertEquals(expected.size(), parser.emitted());
+        assertEquals(skipped, parser.skipped());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void chunkBoundariesDoNotChangeTheResult(String caseName, String text, List<String> expected, int skipped) {
+        for (int chunkSize : new int[]{1, 2, 3, 7, 16}) {
+            List<TravelStateModels.Poi> pois = new ArrayList<>();
+            StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+            for (int i = 0; i < text.length(); i += chunkSize) {
+                parser.feed(text.substring(i, Math.min(text.length(), i + chunkSize)));
+            }
+            parser.finish();
+
+            assertEquals(expected, pois.stream().map(TravelStateModels.Poi::getName).toList(), "chunk size " + chunkSize);
+            assertEquals(skipped, parser.skipped(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void emitsEachElementAsSoonAsItCloses() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+
+        parser.feed("[{\"name\":\"西湖\",\"lat\":30.25,\"lng\":120.15}");
+        assertEquals(1, pois.size());
+        assertEquals(30.25, pois.get(0).getLatitude());
+        assertEquals(120.15, pois.get(0).getLongitude());
+
+        parser.feed(",{\"name\":\"灵隐");
+        assertEquals(1, pois.size());
+        parser.feed("寺\"}");
+        assertEquals(2, pois.size());
+    }
+
+    @Test
+    void ignoresInputAfterFinish() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        StreamingPoiParser parser = new StreamingPoiParser(pois::add);
+        parser.feed("[{\"name\":\"西湖\"}");
+        parser.finish();
+        parser.feed(",{\"name\":\"灵隐寺\"}]");
+
+        assertEquals(1, pois.size());
+        assertEquals(0, parser.skipped());
+    }
+
+    @Test
+    void parseHelperReturnsAllUsableElements() {
+        List<TravelStateModels.Poi> pois = StreamingPoiParser.parse("```json\n[{\"name\":\"西湖\"},{\"name\":]\n```");
+
+        assertEquals(List.of("西湖"), pois.stream().map(TravelStateModels.Poi::getName).toList());
+    }
+}
@@ -0,0 +1,192 @@
+package com.tripdog.ai.langgraph.travel;
+
+import com.tripdog.ai.AssistantService;
+import com.tripdog.ai.assistant.TravelPlaningAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 共享的已编译工作流在多线程下并发执行：各次运行的状态与请求上下文互不串扰
+ */
+class TravelPlannerGraphTest {
+    private static final int RUNS = 16;
+
+    private ExecutorService searchExecutor;
+    private AssistantService assistantService;
+    private TravelPoiCache travelPoiCache;
+    private TravelPlannerGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        searchExecutor = Executors.newFixedThreadPool(4);
+        assistantService = mock(AssistantService.class);
+        // 生成节点返回带请求上下文的内容，用于校验每次运行拿到的是自己的用户信息
+        when(assistantService.getTravelPlaningAssistant(anyLong(), anyLong(), anyString()))
+            .thenAnswer(inv -> {
+                Long userId = inv.getArgument(0);
+                String conversationId = inv.getArgument(2);
+                TravelPlaningAssistant assistant = mock(TravelPlaningAssistant.class);
+                when(assistant.chat(any())).thenReturn("# plan for " + userId + "/" + conversationId);
+                return assistant;
+            });
+        travelPoiCache = mock(TravelPoiCache.class);
+        graph = new TravelPlannerGraph(assistantService, searchExecutor, travelPoiCache, new TravelMarkdownStreams());
+        ReflectionTestUtils.setField(graph, "branchTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(graph, "streamingSearch", false);
+        ReflectionTestUtils.setField(graph, "generateTimeout", Duration.ofSeconds(10));
+        graph.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchExecutor.shutdownNow();
+    }
+
+    @Test
+    void graphIsCompiledOnce() {
+        assertSame(graph.graph(), graph.graph());
+    }
+
+    @Test
+    void runsReuseTheCompiledGraph() throws Exception {
+        var compiled = graph.graph();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("city-" + i, graph.runOnce(input(i)).destination());
+            assertSame(compiled, graph.graph());
+        }
+    }
+
+    @Test
+    void concurrentRunsKeepTheirOwnState() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<TravelState>> futures = new ArrayList<>();
+            for (int i = 0; i < RUNS; i++) {
+                Map<String, Object> input = input(i);
+                futures.add(callers.submit(() -> {
+                    start.await();
+                    return graph.runOnce(input);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < RUNS; i++) {
+                TravelState state = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals("city-" + i, state.destination());
+                assertEquals("# plan for " + (1000L + i) + "/conv-" + i, state.markdown());
+                assertFalse(state.routes().isEmpty());
+                String poiPrefix = "city-" + i + "-";
+                assertTrue(state.routes().stream()
+                        .flatMap(day -> day.getItems().stream())
+                        .allMatch(item -> item.getPoiName().startsWith(poiPrefix)),
+                    "routes of run " + i + " contain foreign POIs");
+                verify(assistantService).getTravelPlaningAssistant(1000L + i, 1L, "conv-" + i);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void searchPromptsLeaveOutTheRequesterFreeText() throws Exception {
+        // 缓存未命中，走实时检索；检索结果按（目的地, 偏好, 人群, 天数区间）跨用户共享
+        when(travelPoiCache.keyOf(any())).thenReturn("tripdog:travel:poi:shared");
+        when(travelPoiCache.get(anyString(), anyString())).thenReturn(new TravelPoiCache.Lookup(null, false));
+        List<String> searchPrompts = new CopyOnWriteArrayList<>();
+        TravelPlaningAssistant searchAssistant = mock(TravelPlaningAssistant.class);
+        when(searchAssistant.chat(anyString())).thenAnswer(inv -> {
+            searchPrompts.add(inv.getArgument(0));
+            return "[]";
+        });
+        when(assistantService.getTravelSearchAssistant()).thenReturn(searchAssistant);
+        List<String> markdownPrompts = new CopyOnWriteArrayList<>();
+        TravelPlaningAssistant planner = mock(TravelPlaningAssistant.class);
+        when(planner.chat(anyString())).thenAnswer(inv -> {
+            markdownPrompts.add(inv.getArgument(0));
+            return "# plan";
+        });
+        when(assistantService.getTravelPlaningAssistant(anyLong(), anyLong(), anyString())).thenReturn(planner);
+
+        graph.runOnce(liveInput(1, "带老人出行，不要爬山"));
+        List<String> firstRun = List.copyOf(searchPrompts);
+        searchPrompts.clear();
+        graph.runOnce(liveInput(2, "只想吃火锅"));
+
+        assertFalse(firstRun.isEmpty());
+        assertEquals(firstRun.stream().sorted().toList(), searchPrompts.stream().sorted().toList());
+        assertTrue(firstRun.stream().noneMatch(prompt -> prompt.contains("不要爬山")));
+        // 需求原文仍用于生成路书
+        assertEquals(2, markdownPrompts.size());
+        assertTrue(markdownPrompts.get(0).contains("带老人出行，不要爬山"));
+        assertTrue(markdownPrompts.get(1).contains("只想吃火锅"));
+    }
+
+    /**
+     * 需要实时检索的输入：目的地与偏好相同，需求原文不同
+     */
+    private static Map<String, Object> liveInput(int i, String rawRequirement) {
+        Map<String, Object> input = new HashMap<>();
+        input.put(TravelState.DESTINATION, "杭州");
+        input.put(TravelState.DAYS, 2);
+        input.put(TravelState.TAGS, List.of("美食"));
+        input.put(TravelState.RAW_REQUIREMENT, rawRequirement);
+        input.put(TravelState.USER_ID, 2000L + i);
+        input.put(TravelState.ROLE_ID, 1L);
+        input.put(TravelState.CONVERSATION_ID, "live-" + i);
+        input.put(TravelState.RUN_ID, "live-run-" + i);
+        return input;
+    }
+
+    /**
+     * 已带检索结果（相当于从检查点恢复）的输入，检索节点直接复用，不调用模型
+     */
+    private static Map<String, Object> input(int i) {
+        String city = "city-" + i;
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        for (int p = 0; p < 6; p++) {
+            pois.add(TravelStateModels.Poi.builder()
+                .name(city + "-poi-" + p)
+                .type(p % 3 == 0 ? "food" : "sight")
+                .latitude(30.0 + i + p * 0.01)
+                .longitude(120.0 + p * 0.01)
+                .rating(4.5)
+                .build());
+        }
+        Map<String, Object> input = new HashMap<>();
+        input.put(TravelState.DESTINATION, city);
+        input.put(TravelState.DAYS, 2);
+        input.put(TravelState.SEARCH_RESULTS, pois);
+        input.put(TravelState.USER_ID, 1000L + i);
+        input.put(TravelState.ROLE_ID, 1L);
+        input.put(TravelState.CONVERSATION_ID, "conv-" + i);
+        input.put(TravelState.RUN_ID, "run-" + i);
+        return input;
+    }
+}
@@ -0,0 +1,101 @@
+package com.tripdog.ai.langgraph.travel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路线规划基准：合成 POI 集（3 个相距十余公里的片区，约 30% 餐饮，输入顺序随机），
+ * 对比聚类 + 2-opt 的 {@link TravelRoutePlanner#plan} 与原来按列表顺序 ceil(size/days) 切分的做法。
+ * 运行 main 方法，或 {@code java -cp <test classpath> org.openjdk.jmh.Main TravelRoutePlannerBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TravelRoutePlannerBenchmark {
+    private static final double[][] AREAS = {{30.25, 120.15}, {30.40, 120.00}, {30.28, 120.30}};
+
+    @Param({"10", "25", "50"})
+    public int poiCount;
+
+    @Param({"3"})
+    public int days;
+
+    private List<TravelStateModels.Poi> pois;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        pois = new ArrayList<>(poiCount);
+        for (int i = 0; i < poiCount; i++) {
+            double[] area = AREAS[random.nextInt(AREAS.length)];
+            pois.add(TravelStateModels.Poi.builder()
+                .name("poi-" + i)
+                .type(random.nextInt(10) < 3 ? "food" : "sight")
+                .latitude(area[0] + random.nextGaussian() * 0.01)
+                .longitude(area[1] + random.nextGaussian() * 0.01)
+                .build());
+        }
+    }
+
+    @Benchmark
+    public List<TravelStateModels.RouteDay> plan() {
+        return TravelRoutePlanner.plan(pois, days, "杭州");
+    }
+
+    /**
+     * 原 routeNode 的做法：忽略坐标，按列表顺序每天分 ceil(size/days) 个
+     */
+    @Benchmark
+    public List<TravelStateModels.RouteDay> listOrderSplit() {
+        int perDay = Math.max(1, (int) Math.ceil((double) pois.size() / days));
+        List<TravelStateModels.RouteDay> routes = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            int start = day * perDay;
+            int end = Math.min(start + perDay, pois.size());
+            if (start >= end) {
+                break;
+            }
+            List<TravelStateModels.RouteItem> items = new ArrayList<>();
+            for (int idx = start; idx < end; idx++) {
+                TravelStateModels.Poi poi = pois.get(idx);
+                items.add(TravelStateModels.RouteItem.builder()
+                    .poiName(poi.getName())
+                    .type(poi.getType())
+                    .timeSlot((idx - start) % 2 == 0 ? "morning" : "afternoon")
+                    .transport("打车/步行视距离")
+                    .tips("预留休息时间，避免过度紧凑")
+                    .build());
+            }
+            routes.add(TravelStateModels.RouteDay.builder()
+                .dayIndex(day + 1)
+                .theme("Day " + (day + 1) + " · 杭州")
+                .items(items)
+                .build());
+        }
+        return routes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TravelRoutePlannerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,184 @@
+package com.tripdog.ai.langgraph.travel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TravelRoutePlannerTest {
+
+    @Test
+    void clustersNearbySightsIntoTheSameDay() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        // 西湖片区与 20 公里外的良渚片区各 4 个景点，输入顺序交错
+        for (int i = 0; i < 4; i++) {
+            pois.add(sight("west-" + i, 30.25 + i * 0.002, 120.15 + i * 0.002));
+            pois.add(sight("north-" + i, 30.40 + i * 0.002, 120.00 + i * 0.002));
+        }
+
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 2, "杭州");
+
+        assertEquals(2, routes.size());
+        Set<String> groups = new HashSet<>();
+        for (TravelStateModels.RouteDay day : routes) {
+            Set<String> dayGroups = names(day).stream()
+                .map(name -> name.substring(0, name.indexOf('-')))
+                .collect(Collectors.toSet());
+            assertEquals(1, dayGroups.size(), "day " + day.getDayIndex() + " mixes areas: " + names(day));
+            groups.addAll(dayGroups);
+        }
+        assertEquals(Set.of("west", "north"), groups);
+    }
+
+    @Test
+    void clusterCapacityKeepsDaysBalanced() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        // 7 个景点挤在同一片区，只有 1 个在远处：每天最多 ceil(8 / 2) = 4 个
+        for (int i = 0; i < 7; i++) {
+            pois.add(sight("dense-" + i, 30.25 + i * 0.001, 120.15));
+        }
+        pois.add(sight("far-0", 30.60, 120.50));
+
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 2, "杭州");
+
+        assertEquals(2, routes.size());
+        for (TravelStateModels.RouteDay day : routes) {
+            assertEquals(4, names(day).size());
+        }
+        // 容量溢出的景点分到远处景点所在的那天，而不是挤在同一天
+        TravelStateModels.RouteDay farDay = routes.stream()
+            .filter(day -> names(day).contains("far-0"))
+            .findFirst()
+            .orElseThrow();
+        assertEquals(3, names(farDay).stream().filter(n -> n.startsWith("dense-")).count());
+    }
+
+    @Test
+    void unlocatedSightsFillTheSmallestDay() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        pois.add(sight("a", 30.25, 120.15));
+        pois.add(sight("b", 30.40, 120.00));
+        pois.add(sight("c", 30.401, 120.001));
+        pois.add(sight("no-coord", 0.0, 0.0));
+
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 2, "杭州");
+
+        TravelStateModels.RouteDay withUnlocated = routes.stream()
+            .filter(day -> names(day).contains("no-coord"))
+            .findFirst()
+            .orElseThrow();
+        assertTrue(names(withUnlocated).contains("a"));
+        // 无坐标的景点排在当天末尾
+        List<String> names = names(withUnlocated);
+        assertEquals("no-coord", names.get(names.size() - 1));
+    }
+
+    @Test
+    void ordersSightsOnALineWithoutBacktracking() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            pois.add(sight("s" + i, 30.20 + i * 0.01, 120.10));
+        }
+        Collections.shuffle(pois, new Random(42));
+
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 1, "杭州");
+
+        List<String> names = names(routes.get(0));
+        List<String> ascending = List.of("s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7");
+        List<String> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        assertTrue(names.equals(ascending) || names.equals(descending), "unexpected order: " + names);
+    }
+
+    @Test
+    void orderedRouteHasNoImprovingTwoOptMove() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            List<TravelStateModels.Poi> pois = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                pois.add(sight("r" + round + "-" + i, 30.2 + random.nextDouble() * 0.1, 120.1 + random.nextDouble() * 0.1));
+            }
+            Map<String, TravelStateModels.Poi> byName = new HashMap<>();
+            pois.forEach(p -> byName.put(p.getName(), p));
+
+            List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 1, "杭州");
+            List<TravelStateModels.Poi> path = names(routes.get(0)).stream().map(byName::get).toList();
+
+            assertEquals(12, path.size());
+            double length = length(path);
+            for (int i = 1; i < path.size() - 1; i++) {
+                for (int j = i + 1; j < path.size(); j++) {
+                    List<TravelStateModels.Poi> candidate = new ArrayList<>(path);
+                    Collections.reverse(candidate.subList(i, j + 1));
+                    assertTrue(length(candidate) + 1e-6 >= length,
+                        "reversing [" + i + ", " + j + "] shortens route in round " + round);
+                }
+            }
+        }
+    }
+
+    @Test
+    void insertsNearestRestaurantsAtNoonAndEvening() {
+        List<TravelStateModels.Poi> pois = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            pois.add(sight("s" + i, 30.20 + i * 0.01, 120.10));
+        }
+        pois.add(food("near-middle", 30.215, 120.101));
+        pois.add(food("near-end", 30.235, 120.101));
+        pois.add(food("spare", 30.30, 120.30));
+
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(pois, 1, "杭州");
+
+        List<TravelStateModels.RouteItem> items = routes.get(0).getItems();
+        List<String> slots = items.stream().map(TravelStateModels.RouteItem::getTimeSlot).toList();
+        assertEquals(List.of("morning", "morning", "noon", "afternoon", "afternoon", "evening", "evening"), slots);
+        assertEquals("near-middle", items.get(2).getPoiName());
+        assertEquals("food", items.get(2).getType());
+        // 晚餐选离最后一站最近的餐厅，其余餐饮作为备选
+        assertEquals("near-end", items.get(5).getPoiName());
+        assertEquals("spare", items.get(6).getPoiName());
+    }
+
+    @Test
+    void skipsDaysWithoutPois() {
+        List<TravelStateModels.RouteDay> routes = TravelRoutePlanner.plan(
+            List.of(sight("only", 30.25, 120.15)), 3, "杭州");
+
+        assertEquals(1, routes.size());
+        assertEquals(1, routes.get(0).getDayIndex());
+        assertEquals("Day 1 · 杭州", routes.get(0).getTheme());
+    }
+
+    private static List<String> names(TravelStateModels.RouteDay day) {
+        return day.getItems().stream()
+            .filter(item -> !"food".equals(item.getType()))
+            .map(TravelStateModels.RouteItem::getPoiName)
+            .toList();
+    }
+
+    private static double length(List<TravelStateModels.Poi> path) {
+        double total = 0;
+        for (int i = 1; i < path.size(); i++) {
+            total += TravelRoutePlanner.distanceKm(path.get(i - 1), path.get(i));
+        }
+        return total;
+    }
+
+    private static TravelStateModels.Poi sight(String name, double lat, double lng) {
+        return TravelStateModels.Poi.builder().name(name).type("sight").latitude(lat).longitude(lng).build();
+    }
+
+    private static TravelStateModels.Poi food(String name, double lat, double lng) {
+        return TravelStateModels.Poi.builder().name(name).type("food").latitude(lat).longitude(lng).build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.tripdog.ai.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.mcp.client.DefaultMcpClient;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.mcp.client.transport.http.StreamableHttpMcpTransport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地 MCP 桩服务（Streamable HTTP，JSON 响应），只提供一个工具；
+ * 工具依次返回预设的文本，最后一个重复使用，预设为 {@link #SLOW} 时超过客户端超时后才返回
+ */
+class McpStubServer implements AutoCloseable {
+    static final String SLOW = "__slow__";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String tool;
+    private final String slowResult;
+    private final Duration slowDelay;
+    private final Queue<String> toolResults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger toolCalls = new AtomicInteger();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    McpStubServer(String tool, String slowResult, Duration slowDelay) throws IOException {
+        this.tool = tool;
+        this.slowResult = slowResult;
+        this.slowDelay = slowDelay;
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/mcp", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    McpStubServer enqueue(String result) {
+        toolResults.add(result);
+        return this;
+    }
+
+    int toolCalls() {
+        return toolCalls.get();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/mcp";
+    }
+
+    McpClient createClient(Duration toolTimeout) {
+        return new DefaultMcpClient.Builder()
+            .transport(new StreamableHttpMcpTransport.Builder()
+                .url(url())
+                .timeout(Duration.ofSeconds(5))
+                .build())
+            .initializationTimeout(Duration.ofSeconds(5))
+            .toolExecutionTimeout(toolTimeout)
+            .build();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            if (!request.hasNonNull("id")) {
+                // 通知（initialized、cancelled）无需响应体
+                exchange.sendResponseHeaders(202, -1);
+                return;
+            }
+            ObjectNode response = MAPPER.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.set("id", request.get("id"));
+            String method = request.path("method").asText();
+            switch (method) {
+                case "initialize" -> response.set("result", initializeResult(request));
+                case "tools/list" -> response.set("result", toolsListResult());
+                case "tools/call" -> response.set("result", toolCallResult());
+                case "ping" -> response.set("result", MAPPER.createObjectNode());
+                default -> {
+                    ObjectNode error = response.putObject("error");
+                    error.put("code", -32601);
+                    error.put("message", "method not found: " + method);
+                }
+            }
+            byte[] body = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private JsonNode initializeResult(JsonNode request) {
+        ObjectNode result = MAPPER.createObjectNode();
+        result.put("protocolVersion", request.path("params").path("protocolVersion").asText("2025-03-26"));
+        result.putObject("capabilities").putObject("tools");
+        ObjectNode serverInfo = result.putObject("serverInfo");
+        serverInfo.put("name", "amap-stub");
+        serverInfo.put("version", "1.0.0");
+        return result;
+    }
+
+    private JsonNode toolsListResult() {
+        ObjectNode result = MAPPER.createObjectNode();
+        ObjectNode spec = result.putArray("tools").addObject();
+        spec.put("name", tool);
+        spec.put("description", "查询城市天气");
+        ObjectNode schema = spec.putObject("inputSchema");
+        schema.put("type", "object");
+        schema.putObject("properties").putObject("city").put("type", "string");
+        schema.putArray("required").add("city");
+        return result;
+    }
+
+    private JsonNode toolCallResult() {
+        toolCalls.incrementAndGet();
+        String text = toolResults.size() > 1 ? toolResults.poll() : toolResults.peek();
+        if (SLOW.equals(text)) {
+            // 超过客户端的工具调用超时后才返回
+            try {
+                Thread.sleep(slowDelay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            text = slowResult;
+        }
+        ObjectNode result = MAPPER.createObjectNode();
+        ObjectNode content = result.putArray("content").addObject();
+        content.put("type", "text");
+        content.put("text", text);
+        result.put("isError", false);
+        return result;
+    }
+}
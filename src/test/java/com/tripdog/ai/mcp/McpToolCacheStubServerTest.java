@@ -0,0 +1,108 @@
+package com.tripdog.ai.mcp;
+
+import com.tripdog.common.middleware.RedisClient;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 本地 MCP 桩服务 + 真实的 MCP 客户端、熔断提供者与结果缓存：
+ * 调用超时与高德错误 JSON 不进入缓存，成功结果缓存后不再访问服务
+ */
+class McpToolCacheStubServerTest {
+    private static final String TOOL = "maps_weather";
+    private static final String SUCCESS = "{\"status\":\"1\",\"info\":\"OK\",\"forecasts\":[{\"city\":\"杭州市\",\"weather\":\"晴\"}]}";
+
+    private final Map<String, Object> store = new ConcurrentHashMap<>();
+    private McpStubServer server;
+    private ManagedMcpClient managed;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new McpStubServer(TOOL, SUCCESS, Duration.ofMillis(1500));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (managed != null) {
+            managed.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void toolErrorsAreNotCachedAndSuccessIs() {
+        server.enqueue(McpStubServer.SLOW)
+            .enqueue("{\"status\":\"0\",\"info\":\"INVALID_USER_KEY\",\"infocode\":\"10001\"}")
+            .enqueue(SUCCESS);
+
+        ToolExecutor executor = weatherTool(provider());
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+            .id("call-1").name(TOOL).arguments("{\"city\":\"杭州\"}").build();
+
+        // 1. 调用超时：客户端返回超时提示或降级提示，不缓存
+        String timedOut = executor.execute(request, "m");
+        assertNotEquals(SUCCESS, timedOut);
+        assertTrue(store.isEmpty(), "timeout result was cached: " + timedOut);
+
+        // 2. 高德 key 无效：原样返回给模型，不缓存
+        String invalidKey = executor.execute(request, "m");
+        assertTrue(invalidKey.contains("INVALID_USER_KEY"), invalidKey);
+        assertTrue(store.isEmpty(), "error result was cached");
+
+        // 3. 成功结果写入缓存，4. 之后直接命中缓存
+        assertEquals(SUCCESS, executor.execute(request, "m"));
+        assertEquals(1, store.size());
+        assertEquals(SUCCESS, executor.execute(request, "m"));
+        assertEquals(3, server.toolCalls());
+    }
+
+    private ToolProvider provider() {
+        RedisClient redisClient = mock(RedisClient.class);
+        when(redisClient.get(anyString(), eq(String.class))).thenAnswer(inv -> store.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> store.put(inv.getArgument(0), inv.getArgument(1)))
+            .when(redisClient).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        McpToolCacheProperties properties = new McpToolCacheProperties();
+        properties.getTtl().put(TOOL, Duration.ofMinutes(30));
+
+        managed = new ManagedMcpClient("map", () -> server.createClient(Duration.ofMillis(500)), 5, Duration.ofSeconds(30));
+        return new McpToolCache(redisClient, meterRegistry, properties)
+            .decorate(new ResilientMcpToolProvider(managed, meterRegistry, Duration.ofMinutes(5).toMillis()));
+    }
+
+    private static ToolExecutor weatherTool(ToolProvider provider) {
+        ToolProviderResult tools = provider.provideTools(new ToolProviderRequest("m", UserMessage.from("杭州天气")));
+        return tools.tools().entrySet().stream()
+            .filter(e -> TOOL.equals(e.getKey().name()))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("tool not listed: "
+                + tools.tools().keySet().stream().map(ToolSpecification::name).toList()));
+    }
+}
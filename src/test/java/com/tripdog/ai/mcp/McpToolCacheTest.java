@@ -0,0 +1,162 @@
+package com.tripdog.ai.mcp;
+
+import com.tripdog.common.middleware.RedisClient;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class McpToolCacheTest {
+    private static final String TOOL = "maps_weather";
+
+    private final Map<String, Object> store = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Deque<String> responses = new ArrayDeque<>();
+    private SimpleMeterRegistry meterRegistry;
+    private McpToolCacheProperties properties;
+    private McpToolCache cache;
+
+    @BeforeEach
+    void setUp() {
+        RedisClient redisClient = mock(RedisClient.class);
+        when(redisClient.get(anyString(), eq(String.class))).thenAnswer(inv -> store.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> store.put(inv.getArgument(0), inv.getArgument(1)))
+            .when(redisClient).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new McpToolCacheProperties();
+        properties.getTtl().put(TOOL, Duration.ofMinutes(30));
+        cache = new McpToolCache(redisClient, meterRegistry, properties);
+    }
+
+    @Test
+    void cachesSuccessfulResults() {
+        responses.add("{\"status\":\"1\",\"info\":\"OK\",\"forecasts\":[{\"city\":\"杭州市\"}]}");
+        ToolExecutor executor = executor(TOOL);
+
+        String first = executor.execute(request(TOOL, "{\"city\":\"杭州\"}"), "m1");
+        String second = executor.execute(request(TOOL, "{\"city\":\"杭州\"}"), "m2");
+
+        assertEquals(first, second);
+        assertEquals(1, calls.get());
+        assertEquals(1, store.size());
+        assertEquals(1.0, meterRegistry.counter("mcp.tool.cache", "tool", TOOL, "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("mcp.tool.cache", "tool", TOOL, "result", "miss").count());
+    }
+
+    @Test
+    void argumentOrderAndWhitespaceShareOneEntry() {
+        responses.add("晴，18~25℃");
+        ToolExecutor executor = executor(TOOL);
+
+        executor.execute(request(TOOL, "{\"city\":\"杭州\",\"extensions\":\"all\"}"), null);
+        executor.execute(request(TOOL, "{ \"extensions\": \"all\", \"city\": \"杭州\" }"), null);
+
+        assertEquals(1, calls.get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "There was a timeout executing the tool",
+        "There was an error executing the tool. The tool returned: upstream 502",
+        "{\"status\":\"0\",\"info\":\"INVALID_USER_KEY\",\"infocode\":\"10001\"}",
+        "{\"status\":0,\"info\":\"DAILY_QUERY_OVER_LIMIT\"}",
+        "Get weather failed: INVALID_USER_KEY",
+        "{\"isError\":true,\"message\":\"city not found\"}",
+        "{\"error\":{\"code\":-32603,\"message\":\"internal error\"}}",
+        ResilientMcpToolProvider.UNAVAILABLE_MESSAGE,
+        "",
+        "   "
+    })
+    void doesNotCacheToolErrors(String error) {
+        responses.add(error);
+        responses.add("晴，18~25℃");
+        ToolExecutor executor = executor(TOOL);
+
+        assertEquals(error, executor.execute(request(TOOL, "{\"city\":\"杭州\"}"), null));
+        assertTrue(store.isEmpty(), "error result was cached");
+
+        // 报错之后的重试仍然访问服务，成功结果正常缓存
+        assertEquals("晴，18~25℃", executor.execute(request(TOOL, "{\"city\":\"杭州\"}"), null));
+        assertEquals("晴，18~25℃", executor.execute(request(TOOL, "{\"city\":\"杭州\"}"), null));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void doesNotCacheOversizedResults() {
+        properties.setMaxResultChars(8);
+        responses.add("0123456789");
+        ToolExecutor executor = executor(TOOL);
+
+        executor.execute(request(TOOL, "{}"), null);
+        executor.execute(request(TOOL, "{}"), null);
+
+        assertEquals(2, calls.get());
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    void toolsWithoutTtlAreNotWrapped() {
+        ToolExecutor raw = countingExecutor();
+        ToolProvider provider = cache.decorate(request -> ToolProviderResult.builder().add(spec("maps_direction_driving"), raw).build());
+
+        ToolExecutor executor = provider.provideTools(null).tools().values().iterator().next();
+
+        assertSame(raw, executor);
+    }
+
+    @Test
+    void disabledCacheReturnsDelegate() {
+        properties.setEnabled(false);
+        ToolProvider delegate = request -> ToolProviderResult.builder().build();
+
+        assertSame(delegate, cache.decorate(delegate));
+    }
+
+    private ToolExecutor executor(String tool) {
+        ToolProvider provider = cache.decorate(request -> ToolProviderResult.builder().add(spec(tool), countingExecutor()).build());
+        return provider.provideTools(null).tools().values().iterator().next();
+    }
+
+    /**
+     * 依次返回预设的结果，最后一个结果重复使用
+     */
+    private ToolExecutor countingExecutor() {
+        return (request, memoryId) -> {
+            calls.incrementAndGet();
+            return responses.size() > 1 ? responses.poll() : responses.peek();
+        };
+    }
+
+    private static ToolSpecification spec(String name) {
+        return ToolSpecification.builder().name(name).description(name).build();
+    }
+
+    private static ToolExecutionRequest request(String tool, String arguments) {
+        return ToolExecutionRequest.builder().id("call-1").name(tool).arguments(arguments).build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.tripdog.ai.mcp;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地 MCP 桩服务 + 真实的 MCP 客户端：客户端以文本返回的调用超时同样触发熔断
+ */
+class ResilientMcpToolProviderTest {
+    private static final String TOOL = "maps_weather";
+    private static final int THRESHOLD = 3;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private McpStubServer server;
+    private ManagedMcpClient managed;
+    private ResilientMcpToolProvider provider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new McpStubServer(TOOL, "晴", Duration.ofSeconds(1));
+        managed = new ManagedMcpClient("map", () -> server.createClient(Duration.ofMillis(300)), THRESHOLD,
+            Duration.ofMinutes(1));
+        provider = new ResilientMcpToolProvider(managed, meterRegistry, Duration.ofMinutes(5).toMillis());
+    }
+
+    @AfterEach
+    void tearDown() {
+        managed.close();
+        server.close();
+    }
+
+    @Test
+    void repeatedTimeoutsOpenTheBreaker() {
+        server.enqueue(McpStubServer.SLOW);
+        ToolExecutor executor = weatherTool();
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+            .id("call-1").name(TOOL).arguments("{\"city\":\"杭州\"}").build();
+
+        for (int i = 0; i < THRESHOLD; i++) {
+            String result = executor.execute(request, "m");
+            assertTrue(ResilientMcpToolProvider.isCallFailure(result), result);
+        }
+        assertEquals(ManagedMcpClient.State.OPEN, managed.state());
+
+        // 熔断后直接降级，不再访问服务，也不再提供工具
+        long start = System.nanoTime();
+        assertEquals(ResilientMcpToolProvider.UNAVAILABLE_MESSAGE, executor.execute(request, "m"));
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(300).toNanos());
+        assertEquals(THRESHOLD, server.toolCalls());
+        assertTrue(provider.provideTools(new ToolProviderRequest("m", UserMessage.from("杭州天气"))).tools().isEmpty());
+
+        assertEquals(THRESHOLD, meterRegistry.timer("mcp.tool.calls",
+            "server", "map", "tool", TOOL, "outcome", "error").count());
+        assertEquals(1, meterRegistry.timer("mcp.tool.calls",
+            "server", "map", "tool", TOOL, "outcome", "rejected").count());
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        server.enqueue(McpStubServer.SLOW).enqueue(McpStubServer.SLOW).enqueue("晴");
+        ToolExecutor executor = weatherTool();
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+            .id("call-1").name(TOOL).arguments("{\"city\":\"杭州\"}").build();
+
+        executor.execute(request, "m");
+        executor.execute(request, "m");
+        assertEquals("晴", executor.execute(request, "m"));
+
+        assertEquals(ManagedMcpClient.State.CLOSED, managed.state());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "There was a timeout executing the tool",
+        "There was an error executing the tool. The tool returned: upstream 502",
+        "  There was a timeout executing the tool\n"
+    })
+    void clientErrorTextIsAFailure(String result) {
+        assertTrue(ResilientMcpToolProvider.isCallFailure(result));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "晴，18~25℃",
+        "{\"status\":\"0\",\"info\":\"INVALID_USER_KEY\"}",
+        ""
+    })
+    void toolResultsAreNotFailures(String result) {
+        // 上游业务错误由缓存层识别，不影响熔断
+        assertFalse(ResilientMcpToolProvider.isCallFailure(result));
+    }
+
+    private ToolExecutor weatherTool() {
+        ToolProviderResult tools = provider.provideTools(new ToolProviderRequest("m", UserMessage.from("杭州天气")));
+        return tools.tools().entrySet().stream()
+            .filter(e -> TOOL.equals(e.getKey().name()))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("tool not listed"));
+    }
+}
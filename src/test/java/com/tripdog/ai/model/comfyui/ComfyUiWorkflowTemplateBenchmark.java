@@ -0,0 +1,139 @@
+package com.tripdog.ai.model.comfyui;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作流生成基准（sdxl 模板）：预编译模板 + 槽位写入的 {@link ComfyUiWorkflowTemplate#buildWorkflow}
+ * 对比原来每次请求重新解析模板字节、再两次遍历整棵树替换提示词与种子的做法；
+ * 另测连同序列化为请求体的开销。
+ * 运行 main 方法，或 {@code java -cp <test classpath> org.openjdk.jmh.Main ComfyUiWorkflowTemplateBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComfyUiWorkflowTemplateBenchmark {
+    private static final String WORKFLOW_ID = "sdxl";
+    private static final String PROMPT = "西湖边的小狗，水彩风格";
+    private static final String DEFAULT_PROMPT = "一位年轻人，靠在樱花树下";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ComfyUiWorkflowTemplate template;
+    private byte[] raw;
+
+    @Setup
+    public void setUp() throws IOException {
+        template = new ComfyUiWorkflowTemplate(objectMapper);
+        template.init();
+        try (InputStream in = new ClassPathResource("comfyui/template/" + WORKFLOW_ID + ".json").getInputStream()) {
+            raw = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> compiledPromptOnly() {
+        return template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams(PROMPT, null, null, null, null, null));
+    }
+
+    @Benchmark
+    public Map<String, Object> compiledAllParams() {
+        return template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams(PROMPT, "模糊，低清", 768, 1024, 25, 42L));
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyParseAndWalk() throws IOException {
+        Map<String, Object> copy = objectMapper.readValue(raw, new TypeReference<Map<String, Object>>() {});
+        replacePrompt(copy, PROMPT);
+        randomizeSeeds(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] compiledPromptOnlySerialized() throws IOException {
+        return objectMapper.writeValueAsBytes(compiledPromptOnly());
+    }
+
+    @Benchmark
+    public byte[] legacyParseAndWalkSerialized() throws IOException {
+        return objectMapper.writeValueAsBytes(legacyParseAndWalk());
+    }
+
+    /**
+     * 原 ComfyUiWorkflowTemplate.replacePrompt
+     */
+    @SuppressWarnings("unchecked")
+    private static void replacePrompt(Object node, String prompt) {
+        if (node instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof String str) {
+                    if (DEFAULT_PROMPT.equals(str)) {
+                        ((Map<Object, Object>) map).put(entry.getKey(), prompt);
+                    }
+                } else {
+                    replacePrompt(value, prompt);
+                }
+            }
+            return;
+        }
+        if (node instanceof List<?> list) {
+            for (Object item : list) {
+                replacePrompt(item, prompt);
+            }
+        }
+    }
+
+    /**
+     * 原 ComfyUiWorkflowTemplate.randomizeSeeds
+     */
+    @SuppressWarnings("unchecked")
+    private static void randomizeSeeds(Object node) {
+        if (node instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key = entry.getKey();
+                Object value = entry.getValue();
+                if (key instanceof String keyStr && ("noise_seed".equals(keyStr) || "seed".equals(keyStr))) {
+                    ((Map<Object, Object>) map).put(key, ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+                } else {
+                    randomizeSeeds(value);
+                }
+            }
+            return;
+        }
+        if (node instanceof List<?> list) {
+            for (Object item : list) {
+                randomizeSeeds(item);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ComfyUiWorkflowTemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
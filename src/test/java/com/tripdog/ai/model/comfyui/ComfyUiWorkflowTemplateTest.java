@@ -0,0 +1,186 @@
+package com.tripdog.ai.model.comfyui;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于 sdxl 模板（base + refiner 两个采样器）：各参数槽位写入正确，编译后的模板在多次生成后保持不变
+ */
+class ComfyUiWorkflowTemplateTest {
+    private static final String WORKFLOW_ID = "sdxl";
+    private static final String TEMPLATE_PATH = "comfyui/template/sdxl.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ComfyUiWorkflowTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        template = new ComfyUiWorkflowTemplate(objectMapper);
+        template.init();
+    }
+
+    @Test
+    void patchesEverySlot() {
+        Map<String, Object> workflow = template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams("西湖边的小狗", "模糊", 512, 768, 15, 42L));
+
+        // 正向提示词：base 的 text_g/text_l 与 refiner 的 text
+        assertEquals("西湖边的小狗", inputs(workflow, "3").get("text_g"));
+        assertEquals("西湖边的小狗", inputs(workflow, "3").get("text_l"));
+        assertEquals("西湖边的小狗", inputs(workflow, "4").get("text"));
+        // 负面提示词：两个采样器 negative 输入所连的节点
+        assertEquals("模糊", inputs(workflow, "8").get("text_g"));
+        assertEquals("模糊", inputs(workflow, "8").get("text_l"));
+        assertEquals("模糊", inputs(workflow, "9").get("text"));
+        // 种子：两个采样器都使用指定值
+        assertEquals(42L, inputs(workflow, "12").get("noise_seed"));
+        assertEquals(42L, inputs(workflow, "21").get("noise_seed"));
+        // 尺寸：latent、编码器的 width/height 与 target_width/target_height
+        for (String nodeId : List.of("3", "4", "8", "9", "13")) {
+            assertEquals(512, inputs(workflow, nodeId).get("width"), "node " + nodeId);
+            assertEquals(768, inputs(workflow, nodeId).get("height"), "node " + nodeId);
+        }
+        for (String nodeId : List.of("3", "8")) {
+            assertEquals(512, inputs(workflow, nodeId).get("target_width"), "node " + nodeId);
+            assertEquals(768, inputs(workflow, nodeId).get("target_height"), "node " + nodeId);
+        }
+        // 步数：最大步数 30 缩放到 15，base/refiner 的划分按同一比例缩放，10000 哨兵值不变
+        assertEquals(15, inputs(workflow, "12").get("steps"));
+        assertEquals(10, inputs(workflow, "12").get("start_at_step"));
+        assertEquals(10000, inputs(workflow, "12").get("end_at_step"));
+        assertEquals(10, inputs(workflow, "21").get("steps"));
+        assertEquals(0, inputs(workflow, "21").get("start_at_step"));
+        assertEquals(10000, inputs(workflow, "21").get("end_at_step"));
+        // 非槽位输入与连线保持模板原值
+        assertEquals(0, inputs(workflow, "3").get("crop_w"));
+        assertEquals(6, inputs(workflow, "4").get("ascore"));
+        assertEquals(List.of("9", 0), inputs(workflow, "12").get("negative"));
+        assertEquals("KSamplerAdvanced", ((Map<?, ?>) workflow.get("12")).get("class_type"));
+    }
+
+    @Test
+    void optionalParamsKeepTemplateValues() {
+        Map<String, Object> workflow = template.buildWorkflow(null,
+            new ComfyUiWorkflowTemplate.WorkflowParams("西湖边的小狗", null, null, null, null, null));
+
+        assertEquals("西湖边的小狗", inputs(workflow, "3").get("text_g"));
+        assertEquals("ugly", inputs(workflow, "8").get("text_g"));
+        assertEquals("ugly", inputs(workflow, "9").get("text"));
+        assertEquals(1024, inputs(workflow, "13").get("width"));
+        assertEquals(1024, inputs(workflow, "3").get("target_height"));
+        assertEquals(30, inputs(workflow, "12").get("steps"));
+        assertEquals(20, inputs(workflow, "12").get("start_at_step"));
+        assertEquals(20, inputs(workflow, "21").get("steps"));
+        // 未指定种子时每次随机生成，不沿用模板中的固定值
+        Object seed = inputs(workflow, "21").get("noise_seed");
+        assertTrue(seed instanceof Long l && l >= 0, "seed: " + seed);
+        assertNotEquals(1020718320897076L, seed);
+    }
+
+    @Test
+    void neverMutatesTheFrozenTemplate() throws IOException {
+        Map<String, Object> original = readTemplateFile();
+
+        Map<String, Object> first = template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams("第一张", "模糊", 512, 512, 10, 1L));
+        Map<String, Object> second = template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams("第二张", "失真", 768, 1024, 40, 2L));
+
+        // 两次生成互不影响
+        assertEquals("第一张", inputs(first, "4").get("text"));
+        assertEquals(512, inputs(first, "13").get("height"));
+        assertEquals(1L, inputs(first, "12").get("noise_seed"));
+        assertEquals("第二张", inputs(second, "4").get("text"));
+        assertEquals(1024, inputs(second, "13").get("height"));
+        assertEquals(2L, inputs(second, "12").get("noise_seed"));
+
+        // 修改返回结果也不会写回模板
+        first.put("99", Map.of("class_type", "Injected"));
+        second.remove("1");
+
+        assertEquals(original, compiledNodes());
+    }
+
+    @Test
+    void untouchedNodesAreSharedAndReadOnly() {
+        Map<String, Object> workflow = template.buildWorkflow(WORKFLOW_ID,
+            new ComfyUiWorkflowTemplate.WorkflowParams("西湖边的小狗", null, null, null, null, 42L));
+
+        // 加载模型、解码、保存节点不含槽位，直接共享模板中的只读节点
+        for (String nodeId : List.of("1", "2", "15", "17")) {
+            assertSame(compiledNodes().get(nodeId), workflow.get(nodeId), "node " + nodeId);
+        }
+        Map<String, Object> shared = inputs(workflow, "17");
+        assertThrows(UnsupportedOperationException.class, () -> shared.put("filename_prefix", "x"));
+        // 未指定尺寸时 latent 节点也不会被复制
+        assertSame(compiledNodes().get("13"), workflow.get("13"));
+    }
+
+    static Stream<Arguments> invalidParams() {
+        return Stream.of(
+            Arguments.of("missing params", null, null),
+            Arguments.of("blank prompt", null, new ComfyUiWorkflowTemplate.WorkflowParams(" ", null, null, null, null, null)),
+            Arguments.of("width not a multiple of 8", null, params(100, null, null, null)),
+            Arguments.of("width too small", null, params(32, null, null, null)),
+            Arguments.of("height too large", null, params(null, 4096, null, null)),
+            Arguments.of("zero steps", null, params(null, null, 0, null)),
+            Arguments.of("too many steps", null, params(null, null, 151, null)),
+            Arguments.of("negative seed", null, params(null, null, null, -1L)),
+            Arguments.of("unknown workflow", "missing", params(null, null, null, null))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("invalidParams")
+    void rejectsInvalidParams(String caseName, String workflowId, ComfyUiWorkflowTemplate.WorkflowParams params) {
+        assertThrows(IllegalArgumentException.class, () -> template.buildWorkflow(workflowId, params));
+    }
+
+    @Test
+    void resolvesDefaultWorkflowId() {
+        assertEquals(WORKFLOW_ID, template.resolveWorkflowId(null));
+        assertEquals(WORKFLOW_ID, template.resolveWorkflowId(""));
+        assertEquals("flux", template.resolveWorkflowId("flux"));
+    }
+
+    private static ComfyUiWorkflowTemplate.WorkflowParams params(Integer width, Integer height, Integer steps, Long seed) {
+        return new ComfyUiWorkflowTemplate.WorkflowParams("西湖边的小狗", null, width, height, steps, seed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> inputs(Map<String, Object> workflow, String nodeId) {
+        return (Map<String, Object>) ((Map<String, Object>) workflow.get(nodeId)).get("inputs");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> compiledNodes() {
+        Map<String, ComfyUiWorkflowTemplate.CompiledTemplate> store =
+            (Map<String, ComfyUiWorkflowTemplate.CompiledTemplate>) ReflectionTestUtils.getField(template, "templateStore");
+        return store.get(WORKFLOW_ID).nodes();
+    }
+
+    private Map<String, Object> readTemplateFile() throws IOException {
+        try (InputStream in = new ClassPathResource(TEMPLATE_PATH).getInputStream()) {
+            return objectMapper.readValue(in, new TypeReference<Map<String, Object>>() {});
+        }
+    }
+}
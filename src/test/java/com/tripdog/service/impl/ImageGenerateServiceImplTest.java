@@ -0,0 +1,171 @@
+package com.tripdog.service.impl;
+
+import com.tripdog.ai.model.comfyui.ComfyUiClient;
+import com.tripdog.ai.model.comfyui.ComfyUiJob;
+import com.tripdog.ai.model.comfyui.ComfyUiJobStore;
+import com.tripdog.ai.model.comfyui.ComfyUiResultCache;
+import com.tripdog.ai.model.comfyui.ComfyUiWorkflowTemplate;
+import com.tripdog.common.utils.MinioUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 图片转存：任一图片失败时立即中断其余转存，并清理本次已上传的对象
+ */
+class ImageGenerateServiceImplTest {
+    private static final String BACKEND = "http://comfyui-1:8188";
+
+    private final List<String> putKeys = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean slowInterrupted = new AtomicBoolean();
+    private ExecutorService executor;
+    private ComfyUiClient comfyUiClient;
+    private MinioUtils minioUtils;
+    private ImageGenerateServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("image-job-test-", 0).factory());
+        comfyUiClient = mock(ComfyUiClient.class);
+        minioUtils = mock(MinioUtils.class);
+        // 上传时读完整个输入流，读取被中断时抛出异常
+        doAnswer(inv -> {
+            inv.<InputStream>getArgument(1).readAllBytes();
+            putKeys.add(inv.getArgument(0));
+            return null;
+        }).when(minioUtils).putObject(anyString(), any(InputStream.class), anyLong(), anyString());
+        when(comfyUiClient.openImage(eq(BACKEND), any())).thenAnswer(inv -> {
+            ComfyUiClient.ComfyUiImageRef ref = inv.getArgument(1);
+            return switch (ref.filename()) {
+                case "fast.png" -> image(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+                case "slow.png" -> image(new SlowStream());
+                default -> {
+                    Thread.sleep(200);
+                    throw new IOException("ComfyUI /view failed: 500 " + ref.filename());
+                }
+            };
+        });
+        service = new ImageGenerateServiceImpl(comfyUiClient, mock(ComfyUiWorkflowTemplate.class),
+            mock(ComfyUiJobStore.class), mock(ComfyUiResultCache.class), minioUtils, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void storesAllImages() {
+        List<String> keys = storeImages(job(null), "fast.png", "fast.png");
+
+        assertEquals(2, keys.size());
+        assertEquals(keys.stream().sorted().toList(), putKeys.stream().sorted().toList());
+        assertTrue(keys.stream().allMatch(key -> key.startsWith("comfyui/prompt-1/") && key.endsWith(".png")));
+    }
+
+    @Test
+    void firstFailureInterruptsTheOthersAndRemovesUploadedObjects() {
+        long start = System.nanoTime();
+        UncheckedIOException e = assertThrows(UncheckedIOException.class,
+            () -> storeImages(job(null), "fast.png", "slow.png", "broken.png"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(e.getMessage().contains("broken.png"), e.getMessage());
+        // 不等待慢速转存读完（约 30 秒）
+        assertTrue(elapsedMillis < 5_000, "waited " + elapsedMillis + " ms");
+        assertTrue(slowInterrupted.get());
+        assertEquals(1, putKeys.size());
+        verify(minioUtils).removeObject(putKeys.get(0));
+    }
+
+    @Test
+    void cacheAddressedObjectsAreKept() {
+        assertThrows(UncheckedIOException.class, () -> storeImages(job("digest"), "fast.png", "broken.png"));
+
+        assertEquals(1, putKeys.size());
+        verify(minioUtils, never()).removeObject(anyString());
+    }
+
+    private List<String> storeImages(ComfyUiJob job, String... filenames) {
+        List<ComfyUiClient.ComfyUiImageRef> refs = Arrays.stream(filenames)
+            .map(name -> new ComfyUiClient.ComfyUiImageRef(name, "", "output"))
+            .toList();
+        return ReflectionTestUtils.invokeMethod(service, "storeImages", job,
+            new ComfyUiClient.ComfyUiResult(BACKEND, "prompt-1", refs));
+    }
+
+    private static ComfyUiJob job(String cacheKey) {
+        ComfyUiJob job = new ComfyUiJob();
+        job.setJobId("job-1");
+        job.setWorkflowId("sdxl");
+        job.setCacheKey(cacheKey);
+        return job;
+    }
+
+    private static ComfyUiClient.ComfyUiImageStream image(InputStream body) {
+        return new ComfyUiClient.ComfyUiImageStream(body, -1, "image/png");
+    }
+
+    /**
+     * 约 30 秒才读完的响应流，读取线程被中断时与 JDK HttpClient 的响应流一样抛出 IOException
+     */
+    private class SlowStream extends InputStream {
+        private int remaining = 3000;
+
+        @Override
+        public int read() throws IOException {
+            if (remaining-- <= 0) {
+                return -1;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                slowInterrupted.set(true);
+                throw new InterruptedIOException("read interrupted");
+            }
+            return 0;
+        }
+
+        /**
+         * 逐字节读取，使中断异常直接抛给上传方，而不是被默认实现当作读到末尾
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int c = read();
+            if (c < 0) {
+                return -1;
+            }
+            b[off] = (byte) c;
+            return 1;
+        }
+    }
+}